@@ -0,0 +1,212 @@
+package org.corpus_tools.pepperModules.textgrid;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.praat.IntervalTier;
+import org.praat.Tier;
+import org.praat.TimeResolution;
+
+/**
+ * The distinct points of time of a document and their points of time on the Salt timeline. Times
+ * are kept as primitive long keys: ticks of a {@link TimeResolution} if one is configured,
+ * otherwise an order preserving encoding of the exact double.<br>
+ * The times of each tier are collected as a run of their own. Runs are already sorted in tiers as
+ * Praat writes them, so {@link #sort()} merges them instead of sorting all times, and remembers the
+ * rank of every time it merges. The point of time of a boundary of a tier is then found by its
+ * index without any search, other times by binary search. No time is ever boxed.
+ */
+final class PointsOfTime {
+
+  private final TimeResolution resolution;
+
+  private long[] keys = new long[256];
+  private int size;
+
+  /**
+   * Offsets of the runs in {@link #keys}, and the offset of the run of each tier
+   */
+  private int[] runs = new int[16];
+  private int runCount;
+  private final Map<Tier, Integer> tier2run = new IdentityHashMap<>();
+
+  /**
+   * Rank of each time as added, once the runs have been merged
+   */
+  private int[] ranks;
+
+  /**
+   * Point of time on the timeline for each distinct key, once they have been assigned
+   */
+  private int[] pots;
+
+  /**
+   * @param resolution resolution to round times to, or null to match them exactly
+   */
+  PointsOfTime(TimeResolution resolution) {
+    this.resolution = resolution;
+  }
+
+  /**
+   * Start the run of times of a tier. Interval tiers add the start and end of each interval, other
+   * tiers the time of each point.
+   */
+  void beginRun(Tier tier) {
+    if (runCount == runs.length) {
+      runs = Arrays.copyOf(runs, runCount * 2);
+    }
+    runs[runCount++] = size;
+    tier2run.put(tier, size);
+  }
+
+  void add(double time) {
+    if (runCount == 0) {
+      runs[runCount++] = 0;
+    }
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, size * 2);
+    }
+    keys[size++] = key(time);
+  }
+
+  /**
+   * Merge the runs into the distinct keys in ascending order. Runs that do not ascend are sorted
+   * first.
+   *
+   * @return the number of distinct points of time
+   */
+  int sort() {
+    long[] sorted = keys;
+    boolean[] ascending = new boolean[runCount];
+    for (int run = 0; run < runCount; run++) {
+      ascending[run] = true;
+      for (int i = runStart(run) + 1; i < runEnd(run) && ascending[run]; i++) {
+        ascending[run] = keys[i] >= keys[i - 1];
+      }
+      if (!ascending[run]) {
+        if (sorted == keys) {
+          sorted = Arrays.copyOf(keys, size);
+        }
+        Arrays.sort(sorted, runStart(run), runEnd(run));
+      }
+    }
+
+    // k-way merge through a binary heap of runs ordered by their next key
+    int[] next = new int[runCount];
+    int[] heap = new int[runCount];
+    int heapSize = 0;
+    for (int run = 0; run < runCount; run++) {
+      next[run] = runStart(run);
+      if (next[run] < runEnd(run)) {
+        heap[heapSize++] = run;
+      }
+    }
+    for (int i = heapSize / 2 - 1; i >= 0; i--) {
+      siftDown(heap, heapSize, i, next, sorted);
+    }
+    long[] distinct = new long[size];
+    int count = 0;
+    ranks = new int[size];
+    while (heapSize > 0) {
+      int run = heap[0];
+      int i = next[run]++;
+      if (count == 0 || sorted[i] != distinct[count - 1]) {
+        distinct[count++] = sorted[i];
+      }
+      if (ascending[run]) {
+        ranks[i] = count - 1;
+      }
+      if (next[run] == runEnd(run)) {
+        heap[0] = heap[--heapSize];
+      }
+      siftDown(heap, heapSize, 0, next, sorted);
+    }
+    for (int run = 0; run < runCount; run++) {
+      if (!ascending[run]) {
+        for (int i = runStart(run); i < runEnd(run); i++) {
+          ranks[i] = Arrays.binarySearch(distinct, 0, count, keys[i]);
+        }
+      }
+    }
+    keys = distinct;
+    size = count;
+    pots = new int[size];
+    return size;
+  }
+
+  /**
+   * Assign the point of time on the timeline to the distinct time with the given rank
+   */
+  void setPointOfTime(int rank, int pot) {
+    pots[rank] = pot;
+  }
+
+  /**
+   * @return the point of time on the timeline of the given time, or -1 if it is unknown
+   */
+  int get(double time) {
+    int rank = Arrays.binarySearch(keys, 0, size, key(time));
+    return rank >= 0 ? pots[rank] : -1;
+  }
+
+  /**
+   * @return the point of time of the start of the item at the given index of a tier that has been
+   *         added as a run
+   */
+  int getStart(Tier tier, int index) {
+    Integer run = tier2run.get(tier);
+    if (run == null) {
+      return get(tier.getStart(index));
+    }
+    return pots[ranks[run + (tier instanceof IntervalTier ? 2 * index : index)]];
+  }
+
+  /**
+   * @return the point of time of the end of the item at the given index of a tier that has been
+   *         added as a run
+   */
+  int getEnd(Tier tier, int index) {
+    Integer run = tier2run.get(tier);
+    if (run == null) {
+      return get(tier.getEnd(index));
+    }
+    return pots[ranks[run + (tier instanceof IntervalTier ? 2 * index + 1 : index)]];
+  }
+
+  private int runStart(int run) {
+    return runs[run];
+  }
+
+  private int runEnd(int run) {
+    return run + 1 < runCount ? runs[run + 1] : size;
+  }
+
+  private static void siftDown(int[] heap, int heapSize, int i, int[] next, long[] sorted) {
+    int run = heap[i];
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && sorted[next[heap[child + 1]]] < sorted[next[heap[child]]]) {
+        child++;
+      }
+      if (sorted[next[heap[child]]] >= sorted[next[run]]) {
+        break;
+      }
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = run;
+  }
+
+  private long key(double time) {
+    if (resolution != null) {
+      return resolution.toTicks(time);
+    }
+    // flip all but the sign bit of negative numbers, so that the keys sort like the doubles;
+    // adding 0.0 turns -0.0 into 0.0
+    long bits = Double.doubleToLongBits(time + 0.0);
+    return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+  }
+}
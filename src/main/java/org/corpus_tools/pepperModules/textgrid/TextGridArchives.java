@@ -0,0 +1,571 @@
+package org.corpus_tools.pepperModules.textgrid;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.praat.PraatFile;
+
+/**
+ * Lists and opens the TextGrid entries of zip and tar corpus archives, so that they can be read
+ * without extracting them to disk first. Tar archives may be gzip compressed.
+ */
+final class TextGridArchives {
+
+  private static final int TAR_BLOCK = 512;
+  private static final int BUFFER_SIZE = 65536;
+
+  private TextGridArchives() {}
+
+  /**
+   * @return true if the file name has the ending of a supported archive format
+   */
+  static boolean isArchive(File file) {
+    String name = file.getName().toLowerCase(Locale.ROOT);
+    return name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tar.gz")
+        || name.endsWith(".tgz");
+  }
+
+  /**
+   * @return the name of the archive without its archive ending
+   */
+  static String getBaseName(File archive) {
+    String name = archive.getName();
+    String lower = name.toLowerCase(Locale.ROOT);
+    for (String ending : new String[] {".tar.gz", ".tgz", ".tar", ".zip"}) {
+      if (lower.endsWith(ending)) {
+        return name.substring(0, name.length() - ending.length());
+      }
+    }
+    return name;
+  }
+
+  /**
+   * @return true if the entry name has one of the given document endings, ignoring case
+   */
+  static boolean isTextGrid(String entryName, List<String> endings) {
+    String name = entryName.toLowerCase(Locale.ROOT);
+    for (String ending : endings) {
+      if (name.endsWith("." + ending.toLowerCase(Locale.ROOT))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Open a single entry of the archive, decompressing it while it is read if its name ends with
+   * <code>.gz</code>. The archive is scanned up to the entry for this, so an {@link Archive}
+   * should be used to read several entries.
+   *
+   * @throws IOException if the archive cannot be read or has no such entry
+   */
+  static InputStream openEntry(File archive, String entryName) throws IOException {
+    return Archive.open(archive, entryName::equals).openEntry(entryName);
+  }
+
+  /**
+   * The TextGrid entries of an archive, listed in a single pass over it. The data offset of each
+   * tar entry is recorded on the way, so that entries are opened without scanning the archive again:
+   * a plain tar is read from the offset of the entry, while a compressed tar is read through one
+   * shared stream which only moves forward as long as the entries are opened in archive order. A
+   * zip file is opened once and shared by the readers of its entries. The archive is released as
+   * soon as every entry has been read, and reopened if an entry is opened again.
+   */
+  static final class Archive {
+
+    private final File file;
+    /** data offset and size of every tar entry by name, or null values for zip entries */
+    private final Map<String, long[]> entries = new LinkedHashMap<>();
+    private final Set<String> unread = new HashSet<>();
+    /** shared zip file, opened on demand, and the number of its entries currently being read */
+    private ZipFile zip;
+    private int zipReaders;
+    /** position of a compressed tar, held by the reader of one entry at a time */
+    private final Semaphore cursorLock = new Semaphore(1);
+    private CountingStream cursor;
+
+    private Archive(File file) {
+      this.file = file;
+    }
+
+    /**
+     * List the regular file entries of the archive with one of the given endings.
+     */
+    static Archive open(File file, List<String> endings) throws IOException {
+      return open(file, name -> isTextGrid(name, endings));
+    }
+
+    private static Archive open(File file, Predicate<String> accept) throws IOException {
+      Archive archive = new Archive(file);
+      if (isZip(file)) {
+        try (ZipFile zip = new ZipFile(file)) {
+          Enumeration<? extends ZipEntry> it = zip.entries();
+          while (it.hasMoreElements()) {
+            ZipEntry entry = it.nextElement();
+            if (!entry.isDirectory() && accept.test(entry.getName())) {
+              archive.entries.put(entry.getName(), null);
+            }
+          }
+        }
+      } else {
+        CountingStream in = new CountingStream(openTar(file));
+        try (TarReader tar = new TarReader(in)) {
+          String name;
+          while ((name = tar.nextEntry()) != null) {
+            if (accept.test(name)) {
+              archive.entries.put(name, new long[] {in.position, tar.size});
+            }
+          }
+        }
+      }
+      archive.unread.addAll(archive.entries.keySet());
+      return archive;
+    }
+
+    /**
+     * @return the names of the listed entries, in archive order
+     */
+    List<String> getEntries() {
+      return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * Open a listed entry, decompressing it while it is read if its name ends with
+     * <code>.gz</code>. The returned stream must be closed, since the entries of a compressed tar
+     * are read one at a time and other readers wait until it is.
+     *
+     * @throws IOException if the archive cannot be read or has no such entry
+     */
+    InputStream openEntry(String entryName) throws IOException {
+      if (!entries.containsKey(entryName)) {
+        throw new IOException("No entry " + entryName + " in " + file);
+      }
+      long[] range = entries.get(entryName);
+      InputStream entry;
+      if (range == null) {
+        entry = openZipEntry(entryName);
+      } else if (isCompressed(file)) {
+        entry = openCompressedTarEntry(entryName, range);
+      } else {
+        entry = openTarEntry(entryName, range);
+      }
+      if (entryName.toLowerCase(Locale.ROOT).endsWith(PraatFile.GZIP_ENDING)) {
+        try {
+          return new GZIPInputStream(entry, BUFFER_SIZE);
+        } catch (IOException e) {
+          entry.close();
+          throw e;
+        }
+      }
+      return entry;
+    }
+
+    private InputStream openZipEntry(String entryName) throws IOException {
+      ZipFile zipFile;
+      synchronized (this) {
+        if (zip == null) {
+          zip = new ZipFile(file);
+        }
+        zipFile = zip;
+        zipReaders++;
+      }
+      try {
+        InputStream in = zipFile.getInputStream(zipFile.getEntry(entryName));
+        return new EntryStream(in, Long.MAX_VALUE, () -> {
+          try {
+            in.close();
+          } finally {
+            releaseZip(entryName);
+          }
+        });
+      } catch (IOException | RuntimeException e) {
+        releaseZip(entryName);
+        throw e;
+      }
+    }
+
+    private synchronized void releaseZip(String entryName) throws IOException {
+      unread.remove(entryName);
+      if (--zipReaders == 0 && unread.isEmpty()) {
+        ZipFile zipFile = zip;
+        zip = null;
+        zipFile.close();
+      }
+    }
+
+    private InputStream openTarEntry(String entryName, long[] range) throws IOException {
+      FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      try {
+        channel.position(range[0]);
+      } catch (IOException e) {
+        channel.close();
+        throw e;
+      }
+      synchronized (this) {
+        unread.remove(entryName);
+      }
+      InputStream in = Channels.newInputStream(channel);
+      return new EntryStream(in, range[1], in::close);
+    }
+
+    private InputStream openCompressedTarEntry(String entryName, long[] range)
+        throws IOException {
+      cursorLock.acquireUninterruptibly();
+      try {
+        // entries are usually read in archive order, otherwise the archive is inflated again
+        if (cursor == null || cursor.position > range[0]) {
+          closeCursor();
+          cursor = new CountingStream(openTar(file));
+        }
+        skipFully(cursor, range[0] - cursor.position);
+        return new EntryStream(cursor, range[1], () -> releaseCursor(entryName));
+      } catch (IOException | RuntimeException e) {
+        // the stream may be broken, so the next entry starts over
+        try {
+          closeCursor();
+        } finally {
+          releaseCursor(entryName);
+        }
+        throw e;
+      }
+    }
+
+    private void releaseCursor(String entryName) throws IOException {
+      try {
+        boolean done;
+        synchronized (this) {
+          unread.remove(entryName);
+          done = unread.isEmpty();
+        }
+        if (done) {
+          closeCursor();
+        }
+      } finally {
+        cursorLock.release();
+      }
+    }
+
+    private void closeCursor() throws IOException {
+      if (cursor != null) {
+        CountingStream in = cursor;
+        cursor = null;
+        in.close();
+      }
+    }
+  }
+
+  private static boolean isZip(File archive) {
+    return archive.getName().toLowerCase(Locale.ROOT).endsWith(".zip");
+  }
+
+  private static boolean isCompressed(File archive) {
+    String name = archive.getName().toLowerCase(Locale.ROOT);
+    return name.endsWith(".gz") || name.endsWith(".tgz");
+  }
+
+  private static InputStream openTar(File archive) throws IOException {
+    InputStream in = new FileInputStream(archive);
+    try {
+      if (isCompressed(archive)) {
+        return new GZIPInputStream(in, BUFFER_SIZE);
+      }
+      return new BufferedInputStream(in, BUFFER_SIZE);
+    } catch (IOException e) {
+      in.close();
+      throw e;
+    }
+  }
+
+  private static void skipFully(InputStream in, long n) throws IOException {
+    while (n > 0) {
+      long skipped = in.skip(n);
+      if (skipped <= 0) {
+        if (in.read() < 0) {
+          throw new EOFException("Truncated tar entry");
+        }
+        skipped = 1;
+      }
+      n -= skipped;
+    }
+  }
+
+  /**
+   * Counts the bytes read from a stream, which gives the offsets of the tar entries.
+   */
+  private static final class CountingStream extends FilterInputStream {
+
+    long position;
+
+    CountingStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b >= 0) {
+        position++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = in.read(b, off, len);
+      if (n > 0) {
+        position += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = in.skip(n);
+      position += skipped;
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+
+  /**
+   * The data of a single entry, read from the stream of the archive up to the size of the entry.
+   * Closing it runs the given release action once, which closes the stream if it belongs to the
+   * entry alone.
+   */
+  private static final class EntryStream extends FilterInputStream {
+
+    private final Closeable release;
+    private long left;
+    private boolean closed;
+
+    EntryStream(InputStream in, long size, Closeable release) {
+      super(in);
+      this.left = size;
+      this.release = release;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (left <= 0) {
+        return -1;
+      }
+      int b = in.read();
+      if (b >= 0) {
+        left--;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (left <= 0) {
+        return -1;
+      }
+      int n = in.read(b, off, (int) Math.min(len, left));
+      if (n > 0) {
+        left -= n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = in.skip(Math.min(n, left));
+      left -= skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(in.available(), left);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        release.close();
+      }
+    }
+  }
+
+  /**
+   * Minimal sequential reader of ustar/GNU tar archives. Only regular files are returned; long
+   * names from GNU and pax extension headers are honoured.
+   */
+  private static final class TarReader implements AutoCloseable {
+
+    private final InputStream in;
+    private final byte[] header = new byte[TAR_BLOCK];
+    /** bytes of the current entry not yet consumed, including the padding of its last block */
+    private long remaining;
+    long size;
+
+    TarReader(InputStream in) {
+      this.in = in;
+    }
+
+    /**
+     * Skip to the next regular file entry.
+     *
+     * @return the name of the entry, or null at the end of the archive
+     */
+    String nextEntry() throws IOException {
+      String longName = null;
+      while (true) {
+        skipFully(in, remaining);
+        remaining = 0;
+        if (!readHeader()) {
+          return null;
+        }
+        size = parseOctal(header, 124, 12);
+        remaining = (size + TAR_BLOCK - 1) / TAR_BLOCK * TAR_BLOCK;
+        char type = (char) header[156];
+        if (type == 'L') {
+          // GNU long name of the following entry
+          longName = trimNul(new String(readData(), StandardCharsets.UTF_8));
+        } else if (type == 'x') {
+          String path = parsePaxPath(readData());
+          if (path != null) {
+            longName = path;
+          }
+        } else if (type == '0' || type == '\0' || type == '7') {
+          return longName != null ? longName : headerName();
+        } else {
+          // directories, links and other headers carry nothing to import
+          longName = null;
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+
+    private boolean readHeader() throws IOException {
+      int n = 0;
+      while (n < TAR_BLOCK) {
+        int read = in.read(header, n, TAR_BLOCK - n);
+        if (read < 0) {
+          if (n == 0) {
+            return false;
+          }
+          throw new EOFException("Truncated tar header");
+        }
+        n += read;
+      }
+      // the archive ends with zero blocks
+      return header[0] != 0;
+    }
+
+    private byte[] readData() throws IOException {
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Tar extension header too large: " + size + " bytes");
+      }
+      byte[] data = new byte[(int) size];
+      int n = 0;
+      while (n < data.length) {
+        int read = in.read(data, n, data.length - n);
+        if (read < 0) {
+          throw new EOFException("Truncated tar entry");
+        }
+        n += read;
+      }
+      remaining -= data.length;
+      return data;
+    }
+
+    private String headerName() {
+      String name = trimNul(new String(header, 0, 100, StandardCharsets.UTF_8));
+      if (header[257] == 'u' && header[258] == 's' && header[259] == 't' && header[260] == 'a'
+          && header[261] == 'r' && header[345] != 0) {
+        name = trimNul(new String(header, 345, 155, StandardCharsets.UTF_8)) + "/" + name;
+      }
+      return name;
+    }
+
+    /**
+     * Pax records have the form "length key=value\n".
+     */
+    private static String parsePaxPath(byte[] data) {
+      String path = null;
+      int pos = 0;
+      while (pos < data.length) {
+        int space = pos;
+        while (space < data.length && data[space] != ' ') {
+          space++;
+        }
+        int length;
+        try {
+          length = Integer.parseInt(new String(data, pos, space - pos, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+          return path;
+        }
+        if (length <= 0 || pos + length > data.length) {
+          return path;
+        }
+        String record = new String(data, space + 1, pos + length - space - 2, StandardCharsets.UTF_8);
+        if (record.startsWith("path=")) {
+          path = record.substring(5);
+        }
+        pos += length;
+      }
+      return path;
+    }
+
+    private static long parseOctal(byte[] bytes, int offset, int length) throws IOException {
+      long value = 0;
+      for (int i = offset; i < offset + length; i++) {
+        byte b = bytes[i];
+        if (b == 0 || b == ' ') {
+          if (value != 0) {
+            break;
+          }
+          continue;
+        }
+        if (b < '0' || b > '7') {
+          throw new IOException("Unsupported tar header size field");
+        }
+        value = value * 8 + (b - '0');
+      }
+      return value;
+    }
+
+    private static String trimNul(String s) {
+      int end = s.indexOf('\0');
+      return end < 0 ? s : s.substring(0, end);
+    }
+  }
+}
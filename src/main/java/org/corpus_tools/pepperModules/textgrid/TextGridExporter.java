@@ -2,11 +2,10 @@ package org.corpus_tools.pepperModules.textgrid;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.corpus_tools.pepper.common.DOCUMENT_STATUS;
 import org.corpus_tools.pepper.common.PepperConfiguration;
@@ -28,11 +27,9 @@ import org.corpus_tools.salt.graph.Identifier;
 import org.corpus_tools.salt.util.DataSourceSequence;
 import org.eclipse.emf.common.util.URI;
 import org.osgi.service.component.annotations.Component;
-import org.praat.Interval;
-import org.praat.IntervalTier;
 import org.praat.PraatFile;
-import org.praat.TextGrid;
-import org.praat.Tier;
+import org.praat.PraatTextFile.EOL;
+import org.praat.TextGridWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +44,7 @@ public class TextGridExporter extends PepperExporterImpl implements PepperExport
 		addSupportedFormat("TextGrid", "1.0", null);
 		setDocumentEnding("TextGrid");
 		setExportMode(EXPORT_MODE.DOCUMENTS_IN_FILES);
+		setProperties(new TextGridExporterProperties());
 	}
 	
 	public PepperMapper createPepperMapper(Identifier identifier) {
@@ -67,12 +65,12 @@ public class TextGridExporter extends PepperExporterImpl implements PepperExport
 		private static final String ERR_IO = "An error occured when writing the textgrid file.";
 		
 		private Map<SNode, SMedialRelation> sNode2mRel = null;
-		private Map<String, List<Interval>> tiername2Intervals = null;
+		/** receives the intervals as they are mapped and writes them out tier by tier */
+		private TextGridWriter writer = null;
 		
 		public TextGridExportMapper() {
 			super();
 			sNode2mRel = new HashMap<>();
-			tiername2Intervals = new HashMap<>();
 		}
 		
 		@Override
@@ -80,27 +78,36 @@ public class TextGridExporter extends PepperExporterImpl implements PepperExport
 			if (getDocument() == null || getDocument().getDocumentGraph() == null) {
 				throw new PepperModuleDataException(this, ERR_NO_DATA);
 			}
-			mapTokensAndAnnotations();
-			mapSpanAnnotations();
-			write();
+			writer = createWriter();
+			try {
+				mapTokensAndAnnotations();
+				mapSpanAnnotations();
+				writer.close();
+			} catch (IOException e) {
+				throw new PepperModuleDataException(this, ERR_IO);
+			} finally {
+				try {
+					writer.discard();
+				} catch (IOException e) {
+					logger.warn(getDocument().getName() + ": Temporary tier files could not be deleted", e);
+				}
+			}
 			return (DOCUMENT_STATUS.COMPLETED);
 		}
 
-		private void mapTokensAndAnnotations() {
+		private void mapTokensAndAnnotations() throws IOException {
 			SDocumentGraph documentGraph = getDocument().getDocumentGraph();
 			for (STextualDS ds : documentGraph.getTextualDSs()) {
 				String tierName = ds.getName();
 				List<SToken> tokens = documentGraph.getSortedTokenByText( documentGraph.getTokensBySequence(new DataSourceSequence<Number>(ds, ds.getStart(), ds.getEnd())) );
-				List<Interval> intervals = getTier(tierName);
 				for (SToken sTok : tokens) {
 					SMedialRelation mRel = getMedialRelation(sTok);
 					String text = documentGraph.getText(sTok);
 					if (check(tierName, mRel.getStart(), mRel.getEnd(), text)) {
-						intervals.add(new Interval(mRel.getStart(), mRel.getEnd(), text));
+						writer.addInterval(tierName, mRel.getStart(), mRel.getEnd(), text);
 						for (SAnnotation sAnno : sTok.getAnnotations()) {
 							String annoName = sAnno.getName();
-							List<Interval> annoTier = getTier(annoName);
-							annoTier.add(new Interval(mRel.getStart(), mRel.getEnd(), sAnno.getValue_STEXT()));
+							writer.addInterval(annoName, mRel.getStart(), mRel.getEnd(), sAnno.getValue_STEXT());
 						}
 					}
 				}
@@ -149,16 +156,7 @@ public class TextGridExporter extends PepperExporterImpl implements PepperExport
 			return mRel;
 		}
 		
-		private List<Interval> getTier(String name) {
-			List<Interval> intervals = tiername2Intervals.get(name);
-			if (intervals == null) {
-				intervals = new ArrayList<Interval>();
-				tiername2Intervals.put(name, intervals);
-			}
-			return intervals;
-		}
-
-		private void mapSpanAnnotations() {
+		private void mapSpanAnnotations() throws IOException {
 			SDocumentGraph documentGraph = getDocument().getDocumentGraph();
 			for (SSpan sSpan : documentGraph.getSpans()) {
 				List<SToken> tokens = documentGraph.getSortedTokenByText( documentGraph.getOverlappedTokens(sSpan) );
@@ -166,36 +164,38 @@ public class TextGridExporter extends PepperExporterImpl implements PepperExport
 				Double end = getMedialRelation(tokens.get( tokens.size() - 1 )).getEnd();
 				for (SAnnotation sAnno : sSpan.getAnnotations()) {
 					String annoName = sAnno.getName();
-					List<Interval> annoTier = getTier(annoName);
 					String value = sAnno.getValue_STEXT();
 					if (check(annoName, start, end, value)) {
-						annoTier.add(new Interval(start, end, sAnno.getValue_STEXT()));
+						writer.addInterval(annoName, start, end, sAnno.getValue_STEXT());
 					}
 				}
 			}
 		}
 
-		private void write() {
-			List<Tier> tiers = new ArrayList<>(); {
-				for (Entry<String, List<Interval>> entry : tiername2Intervals.entrySet()) {
-					String name = entry.getKey();
-					List<Interval> intervals = entry.getValue();
-					IntervalTier tier = new IntervalTier(name, intervals);
-					tiers.add(tier);				
-				}
-			}
-			TextGrid textgrid = new TextGrid(getDocument().getName(), tiers);
+		private TextGridWriter createWriter() {
 			File outputFile = null;
 			if (getResourceURI().toFileString() != null) {
 				outputFile = new File(getResourceURI().toFileString());
 			} else {
 				outputFile = new File(getResourceURI().toString());
 			}
-			try {
-				PraatFile.writeText(textgrid, outputFile);
-			} catch (IOException e) {
-				throw new PepperModuleDataException(this, ERR_IO);
+			if (getProperties().isCompress()) {
+				// written through a gzip stream, which the ending selects
+				outputFile = new File(outputFile.getPath() + PraatFile.GZIP_ENDING);
 			}
+			String format = getProperties().getFormat();
+			if (TextGridExporterProperties.FORMAT_BINARY.equals(format)) {
+				return TextGridWriter.binary(outputFile);
+			} else if (TextGridExporterProperties.FORMAT_SHORT_TEXT.equals(format)) {
+				return TextGridWriter.shortText(outputFile, Charset.defaultCharset(), EOL.WINDOWS);
+			} else {
+				return TextGridWriter.text(outputFile, Charset.defaultCharset(), EOL.WINDOWS);
+			}
+		}
+
+		@Override
+		public TextGridExporterProperties getProperties() {
+			return (TextGridExporterProperties) super.getProperties();
 		}
 	}
 }
@@ -0,0 +1,52 @@
+package org.corpus_tools.pepperModules.textgrid;
+
+import org.corpus_tools.pepper.modules.PepperModuleProperties;
+import org.corpus_tools.pepper.modules.PepperModuleProperty;
+import org.corpus_tools.pepper.modules.exceptions.PepperModulePropertyException;
+
+public class TextGridExporterProperties extends PepperModuleProperties {
+
+	public static final String PROP_FORMAT = "format";
+
+	public static final String FORMAT_LONG_TEXT = "longText";
+	public static final String FORMAT_SHORT_TEXT = "shortText";
+	public static final String FORMAT_BINARY = "binary";
+
+	public static final String PROP_COMPRESS = "compress";
+
+	public TextGridExporterProperties() {
+		addProperty(new PepperModuleProperty<>(PROP_FORMAT, String.class,
+				"Flavour of the written TextGrid files: '" + FORMAT_LONG_TEXT + "' (Praat's default text format), '"
+						+ FORMAT_SHORT_TEXT + "' (text without decorations) or '" + FORMAT_BINARY
+						+ "' (Praat's binary format, which is smaller and faster to load).",
+				FORMAT_LONG_TEXT, false));
+		addProperty(PepperModuleProperty.create()
+				.withName(PROP_COMPRESS)
+				.withType(Boolean.class).withDescription("If set to true, the TextGrid files are gzip compressed and get the additional ending '.gz'. The importer reads such files directly.")
+				.withDefaultValue(false).build());
+	}
+
+	/**
+	 * Rejects a format other than the three known ones, which would otherwise be written as long text
+	 */
+	@Override
+	public boolean checkProperty(PepperModuleProperty<?> prop) {
+		super.checkProperty(prop);
+		if (PROP_FORMAT.equals(prop.getName()) && prop.getValue() != null
+				&& !FORMAT_LONG_TEXT.equals(prop.getValue()) && !FORMAT_SHORT_TEXT.equals(prop.getValue())
+				&& !FORMAT_BINARY.equals(prop.getValue())) {
+			throw new PepperModulePropertyException("Unknown value '" + prop.getValue() + "' of the property '"
+					+ PROP_FORMAT + "', expected '" + FORMAT_LONG_TEXT + "', '" + FORMAT_SHORT_TEXT + "' or '"
+					+ FORMAT_BINARY + "'.");
+		}
+		return true;
+	}
+
+	public String getFormat() {
+		return (String) getProperty(PROP_FORMAT).getValue();
+	}
+
+	public boolean isCompress() {
+		return (Boolean) getProperty(PROP_COMPRESS).getValue();
+	}
+}
@@ -2,16 +2,21 @@ package org.corpus_tools.pepperModules.textgrid;
 
 import com.google.common.io.Files;
 import java.io.File;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
 import org.corpus_tools.pepper.common.DOCUMENT_STATUS;
 import org.corpus_tools.pepper.common.PepperConfiguration;
@@ -21,10 +26,12 @@ import org.corpus_tools.pepper.modules.PepperImporter;
 import org.corpus_tools.pepper.modules.PepperMapper;
 import org.corpus_tools.pepper.modules.PepperModule;
 import org.corpus_tools.pepper.modules.PepperModuleProperties;
+import org.corpus_tools.pepper.modules.exceptions.PepperModuleException;
 import org.corpus_tools.pepper.modules.exceptions.PepperModuleNotReadyException;
 import org.corpus_tools.salt.SALT_TYPE;
 import org.corpus_tools.salt.SaltFactory;
 import org.corpus_tools.salt.common.SCorpus;
+import org.corpus_tools.salt.common.SCorpusGraph;
 import org.corpus_tools.salt.common.SDocument;
 import org.corpus_tools.salt.common.SMedialDS;
 import org.corpus_tools.salt.common.SMedialRelation;
@@ -38,9 +45,11 @@ import org.corpus_tools.salt.graph.Identifier;
 import org.corpus_tools.salt.util.DataSourceSequence;
 import org.eclipse.emf.common.util.URI;
 import org.osgi.service.component.annotations.Component;
+import org.praat.CollectionFile;
 import org.praat.Interval;
 import org.praat.IntervalTier;
-import org.praat.Point;
+import org.praat.LabelTable;
+import org.praat.PraatCodec;
 import org.praat.PraatFile;
 import org.praat.PraatObject;
 import org.praat.TextGrid;
@@ -58,6 +67,25 @@ public class TextGridImporter extends PepperImporterImpl implements PepperImport
    **/
   private static final Logger log = LoggerFactory.getLogger(TextGridImporter.class);
 
+  /**
+   * file ending of Praat Collections, which hold several objects such as TextGrids, in lower case
+   */
+  static final String COLLECTION_ENDING = ".collection";
+
+  private static final String TEXT_GRID = "TextGrid";
+
+  /**
+   * separates the number of a TextGrid in a Collection from the byte range of its block in the
+   * fragment of its resource, e.g. <code>3@1024-2048</code>
+   */
+  private static final char BLOCK_SEPARATOR = '@';
+
+  /**
+   * the corpus archives by their URI, listed once while importing the corpus structure and shared
+   * by the mappers of their entries
+   */
+  private final Map<URI, TextGridArchives.Archive> archiveIndex = new ConcurrentHashMap<>();
+
   /**
    * <strong>OVERRIDE THIS METHOD FOR CUSTOMIZATION</strong> <br/>
    * A constructor for your module. Set the coordinates, with which your module shall be registered.
@@ -73,6 +101,8 @@ public class TextGridImporter extends PepperImporterImpl implements PepperImport
     addSupportedFormat("TextGrid", "1.0", null);
     getDocumentEndings().add("TextGrid");
     getDocumentEndings().add("textGrid");
+    getDocumentEndings().add("TextGrid" + PraatFile.GZIP_ENDING);
+    getDocumentEndings().add("textGrid" + PraatFile.GZIP_ENDING);
     setProperties(new TextGridImporterProperties());
   }
 
@@ -85,6 +115,10 @@ public class TextGridImporter extends PepperImporterImpl implements PepperImport
    */
   public PepperMapper createPepperMapper(Identifier Identifier) {
     TextGridMapper mapper = new TextGridMapper();
+    URI resource = getIdentifier2ResourceTable().get(Identifier);
+    if (resource != null && resource.hasFragment()) {
+      mapper.archive = archiveIndex.get(resource.trimFragment());
+    }
     /**
      * TODO Set the exact resource, which should be processed by the created mapper object, if the
      * default mechanism of importCorpusStructure() was used, the resource could be retrieved by
@@ -101,6 +135,11 @@ public class TextGridImporter extends PepperImporterImpl implements PepperImport
    */
   public static class TextGridMapper extends PepperMapperImpl {
 
+    /**
+     * the listed archive holding the resource, if it is an archive entry
+     */
+    TextGridArchives.Archive archive;
+
     @Override
     public DOCUMENT_STATUS mapSCorpus() {
       // getScorpus() returns the current corpus object.
@@ -109,37 +148,39 @@ public class TextGridImporter extends PepperImporterImpl implements PepperImport
       return (DOCUMENT_STATUS.COMPLETED);
     }
 
-    private Map<Double, Integer> mapTimeline(TextGrid grid) {
+    private PointsOfTime mapTimeline(TextGrid grid) {
 
-      // iterate over all tiers to find the points of time for the timeline and sort
-      // them
-      TreeSet<Double> pots = new TreeSet<>();
+      // iterate over all tiers to find the points of time for the timeline, each tier as a sorted
+      // run of its own, and merge them
+      PointsOfTime time2pot = new PointsOfTime(getProperties().getTimeResolution());
       for (PraatObject gridObject : grid) {
         if (gridObject instanceof TextTier) {
           TextTier textTier = (TextTier) gridObject;
-          for (Point p : textTier) {
-            pots.add(p.getTime());
+          time2pot.beginRun(textTier);
+          for (int i = 0; i < textTier.size(); i++) {
+            time2pot.add(textTier.getStart(i));
           }
         } else if (gridObject instanceof IntervalTier) {
           IntervalTier tier = (IntervalTier) gridObject;
-          for (Interval i : tier) {
+          time2pot.beginRun(tier);
+          for (int i = 0; i < tier.size(); i++) {
             // add both times
-            pots.add(i.getStartTime());
-            pots.add(i.getEndTime());
+            time2pot.add(tier.getStart(i));
+            time2pot.add(tier.getEnd(i));
           }
         }
       }
       STimeline timeline = SaltFactory.createSTimeline();
       getDocument().getDocumentGraph().setTimeline(timeline);
-      Map<Double, Integer> time2pot = new LinkedHashMap<>();
-      for (double timePoint : pots) {
+      int count = time2pot.sort();
+      for (int rank = 0; rank < count; rank++) {
         timeline.increasePointOfTime();
-        time2pot.put(timePoint, timeline.getEnd());
+        time2pot.setPointOfTime(rank, timeline.getEnd());
       }
       return time2pot;
     }
 
-    private void mapTokens(TextGrid grid, SMedialDS mediaFile, Map<Double, Integer> time2pot) {
+    private void mapTokens(TextGrid grid, SMedialDS mediaFile, PointsOfTime time2pot) {
       Map<String, String> anno2prim = getProperties().getAnnoPrimRel();
       Set<String> annoTiers = anno2prim.keySet();
       Set<String> primaryTiers = new HashSet<>(anno2prim.values());
@@ -158,7 +199,7 @@ public class TextGridImporter extends PepperImporterImpl implements PepperImport
             ListIterator<Interval> intervals = tier.iterator();
             while (intervals.hasNext()) {
               Interval tokInterval = intervals.next();
-              if (!tokInterval.getText().isEmpty()) {
+              if (!tokInterval.isEmpty()) {
                 int tokStart = text.length();
                 text.append(tokInterval.getText());
                 int tokEnd = text.length();
@@ -181,9 +222,9 @@ public class TextGridImporter extends PepperImporterImpl implements PepperImport
                 }
 
                 // map to point in time on timeline
-                Integer potStart = time2pot.get(tokInterval.getStartTime());
-                Integer potEnd = time2pot.get(tokInterval.getEndTime());
-                if (potStart != null && potEnd != null) {
+                int potStart = time2pot.getStart(tier, intervals.previousIndex());
+                int potEnd = time2pot.getEnd(tier, intervals.previousIndex());
+                if (potStart >= 0 && potEnd >= 0) {
                   STimelineRelation timeRel = SaltFactory.createSTimelineRelation();
                   timeRel.setSource(tok);
                   timeRel.setTarget(getDocument().getDocumentGraph().getTimeline());
@@ -205,7 +246,7 @@ public class TextGridImporter extends PepperImporterImpl implements PepperImport
       }
     }
 
-    private void mapSpans(TextGrid grid, Map<Double, Integer> time2pot) {
+    private void mapSpans(TextGrid grid, PointsOfTime time2pot) {
       Map<String, String> annoPrimRel = getProperties().getAnnoPrimRel();
 
       for (PraatObject gridObject : grid) {
@@ -217,10 +258,10 @@ public class TextGridImporter extends PepperImporterImpl implements PepperImport
             ListIterator<Interval> intervals = tier.iterator();
             while (intervals.hasNext()) {
               Interval spanInterval = intervals.next();
-              Integer potStart = time2pot.get(spanInterval.getStartTime());
-              Integer potEnd = time2pot.get(spanInterval.getEndTime());
-              if (spanInterval.getText() != null && !spanInterval.getText().isEmpty()
-                  && potStart != null && potEnd != null) {
+              int potStart = time2pot.getStart(tier, intervals.previousIndex());
+              int potEnd = time2pot.getEnd(tier, intervals.previousIndex());
+              if (!spanInterval.isEmpty()
+                  && potStart >= 0 && potEnd >= 0) {
                 // find matching tokens for the interval
                 DataSourceSequence<Integer> seq = new DataSourceSequence<>();
                 seq.setDataSource(getDocument().getDocumentGraph().getTimeline());
@@ -306,7 +347,7 @@ public class TextGridImporter extends PepperImporterImpl implements PepperImport
                             spanInterval.getEndTime()));
                   }
                 } else {
-                  if (spanInterval.getText() != null && !spanInterval.getText().isEmpty()) {
+                  if (!spanInterval.isEmpty()) {
                     SSpan span =
                         getDocument().getDocumentGraph().createSpan(filteredOverlappedToken);
                     span.createAnnotation(null, tier.getName(), spanInterval.getText());
@@ -352,15 +393,7 @@ public class TextGridImporter extends PepperImporterImpl implements PepperImport
       log.debug("Importing the file {}.", resource);
 
       try {
-        PraatObject rootObj = null;
-        try {
-          rootObj =
-              PraatFile.readFromFile(new File(resource.toFileString()), StandardCharsets.UTF_8);
-        } catch (IllegalArgumentException ex) {
-          // try again with UTF-16
-          rootObj =
-              PraatFile.readFromFile(new File(resource.toFileString()), StandardCharsets.UTF_16);
-        }
+        PraatObject rootObj = read(resource);
 
         if (rootObj instanceof TextGrid) {
           TextGrid grid = (TextGrid) rootObj;
@@ -369,20 +402,22 @@ public class TextGridImporter extends PepperImporterImpl implements PepperImport
           String audioExt = getProperties().getAudioExtension();
           File originalFile = new File(getResourceURI().toFileString());
           File mediaFile = new File(originalFile.getParent(),
-              Files.getNameWithoutExtension(originalFile.getPath()) + audioExt);
+              getDocumentName(originalFile.getName()) + audioExt);
 
           SMedialDS mediaFileDS = null;
 
-          if (mediaFile.isFile()) {
+          // media files are not looked up inside archives
+          if (!resource.hasFragment() && mediaFile.isFile()) {
             mediaFileDS = SaltFactory.createSMedialDS();
             mediaFileDS.setMediaReference(URI.createFileURI(mediaFile.getAbsolutePath()));
             getDocument().getDocumentGraph().addNode(mediaFileDS);
           }
 
-
-          Map<Double, Integer> time2pot = mapTimeline(grid);
-          mapTokens(grid, mediaFileDS, time2pot);
-          mapSpans(grid, time2pot);
+          try {
+            mapGrid(grid, mediaFileDS);
+          } finally {
+            grid.free();
+          }
 
         }
       } catch (Exception ex) {
@@ -400,12 +435,286 @@ public class TextGridImporter extends PepperImporterImpl implements PepperImport
       return (DOCUMENT_STATUS.COMPLETED);
     }
 
+    /**
+     * Map the tiers of the grid onto the document graph. Only the labels of the tiers mapped are
+     * created, and not those of their empty intervals.
+     */
+    void mapGrid(TextGrid grid, SMedialDS mediaFileDS) {
+      PointsOfTime time2pot = mapTimeline(grid);
+      mapTokens(grid, mediaFileDS, time2pot);
+      mapSpans(grid, time2pot);
+    }
+
+    /**
+     * Read the resource through the codec of the current thread, which keeps its buffers, coders and
+     * label table from one document to the next.
+     */
+    PraatObject read(URI resource) throws Exception {
+      try (PraatCodec codec = PraatCodec.acquire()) {
+        // the charset is either configured for the whole corpus or detected from the first bytes
+        LabelTable labels = getProperties().isInternLabels() ? codec.getLabelTable() : null;
+        // large tiers are built off the heap as they are read, so they never take up the heap
+        codec.setOffHeapThreshold(getProperties().getOffHeapThreshold());
+        ForkJoinPool pool = getProperties().isParallelTiers() ? ForkJoinPool.commonPool() : null;
+        PraatObject rootObj;
+        File container =
+            resource.hasFragment() ? new File(resource.trimFragment().toFileString()) : null;
+        if (container != null && isCollection(container)) {
+          // the fragment numbers a TextGrid of a Collection, and only that one is parsed
+          String fragment = resource.fragment();
+          int range = fragment.indexOf(BLOCK_SEPARATOR);
+          if (range >= 0) {
+            // only the bytes of the block found while importing the corpus structure are read
+            int dash = fragment.indexOf('-', range);
+            rootObj = CollectionFile.read(container, getProperties().getCharset(),
+                Long.parseLong(fragment.substring(range + 1, dash)),
+                Long.parseLong(fragment.substring(dash + 1)), labels, getTierFilter(), pool);
+          } else {
+            // only Collections whose byte ranges could not be told are parsed whole again for
+            // every document
+            CollectionFile collection = CollectionFile.open(container, getProperties().getCharset());
+            rootObj = collection.read(Integer.parseInt(fragment) - 1, labels, getTierFilter(), pool);
+          }
+        } else if (resource.hasFragment()) {
+          // the fragment names an entry of a corpus archive, which is streamed without extraction
+          // from the offset recorded when the archive was listed
+          String entryName = URI.decode(resource.fragment());
+          try (InputStream entry = archive != null ? archive.openEntry(entryName)
+              : TextGridArchives.openEntry(container, entryName)) {
+            rootObj = codec.read(Channels.newChannel(entry), getProperties().getCharset(), labels,
+                getTierFilter(), pool);
+          }
+        } else {
+          rootObj = codec.read(new File(resource.toFileString()), getProperties().getCharset(),
+              labels, getTierFilter(), pool);
+        }
+        if (labels != null) {
+          log.debug("Interned {} distinct labels of {} with a hit rate of {}.", labels.size(),
+              resource, labels.getHitRate());
+        }
+        return rootObj;
+      }
+    }
+
+    /**
+     * Unless unknown tiers are mapped as tokens, only the tiers named in the annoPrimRel property
+     * are used, so all other tiers can be skipped while reading.
+     * 
+     * @return a filter accepting the names of the tiers to read, or null to read all tiers
+     */
+    private Predicate<String> getTierFilter() {
+      if (getProperties().isMapUnknownAsToken()) {
+        return null;
+      }
+      Map<String, String> anno2prim = getProperties().getAnnoPrimRel();
+      Set<String> tierNames = new HashSet<>(anno2prim.keySet());
+      tierNames.addAll(anno2prim.values());
+      return tierNames::contains;
+    }
+
     @Override
     public TextGridImporterProperties getProperties() {
       return (TextGridImporterProperties) super.getProperties();
     }
   }
 
+  /**
+   * Imports the corpus structure of the TextGrid files on disk and additionally adds every zip or
+   * tar archive found below the corpus path as a corpus, with one document per TextGrid entry. The
+   * resource of such a document is the URI of the archive with the entry name as fragment. Praat
+   * Collection files become corpora in the same way, with one document per TextGrid they hold and
+   * its number in the Collection, followed by the byte range of its block where it is known, as
+   * fragment.
+   */
+  @Override
+  public void importCorpusStructure(SCorpusGraph corpusGraph) throws PepperModuleException {
+    super.importCorpusStructure(corpusGraph);
+
+    File corpusPath = new File(getCorpusDesc().getCorpusPath().toFileString()).getAbsoluteFile();
+    List<File> archives = new ArrayList<>();
+    List<File> compressed = new ArrayList<>();
+    List<File> collections = new ArrayList<>();
+    findArchives(corpusPath, archives, compressed, collections);
+    if (archives.isEmpty() && compressed.isEmpty() && collections.isEmpty()) {
+      return;
+    }
+
+    // corpora already created for directories
+    Map<File, SCorpus> dir2corpus = new HashMap<>();
+    for (Map.Entry<Identifier, URI> entry : getIdentifier2ResourceTable().entrySet()) {
+      if (entry.getKey().getIdentifiableElement() instanceof SCorpus && entry.getValue().isFile()) {
+        dir2corpus.put(new File(entry.getValue().toFileString()).getAbsoluteFile(),
+            (SCorpus) entry.getKey().getIdentifiableElement());
+      }
+    }
+
+    // compressed TextGrids which the generic file walk did not recognize by their double ending
+    Set<URI> resources = new HashSet<>(getIdentifier2ResourceTable().values());
+    for (File file : compressed) {
+      URI fileURI = URI.createFileURI(file.getAbsolutePath());
+      if (!resources.contains(fileURI)) {
+        SDocument document = corpusGraph.createDocument(
+            getDirectoryCorpus(corpusGraph, file.getParentFile(), corpusPath, dir2corpus),
+            getDocumentName(file.getName()));
+        getIdentifier2ResourceTable().put(document.getIdentifier(), fileURI);
+      }
+    }
+
+    List<String> endings = new ArrayList<>(getDocumentEndings());
+    for (File archive : archives) {
+      TextGridArchives.Archive entries;
+      try {
+        entries = TextGridArchives.Archive.open(archive, endings);
+      } catch (IOException ex) {
+        throw new PepperModuleException("Could not read the corpus archive " + archive, ex);
+      }
+      List<String> entryNames = entries.getEntries();
+      if (entryNames.isEmpty()) {
+        continue;
+      }
+      URI archiveURI = URI.createFileURI(archive.getAbsolutePath());
+      archiveIndex.put(archiveURI, entries);
+      SCorpus archiveCorpus = corpusGraph.createCorpus(
+          getDirectoryCorpus(corpusGraph, archive.getParentFile(), corpusPath, dir2corpus),
+          TextGridArchives.getBaseName(archive));
+      getIdentifier2ResourceTable().put(archiveCorpus.getIdentifier(), archiveURI);
+
+      // directories inside the archive become sub corpora, like directories on disk
+      Map<String, SCorpus> path2corpus = new HashMap<>();
+      for (String entryName : entryNames) {
+        SCorpus parent = archiveCorpus;
+        String path = "";
+        String[] segments = entryName.split("/");
+        for (int i = 0; i < segments.length - 1; i++) {
+          if (segments[i].isEmpty() || ".".equals(segments[i])) {
+            continue;
+          }
+          path = path + segments[i] + "/";
+          SCorpus subCorpus = path2corpus.get(path);
+          if (subCorpus == null) {
+            subCorpus = corpusGraph.createCorpus(parent, segments[i]);
+            path2corpus.put(path, subCorpus);
+            getIdentifier2ResourceTable().put(subCorpus.getIdentifier(), archiveURI);
+          }
+          parent = subCorpus;
+        }
+        SDocument document =
+            corpusGraph.createDocument(parent, getDocumentName(segments[segments.length - 1]));
+        getIdentifier2ResourceTable().put(document.getIdentifier(),
+            archiveURI.appendFragment(URI.encodeFragment(entryName, false)));
+      }
+    }
+
+    for (File file : collections) {
+      importCollection(corpusGraph, file,
+          getDirectoryCorpus(corpusGraph, file.getParentFile(), corpusPath, dir2corpus));
+    }
+  }
+
+  /**
+   * Add a Collection file as a corpus with one document per TextGrid in it. Only the class and name
+   * of each object are read here, skipping over the tiers; the mappers parse the TextGrids later,
+   * each only its own. The byte ranges of the objects are kept in the fragments, so that each mapper
+   * reads just its block, in every format and compressed or not.
+   */
+  private void importCollection(SCorpusGraph corpusGraph, File file, SCorpus parent) {
+    URI collectionURI = URI.createFileURI(file.getAbsolutePath());
+    String baseName = getDocumentName(file.getName());
+    SCorpus collectionCorpus = null;
+    Set<String> names = new HashSet<>();
+    try {
+      CollectionFile collection = CollectionFile.open(file, getProperties().getCharset());
+      for (int i = 0; i < collection.size(); i++) {
+        if (!TEXT_GRID.equals(collection.getClassName(i))) {
+          log.debug("Skipping object {} of {}, which is a {}.", i + 1, file,
+              collection.getClassName(i));
+          continue;
+        }
+        if (collectionCorpus == null) {
+          collectionCorpus = corpusGraph.createCorpus(parent, baseName);
+          getIdentifier2ResourceTable().put(collectionCorpus.getIdentifier(), collectionURI);
+        }
+        // objects without a name of their own are named after the Collection and their number
+        String name = collection.getName(i);
+        if (name == null || name.isEmpty() || !names.add(name)) {
+          name = baseName + "_" + (i + 1);
+        }
+        SDocument document = corpusGraph.createDocument(collectionCorpus, name);
+        String fragment = String.valueOf(i + 1);
+        if (collection.isIndexed()) {
+          fragment = fragment + BLOCK_SEPARATOR + collection.getOffset(i) + "-"
+              + collection.getEnd(i);
+        }
+        getIdentifier2ResourceTable().put(document.getIdentifier(),
+            collectionURI.appendFragment(fragment));
+      }
+    } catch (Exception ex) {
+      throw new PepperModuleException("Could not read the Collection file " + file, ex);
+    }
+  }
+
+  /**
+   * @return true if the file name has the ending of a Praat Collection, possibly compressed
+   */
+  static boolean isCollection(File file) {
+    String name = file.getName().toLowerCase(Locale.ROOT);
+    if (name.endsWith(PraatFile.GZIP_ENDING)) {
+      name = name.substring(0, name.length() - PraatFile.GZIP_ENDING.length());
+    }
+    return name.endsWith(COLLECTION_ENDING);
+  }
+
+  private void findArchives(File file, List<File> archives, List<File> compressed,
+      List<File> collections) {
+    if (file.isDirectory()) {
+      File[] children = file.listFiles();
+      if (children != null) {
+        Arrays.sort(children);
+        for (File child : children) {
+          findArchives(child, archives, compressed, collections);
+        }
+      }
+    } else if (file.isFile() && TextGridArchives.isArchive(file)) {
+      archives.add(file);
+    } else if (file.isFile() && isCollection(file)) {
+      collections.add(file);
+    } else if (file.isFile() && PraatFile.isGzip(file)
+        && TextGridArchives.isTextGrid(file.getName(), new ArrayList<>(getDocumentEndings()))) {
+      compressed.add(file);
+    }
+  }
+
+  /**
+   * @return the file name without its TextGrid ending and without a compression ending
+   */
+  static String getDocumentName(String fileName) {
+    if (fileName.toLowerCase(Locale.ROOT).endsWith(PraatFile.GZIP_ENDING)) {
+      fileName = fileName.substring(0, fileName.length() - PraatFile.GZIP_ENDING.length());
+    }
+    return Files.getNameWithoutExtension(fileName);
+  }
+
+  /**
+   * @return the corpus of the given directory, created with all missing parents if necessary, or
+   *         null if the directory is outside of the corpus path
+   */
+  private SCorpus getDirectoryCorpus(SCorpusGraph corpusGraph, File dir, File corpusPath,
+      Map<File, SCorpus> dir2corpus) {
+    if (dir == null || !dir.toPath().startsWith(corpusPath.toPath())) {
+      return null;
+    }
+    SCorpus corpus = dir2corpus.get(dir);
+    if (corpus == null) {
+      corpus = corpusGraph.createCorpus(
+          getDirectoryCorpus(corpusGraph, dir.getParentFile(), corpusPath, dir2corpus),
+          dir.getName());
+      dir2corpus.put(dir, corpus);
+      getIdentifier2ResourceTable().put(corpus.getIdentifier(),
+          URI.createFileURI(dir.getAbsolutePath()));
+    }
+    return corpus;
+  }
+
   /**
    * <strong>OVERRIDE THIS METHOD FOR CUSTOMIZATION</strong> <br/>
    * This method is called by the pepper framework and returns if a corpus located at the given
@@ -1,5 +1,6 @@
 package org.corpus_tools.pepperModules.textgrid;
 
+import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -7,6 +8,7 @@ import java.util.TreeMap;
 import org.apache.commons.lang3.StringUtils;
 import org.corpus_tools.pepper.modules.PepperModuleProperties;
 import org.corpus_tools.pepper.modules.PepperModuleProperty;
+import org.praat.TimeResolution;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.HashMultimap;
@@ -18,6 +20,11 @@ public class TextGridImporterProperties extends PepperModuleProperties {
 	public static final String PROP_MAP_UNKNOWN_AS_TOKEN = "mapUnknownAsToken";
 	public static final String PROP_AUDIO_EXTENSION = "audioExtension";
 	public static final String PROP_SEARCH_TOKENS = "searchTokens";
+	public static final String PROP_CHARSET = "charset";
+	public static final String PROP_INTERN_LABELS = "internLabels";
+	public static final String PROP_PARALLEL_TIERS = "parallelTiers";
+	public static final String PROP_TIME_RESOLUTION = "timeResolution";
+	public static final String PROP_OFF_HEAP_THRESHOLD = "offHeapThreshold";
 
 	public TextGridImporterProperties() {
 		addProperty(new PepperModuleProperty<>(PROP_ANNO_PRIM_REL, String.class,
@@ -32,6 +39,25 @@ public class TextGridImporterProperties extends PepperModuleProperties {
 				.withName(PROP_SEARCH_TOKENS)
 				.withType(Boolean.class).withDescription("If no corresponding token can be found on the explicitly mentioned tier, an additional search on that tier is executed. This captures cases when the annotation boundaries do not exactly match with the token boundaries, but are within the interval of the respective token.")
 				.withDefaultValue(false).build());
+		addProperty(new PepperModuleProperty<String>(PROP_CHARSET, String.class,
+				"Charset of all TextGrid files of the corpus, e.g. 'UTF-8' or 'UTF-16'. If not set, the charset of each file is detected from its byte order mark and its first bytes.",
+				null, false));
+		addProperty(PepperModuleProperty.create()
+				.withName(PROP_INTERN_LABELS)
+				.withType(Boolean.class).withDescription("If set to true, the labels of a TextGrid file are created while it is read, and equal labels share a single String instance, which saves memory for tiers with a small vocabulary such as phone tiers. By default, labels are kept undecoded until the mapping asks for them, so the labels of unused tiers and of empty intervals are never created.")
+				.withDefaultValue(false).build());
+		addProperty(PepperModuleProperty.create()
+				.withName(PROP_PARALLEL_TIERS)
+				.withType(Boolean.class).withDescription("If set to true, the tiers of a TextGrid in long text format are parsed in parallel, which speeds up the import of very large single documents.")
+				.withDefaultValue(false).build());
+		addProperty(PepperModuleProperty.create()
+				.withName(PROP_TIME_RESOLUTION)
+				.withType(Integer.class).withDescription("Number of ticks per second to which the times of all tiers are rounded before they are matched, e.g. 1000000 for microseconds. The same instant written with different digits on two tiers then ends up on a single point of time. If set to 0, times must match exactly.")
+				.withDefaultValue(0).build());
+		addProperty(PepperModuleProperty.create()
+				.withName(PROP_OFF_HEAP_THRESHOLD)
+				.withType(Integer.class).withDescription("Number of intervals or points from which on a tier of a TextGrid is kept in direct memory outside the Java heap, e.g. 1000000 for full-day forced alignments. The number of items of a tier is known before its items are read, so such a tier is built off the heap right away and never takes up the heap, neither while reading nor while mapping. The memory is given back as soon as the document is mapped. If set to 0, tiers always stay on the heap.")
+				.withDefaultValue(0).build());
 	}
 
 	public Map<String, String> getAnnoPrimRel() {
@@ -69,4 +95,42 @@ public class TextGridImporterProperties extends PepperModuleProperties {
 	public boolean searchTokens() {
 		return (Boolean) getProperty(PROP_SEARCH_TOKENS).getValue();
 	}
+	
+	public boolean isInternLabels() {
+		return (Boolean) getProperty(PROP_INTERN_LABELS).getValue();
+	}
+
+	public boolean isParallelTiers() {
+		return (Boolean) getProperty(PROP_PARALLEL_TIERS).getValue();
+	}
+
+	/**
+	 * @return the resolution times are rounded to, or <code>null</code> if they must match exactly
+	 */
+	public TimeResolution getTimeResolution() {
+		Integer ticksPerSecond = (Integer) getProperty(PROP_TIME_RESOLUTION).getValue();
+		if (ticksPerSecond == null || ticksPerSecond <= 0) {
+			return null;
+		}
+		return new TimeResolution(ticksPerSecond);
+	}
+
+	/**
+	 * @return the number of items from which on a TextGrid is moved off the heap, or 0 if it never is
+	 */
+	public int getOffHeapThreshold() {
+		Integer threshold = (Integer) getProperty(PROP_OFF_HEAP_THRESHOLD).getValue();
+		return threshold == null || threshold < 0 ? 0 : threshold;
+	}
+
+	/**
+	 * @return the configured charset, or <code>null</code> if it should be detected for each file
+	 */
+	public Charset getCharset() {
+		String name = (String) getProperty(PROP_CHARSET).getValue();
+		if (name == null || name.trim().isEmpty()) {
+			return null;
+		}
+		return Charset.forName(name.trim());
+	}
 }
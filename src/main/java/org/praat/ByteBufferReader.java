@@ -0,0 +1,136 @@
+/*
+ * #%L
+ * LabelUtils
+ * %%
+ * Copyright (C) 2012 INRIA
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.praat;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reader decoding the remaining bytes of a (possibly memory-mapped) {@link ByteBuffer} on demand, so that the text
+ * lexer never needs a decoded copy of the whole file. Given a channel, the buffer is refilled from it whenever its bytes
+ * have been decoded, so a file of any size is read through a buffer of fixed size.
+ */
+final class ByteBufferReader extends Reader {
+
+	private final ByteBuffer bytes;
+	private final CharsetDecoder decoder;
+
+	/**
+	 * Channel the buffer is refilled from, or null if the buffer holds all bytes
+	 */
+	private final ReadableByteChannel channel;
+	private boolean endOfInput;
+	private boolean draining = false;
+	private boolean flushed = false;
+
+	/**
+	 * Number of bytes dropped from the buffer by refills
+	 */
+	private long consumed;
+
+	ByteBufferReader(ByteBuffer bytes, Charset charset) {
+		this(bytes, charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE));
+	}
+
+	/**
+	 * @param decoder
+	 *            Decoder in its reset state, which this reader uses exclusively until the end of the bytes
+	 */
+	ByteBufferReader(ByteBuffer bytes, CharsetDecoder decoder) {
+		this(bytes, decoder, null);
+	}
+
+	/**
+	 * @param bytes
+	 *            First bytes of the input, in a buffer this reader may compact and refill
+	 * @param channel
+	 *            Channel with the rest of the input, which is read up to its end but not closed
+	 */
+	ByteBufferReader(ByteBuffer bytes, CharsetDecoder decoder, ReadableByteChannel channel) {
+		this.bytes = bytes;
+		this.decoder = decoder;
+		this.channel = channel;
+		endOfInput = channel == null;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (flushed) {
+			return -1;
+		}
+		CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+		CoderResult result = CoderResult.UNDERFLOW;
+		while (!draining) {
+			result = decoder.decode(bytes, out, endOfInput);
+			if (!result.isUnderflow() || out.position() > off) {
+				break;
+			}
+			if (endOfInput) {
+				draining = true;
+			} else {
+				refill();
+			}
+		}
+		if (draining) {
+			result = decoder.flush(out);
+			flushed = result.isUnderflow();
+		}
+		if (result.isError()) {
+			result.throwException();
+		}
+		int read = out.position() - off;
+		return read == 0 && flushed ? -1 : read;
+	}
+
+	/**
+	 * Keep the bytes not decoded yet, such as the start of a split character, and read more behind them
+	 */
+	private void refill() throws IOException {
+		consumed += bytes.position();
+		bytes.compact();
+		int read = 0;
+		while (bytes.hasRemaining() && (read = channel.read(bytes)) >= 0) {
+			// fill the whole buffer, so that the decoder works on large runs
+		}
+		bytes.flip();
+		endOfInput = read < 0;
+	}
+
+	/**
+	 * @return the offset of the next byte to decode, counted from the start of the buffer this reader was created with
+	 */
+	long position() {
+		return consumed + bytes.position();
+	}
+
+	@Override
+	public void close() {
+		// nothing to release, the buffer belongs to the caller
+	}
+
+}
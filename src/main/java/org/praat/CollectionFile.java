@@ -0,0 +1,415 @@
+/*
+ * #%L
+ * LabelUtils
+ * %%
+ * Copyright (C) 2012 INRIA
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.praat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+import org.praat.PraatEventReader.Event;
+
+/**
+ * A Collection file whose objects are read one at a time.<br>
+ * In long text format, the blocks of the objects are found by a quick scan over the raw bytes (see
+ * {@link TierIndex#scanCollection(java.nio.ByteBuffer, Charset)}), and only the block of the requested object is
+ * decoded and parsed. Class and name of an object are read from the first lines of its block. Collections in other
+ * formats, compressed ones and those whose blocks cannot be told apart by the scan are read once when opened, skipping
+ * the tiers of each object without parsing their numbers or creating their labels (see
+ * {@link PraatEventReader#skipTier()}); the byte range each object took up is kept together with its class and name.
+ * Either way, the byte range of an object can be kept to read it later on without opening the Collection again (see
+ * {@link #read(File, Charset, long, long, LabelTable, Predicate, ForkJoinPool)}). Only text in a charset whose
+ * characters cannot be counted back into bytes is read completely when opened.
+ */
+public final class CollectionFile {
+
+	static final String COLLECTION = "Collection";
+
+	/**
+	 * Number of bytes to look at to tell the format and the charset of a file
+	 */
+	private static final int HEAD_LENGTH = 16;
+
+	private final File file;
+	private final TierIndex index;
+	/**
+	 * Byte offsets of the objects found by skipping them, each object ending where the next one starts, or null
+	 */
+	private final long[] bounds;
+	private final String[] classNames;
+	private final String[] names;
+	/**
+	 * Charset of a text file whose objects were skipped, or null
+	 */
+	private final Charset charset;
+	/**
+	 * Objects of a Collection that could not be indexed, or null
+	 */
+	private final List<PraatObject> items;
+
+	private CollectionFile(File file, TierIndex index, long[] bounds, String[] classNames, String[] names,
+			Charset charset, List<PraatObject> items) {
+		this.file = file;
+		this.index = index;
+		this.bounds = bounds;
+		this.classNames = classNames;
+		this.names = names;
+		this.charset = charset;
+		this.items = items;
+	}
+
+	/**
+	 * Open a Collection file, compressed if its name ends with <code>.gz</code>
+	 * 
+	 * @param charset
+	 *            Charset of a text file, or <code>null</code> to detect it
+	 * @throws IllegalArgumentException
+	 *             if the file is not a Praat file or does not hold a Collection
+	 */
+	public static CollectionFile open(File file, Charset charset) throws Exception {
+		CollectionFile collection = open(file, charset, true);
+		// the objects are read whole if the bytes they took up cannot be told
+		return collection != null ? collection : open(file, charset, false);
+	}
+
+	/**
+	 * @param skip
+	 *            whether to skip the objects that cannot be indexed, rather than reading them
+	 * @return the Collection, or <code>null</code> if its objects were to be skipped but their byte ranges could not
+	 *         be told
+	 */
+	private static CollectionFile open(File file, Charset charset, boolean skip) throws Exception {
+		PraatFile praatFile = PraatFile.open(file, charset);
+		boolean retained = false;
+		try {
+			if (!COLLECTION.equals(praatFile.objectClass)) {
+				throw new IllegalArgumentException("Not a Collection: " + file);
+			}
+			int size = praatFile.readInteger();
+			// compressed files are streamed, so their text is not in memory to be scanned
+			if (praatFile instanceof PraatTextFile && !(praatFile instanceof PraatShortTextFile)
+					&& ((PraatTextFile) praatFile).source != null) {
+				PraatTextFile textFile = (PraatTextFile) praatFile;
+				TierIndex index = TierIndex.scanCollection(textFile.source, textFile.charset);
+				if (index != null && index.size() == size) {
+					// the blocks are views of the bytes read, which must stay valid
+					retained = true;
+					return new CollectionFile(file, index, null, null, null, null, null);
+				}
+			}
+			if (skip) {
+				return skip(file, praatFile, size);
+			}
+			List<PraatObject> items = new ArrayList<PraatObject>(size);
+			for (int i = 0; i < size; i++) {
+				items.add(praatFile.readPayLoad());
+			}
+			return new CollectionFile(file, null, null, null, null, null, items);
+		} finally {
+			praatFile.closeInput();
+			if (!retained) {
+				praatFile.codec.close();
+			}
+		}
+	}
+
+	/**
+	 * Skip over the objects of a Collection, keeping their classes, names and byte ranges
+	 * 
+	 * @return the Collection, or <code>null</code> if the byte ranges cannot be told
+	 */
+	private static CollectionFile skip(File file, PraatFile praatFile, int size) throws Exception {
+		long[] bounds = new long[size + 1];
+		String[] classNames = new String[size];
+		String[] names = new String[size];
+		bounds[0] = praatFile.position();
+		if (bounds[0] < 0) {
+			return null;
+		}
+		for (int i = 0; i < size; i++) {
+			classNames[i] = praatFile.readClassName();
+			names[i] = praatFile.readString();
+			skipPayload(praatFile, classNames[i]);
+			bounds[i + 1] = praatFile.position();
+			if (bounds[i + 1] < 0) {
+				return null;
+			}
+		}
+		Charset charset = praatFile instanceof PraatTextFile ? ((PraatTextFile) praatFile).charset : null;
+		return new CollectionFile(file, null, bounds, classNames, names, charset, null);
+	}
+
+	private static void skipPayload(PraatFile praatFile, String className) throws Exception {
+		if (!PraatEventReader.TEXT_GRID.equals(className) && !PraatEventReader.isTierClass(className)) {
+			// other objects cannot be skipped, but reading them takes up the same bytes
+			praatFile.readPayload(className);
+			return;
+		}
+		PraatEventReader events = new PraatEventReader(praatFile, className);
+		// no tier is accepted, so all tiers of a TextGrid are skipped on the way to its end
+		events.setTierFilter(name -> false);
+		if (events.next() == Event.TIER_START) {
+			events.skipTier();
+		} else {
+			events.next();
+		}
+	}
+
+	/**
+	 * @return the number of objects in the Collection
+	 */
+	public int size() {
+		if (index != null) {
+			return index.size();
+		}
+		return bounds != null ? names.length : items.size();
+	}
+
+	/**
+	 * @return true if the byte ranges of the objects are known, so that each object can be read on its own
+	 */
+	public boolean isIndexed() {
+		return index != null || bounds != null;
+	}
+
+	/**
+	 * @return the charset of the blocks, or <code>null</code> if the objects are not indexed or stored in binary
+	 */
+	public Charset getCharset() {
+		return index != null ? index.getCharset() : charset;
+	}
+
+	/**
+	 * @return the byte offset in the file of the block of the object at the given index, or -1 if the objects are not
+	 *         indexed. The offsets of compressed files count the bytes after decompression.
+	 */
+	public long getOffset(int index) {
+		if (this.index != null) {
+			return this.index.getOffset(index);
+		}
+		return bounds != null ? bounds[checkIndex(index)] : -1;
+	}
+
+	/**
+	 * @return the byte offset in the file just after the block of the object at the given index, or -1 if the objects
+	 *         are not indexed
+	 */
+	public long getEnd(int index) {
+		if (this.index != null) {
+			return this.index.getEnd(index);
+		}
+		return bounds != null ? bounds[checkIndex(index) + 1] : -1;
+	}
+
+	/**
+	 * @return the Praat class of the object at the given index, e.g. <code>TextGrid</code>
+	 */
+	public String getClassName(int index) throws IOException {
+		if (items != null) {
+			return items.get(index).getClass().getSimpleName();
+		} else if (bounds != null) {
+			return classNames[checkIndex(index)];
+		}
+		try (PraatCodec codec = PraatCodec.acquire()) {
+			return openBlock(index, codec).readClassName();
+		}
+	}
+
+	/**
+	 * @return the name of the object at the given index
+	 */
+	public String getName(int index) throws IOException {
+		if (items != null) {
+			return items.get(index).getName();
+		} else if (bounds != null) {
+			return names[checkIndex(index)];
+		}
+		try (PraatCodec codec = PraatCodec.acquire()) {
+			PraatTextFile block = openBlock(index, codec);
+			block.readClassName();
+			return block.readString();
+		}
+	}
+
+	/**
+	 * Read the object at the given index
+	 * 
+	 * @param labels
+	 *            Table to intern the labels of tiers with, or <code>null</code>
+	 * @param tierFilter
+	 *            Accepts the names of the tiers of a TextGrid to read, or <code>null</code> to read all tiers
+	 */
+	public PraatObject read(int index, LabelTable labels, Predicate<String> tierFilter) throws Exception {
+		return read(index, labels, tierFilter, null);
+	}
+
+	/**
+	 * Read the object at the given index
+	 * 
+	 * @param pool
+	 *            Pool to parse the tiers of a TextGrid in parallel, or <code>null</code> to parse them one after
+	 *            another. Objects of Collections that are not indexed have been read already.
+	 * @see #read(int, LabelTable, Predicate)
+	 */
+	public PraatObject read(int index, LabelTable labels, Predicate<String> tierFilter, ForkJoinPool pool)
+			throws Exception {
+		if (items != null) {
+			return items.get(index);
+		} else if (bounds != null) {
+			return read(file, charset, getOffset(index), getEnd(index), labels, tierFilter, pool);
+		}
+		try (PraatCodec codec = PraatCodec.acquire()) {
+			return readBlock(openBlock(index, codec), labels, tierFilter, pool);
+		}
+	}
+
+	/**
+	 * Read a single object of a Collection file from the byte range of its block, as given by {@link #getOffset(int)}
+	 * and {@link #getEnd(int)}. Only these bytes are read, and the file does not have to be scanned again. Compressed
+	 * files are decompressed up to the end of the block, but nothing before the block is parsed.
+	 * 
+	 * @param charset
+	 *            Charset of a text file, or <code>null</code> to detect it from its first bytes
+	 * @param pool
+	 *            Pool to parse the tiers of a TextGrid in long text format in parallel, or <code>null</code> to parse
+	 *            them one after another
+	 */
+	public static PraatObject read(File file, Charset charset, long offset, long end, LabelTable labels,
+			Predicate<String> tierFilter, ForkJoinPool pool) throws Exception {
+		try (PraatCodec codec = PraatCodec.acquire()) {
+			boolean binary;
+			try {
+				// the head is only valid until the block is read through the same codec
+				ByteBuffer head = readHead(file, codec);
+				binary = PraatFile.isBinary(head);
+				if (!binary && charset == null) {
+					charset = PraatFile.detectCharset(head, StandardCharsets.UTF_8);
+				}
+			} catch (IOException e) {
+				throw new IOException("File not readable: " + file, e);
+			}
+			ByteBuffer block;
+			try {
+				block = readRange(file, offset, end - offset, codec);
+			} catch (IOException e) {
+				throw new IOException("File not readable: " + file, e);
+			}
+			PraatFile reader = binary ? PraatBinaryFile.forBlock(block, codec)
+					: PraatTextFile.forObject(block, charset, codec);
+			return readBlock(reader, labels, tierFilter, pool);
+		}
+	}
+
+	/**
+	 * Read the first bytes of a file through a codec, as many as there are up to {@link #HEAD_LENGTH}
+	 */
+	private static ByteBuffer readHead(File file, PraatCodec codec) throws IOException {
+		if (PraatFile.isGzip(file)) {
+			return inflate(file, 0, HEAD_LENGTH, false);
+		}
+		return codec.readBytes(file, 0, Math.min(HEAD_LENGTH, file.length()));
+	}
+
+	/**
+	 * Read a range of a file through a codec, decompressing compressed files
+	 */
+	private static ByteBuffer readRange(File file, long offset, long length, PraatCodec codec) throws IOException {
+		if (PraatFile.isGzip(file)) {
+			return inflate(file, offset, length, true);
+		}
+		return codec.readBytes(file, offset, length);
+	}
+
+	/**
+	 * Decompress a range of a compressed file. Since such a file cannot be entered in the middle, the bytes before the
+	 * range are decompressed and dropped.
+	 * 
+	 * @param exact
+	 *            whether the range must not extend beyond the end of the file
+	 */
+	private static ByteBuffer inflate(File file, long offset, long length, boolean exact) throws IOException {
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Range too large to be read at once: " + length + " bytes at " + offset + " of "
+					+ file);
+		}
+		try (InputStream in = new GZIPInputStream(new FileInputStream(file), PraatFile.GZIP_BUFFER_SIZE)) {
+			byte[] bytes = new byte[(int) length];
+			int count = 0;
+			long left = offset;
+			while (left > 0) {
+				long skipped = in.skip(left);
+				if (skipped <= 0) {
+					break;
+				}
+				left -= skipped;
+			}
+			int read;
+			while (left == 0 && count < bytes.length && (read = in.read(bytes, count, bytes.length - count)) >= 0) {
+				count += read;
+			}
+			if (exact && count < bytes.length) {
+				throw new IOException("Range of " + length + " bytes at " + offset + " beyond the end of " + file);
+			}
+			return ByteBuffer.wrap(bytes, 0, count);
+		}
+	}
+
+	private PraatTextFile openBlock(int index, PraatCodec codec) {
+		return PraatTextFile.forBlock(this.index.getBlock(index), this.index.getCharset(), codec);
+	}
+
+	private int checkIndex(int index) {
+		if (index < 0 || index >= names.length) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + names.length);
+		}
+		return index;
+	}
+
+	private static PraatObject readBlock(PraatFile block, LabelTable labels, Predicate<String> tierFilter,
+			ForkJoinPool pool) throws Exception {
+		block.setLabelTable(labels);
+		block.tierFilter = tierFilter;
+		// only the tiers of long text can be found ahead of parsing
+		if (pool == null || !(block instanceof PraatTextFile) || block instanceof PraatShortTextFile) {
+			return block.readPayLoad();
+		}
+		PraatTextFile text = (PraatTextFile) block;
+		String className = text.readClassName();
+		String name = text.readString();
+		PraatObject object;
+		if (PraatEventReader.TEXT_GRID.equals(className)) {
+			// the whole block is in memory, so the tiers can be found ahead of parsing
+			object = new TextGrid().read(text, TierIndex.scanObject(text.source, text.charset), pool);
+		} else {
+			object = text.readPayload(className);
+		}
+		object.setName(name);
+		return object;
+	}
+
+}
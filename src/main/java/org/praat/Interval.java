@@ -30,6 +30,14 @@ public class Interval extends Point {
 		endTime = end;
 	}
 
+	/**
+	 * Create a view of an item of a tier, which only creates its text when {@link #getText()} is called
+	 */
+	Interval(double start, double end, Tier tier, int index) {
+		super(start, tier, index);
+		endTime = end;
+	}
+
 	public double getStartTime() {
 		return time;
 	}
@@ -38,9 +46,17 @@ public class Interval extends Point {
 		return endTime;
 	}
 
+	public long getStartTicks(TimeResolution resolution) {
+		return resolution.toTicks(time);
+	}
+
+	public long getEndTicks(TimeResolution resolution) {
+		return resolution.toTicks(endTime);
+	}
+
 	@Override
 	public String toString() {
-		return Objects.toStringHelper(this).add("xmin", time).add("xmax", endTime).add("text", text).toString();
+		return Objects.toStringHelper(this).add("xmin", time).add("xmax", endTime).add("text", getText()).toString();
 	}
 
 	@Override
@@ -48,7 +64,7 @@ public class Interval extends Point {
 		if (obj instanceof Interval) {
 			final Interval other = (Interval) obj;
 			return Objects.equal(this.time, other.time) && Objects.equal(this.endTime, other.endTime)
-					&& Objects.equal(this.text, other.text);
+					&& Objects.equal(this.getText(), other.getText());
 		} else {
 			return false;
 		}
@@ -56,7 +72,7 @@ public class Interval extends Point {
 
 	@Override
 	public int hashCode() {
-		return Objects.hashCode(time, endTime, text);
+		return Objects.hashCode(time, endTime, getText());
 	}
 
 }
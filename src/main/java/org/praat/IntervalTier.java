@@ -17,19 +17,26 @@
  * limitations under the License.
  * #L%
  */
+
 package org.praat;
 
 import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 
+import org.praat.PraatEventReader.Event;
+
 import com.google.common.base.Objects;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 
 public class IntervalTier extends Tier implements Iterable<Interval> {
 
-	private List<Interval> items = Lists.newArrayList();
+	{
+		// unlike point tiers, interval tiers keep end times
+		ends = new double[0];
+	}
 
 	/**
 	 * Construct IntervalTier from a List of Intervals. The time domain of the IntervalTier will be determined by the start and
@@ -45,13 +52,15 @@ public class IntervalTier extends Tier implements Iterable<Interval> {
 		xmin = intervals.get(0).getStartTime();
 		xmax = Iterables.getLast(intervals).getEndTime();
 
-		items = intervals;
+		for (Interval interval : intervals) {
+			addInterval(interval);
+		}
+		trimToSize();
 	}
 
 	public IntervalTier(String name, double startTime, double endTime) {
 		super(name, startTime, endTime);
-		Interval interval = new Interval(startTime, endTime, "");
-		items.add(interval);
+		append(startTime, endTime, "");
 	}
 
 	public IntervalTier(PraatFile file) throws IOException {
@@ -59,54 +68,132 @@ public class IntervalTier extends Tier implements Iterable<Interval> {
 	}
 
 	public void addInterval(Interval interval) {
-		items.add(interval);
+		append(interval.getStartTime(), interval.getEndTime(), interval.getText());
+	}
+
+	IntervalTier(PraatEventReader events) throws IOException {
+		read(events);
 	}
 
 	@Override
 	public PraatObject read(PraatFile file) throws IOException {
-		xmin = file.readDouble();
-		xmax = file.readDouble();
-		int numItems = file.readInteger();
-
-		// iterate over intervals
-		for (int i = 0; i < numItems; i++) {
-			double start = file.readDouble();
-			double end = file.readDouble();
-			String label = file.readString();
-			Interval interval = new Interval(start, end, label);
-			items.add(interval);
-		}
+		PraatEventReader events = new PraatEventReader(file, PraatEventReader.INTERVAL_TIER);
+		events.next();
+		read(events);
 		return this;
 	}
 
+	/**
+	 * Collect the intervals reported by the given reader, which must be at {@link Event#TIER_START}
+	 */
+	private void read(PraatEventReader events) throws IOException {
+		xmin = events.getXmin();
+		xmax = events.getXmax();
+
+		readItems(events, Event.INTERVAL);
+	}
+
 	@Override
 	public void write(PraatFile file) throws IOException {
 		file.writeDouble("xmin =", xmin);
 		file.writeDouble("xmax =", xmax);
-		file.writeInteger("intervals: size =", items.size());
+		file.writeInteger("intervals: size =", size);
 
 		// iterate over items
-		int p = 1;
-		for (Interval point : items) {
-			file.writeLine("intervals [%d]:", p++);
+		for (int i = 0; i < size; i++) {
+			file.writeItemHeading("intervals", i + 1);
 			file.increaseIndent();
-			file.writeDouble("xmin =", point.getStartTime());
-			file.writeDouble("xmax =", point.getEndTime());
-			file.writeString("text =", point.getText());
+			file.writeDouble("xmin =", getStart(i));
+			file.writeDouble("xmax =", getEnd(i));
+			file.writeString("text =", getLabel(i));
 			file.decreaseIndent();
 		}
 	}
 
+	/**
+	 * @return a new {@link Interval} holding the item at the given index; its text is only created when needed
+	 */
+	public Interval getInterval(int index) {
+		return new Interval(getStart(index), getEnd(index), this, index);
+	}
+
+	/**
+	 * @return the index of the first interval with start &lt;= time &lt; end, or -1 if no interval covers the time
+	 */
+	public int indexAt(double time) {
+		return selectFirst(time, time, true, false);
+	}
+
+	/**
+	 * @return the intervals that overlap the time range from start to end by more than a boundary, in the order of
+	 *         the tier; for an empty range the intervals strictly containing that time
+	 */
+	public List<Interval> overlapping(double start, double end) {
+		return select(start, end, false, false, this::getInterval);
+	}
+
+	/**
+	 * @return a live view of the intervals of this tier; changes made through the list and its iterators write through.
+	 *         Items taken from the list read their text from their index once it is needed, so after items have been
+	 *         added or removed through the list, items taken before must not be asked for their text any more; the
+	 *         iterators take care of this for the item they returned last.
+	 */
+	public List<Interval> getIntervals() {
+		return new AbstractList<Interval>() {
+
+			@Override
+			public Interval get(int index) {
+				return getInterval(index);
+			}
+
+			@Override
+			public Interval set(int index, Interval interval) {
+				Interval previous = new Interval(getStart(index), getEnd(index), getLabel(index));
+				IntervalTier.this.set(index, interval.getStartTime(), interval.getEndTime(), interval.getText());
+				return previous;
+			}
+
+			@Override
+			public void add(int index, Interval interval) {
+				IntervalTier.this.insert(index, interval.getStartTime(), interval.getEndTime(), interval.getText());
+				modCount++;
+			}
+
+			@Override
+			public Interval remove(int index) {
+				Interval previous = new Interval(getStart(index), getEnd(index), getLabel(index));
+				IntervalTier.this.remove(index);
+				modCount++;
+				return previous;
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public Iterator<Interval> iterator() {
+				return listIterator();
+			}
+
+			@Override
+			public ListIterator<Interval> listIterator(int index) {
+				return new ItemIterator<Interval>(super.listIterator(index));
+			}
+		};
+	}
+
 	@Override
 	public ListIterator<Interval> iterator() {
-		ListIterator<Interval> iterator = items.listIterator();
+		ListIterator<Interval> iterator = getIntervals().listIterator();
 		return iterator;
 	}
 
 	@Override
 	public String toString() {
-		return Objects.toStringHelper(this).add("xmin", xmin).add("xmax", xmax).add("name", name).add("intervals", items)
-				.toString();
+		return Objects.toStringHelper(this).add("xmin", xmin).add("xmax", xmax).add("name", name)
+				.add("intervals", getIntervals()).toString();
 	}
 
 }
@@ -0,0 +1,111 @@
+/*
+ * #%L
+ * LabelUtils
+ * %%
+ * Copyright (C) 2012 INRIA
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.praat;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Decoded characters of the labels of a parse, stored back to back.<br>
+ * Tiers refer to their labels by offset and length into this buffer and only create a String when a label is actually
+ * asked for, so labels that are never looked at cost two bytes per character and no objects at all.
+ */
+final class LabelBuffer {
+
+	private char[] chars;
+	private int length;
+
+	LabelBuffer() {
+		chars = new char[1024];
+	}
+
+	/**
+	 * @return the number of characters stored, which is the offset of the next label
+	 */
+	int length() {
+		return length;
+	}
+
+	void append(char[] source, int offset, int count) {
+		ensureCapacity(count);
+		System.arraycopy(source, offset, chars, length, count);
+		length += count;
+	}
+
+	void append(String source) {
+		ensureCapacity(source.length());
+		source.getChars(0, source.length(), chars, length);
+		length += source.length();
+	}
+
+	void append(char c) {
+		ensureCapacity(1);
+		chars[length++] = c;
+	}
+
+	/**
+	 * Forget all labels, e.g. when only the label of the current event is of interest
+	 */
+	void clear() {
+		length = 0;
+	}
+
+	/**
+	 * Forget the labels from the given offset on, e.g. once the last label has been copied elsewhere
+	 */
+	void truncate(int length) {
+		this.length = length;
+	}
+
+	String toString(int offset, int count) {
+		return new String(chars, offset, count);
+	}
+
+	CharBuffer chars(int offset, int count) {
+		return CharBuffer.wrap(chars, offset, count);
+	}
+
+	boolean contentEquals(int offset, int count, CharSequence s) {
+		if (s.length() != count) {
+			return false;
+		}
+		for (int i = 0; i < count; i++) {
+			if (chars[offset + i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void ensureCapacity(int count) {
+		if (length + count > chars.length) {
+			long capacity = Math.max((long) chars.length * 2, (long) length + count);
+			if (capacity > Integer.MAX_VALUE - 8) {
+				if ((long) length + count > Integer.MAX_VALUE - 8) {
+					throw new IllegalStateException("Too many label characters for a single buffer");
+				}
+				capacity = Integer.MAX_VALUE - 8;
+			}
+			chars = Arrays.copyOf(chars, (int) capacity);
+		}
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * #%L
+ * LabelUtils
+ * %%
+ * Copyright (C) 2012 INRIA
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.praat;
+
+import java.util.Arrays;
+
+/**
+ * Bounded table of canonical label strings for a single parse.<br>
+ * Tiers of phones or words repeat a small vocabulary over and over. Readers look labels up by their raw characters, so
+ * a repeated label costs neither a new String nor a throwaway one. Only the strings are kept, never the buffer the
+ * characters came from, so a table may be fed from heap, direct or mapped buffers alike. Once the table is full, new
+ * labels are no longer added; labels longer than {@link #MAX_LABEL_LENGTH} are never added.<br>
+ * A table is not thread-safe and is meant to be used for one document at a time; {@link #clear()} empties it for the
+ * next one, so its slots can be reused without keeping labels across documents.
+ */
+public final class LabelTable {
+
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	public static final int MAX_LABEL_LENGTH = 64;
+
+	private final String[] slots;
+	private final int capacity;
+	private int size;
+
+	private long lookups;
+	private long hits;
+
+	public LabelTable() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 *            maximum number of distinct labels to keep
+	 */
+	public LabelTable(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+		// keep the load factor at or below one half
+		slots = new String[Integer.highestOneBit(capacity) << 2];
+	}
+
+	/**
+	 * @return the canonical String for the given characters
+	 */
+	public String intern(char[] chars, int offset, int length) {
+		if (length > MAX_LABEL_LENGTH) {
+			return new String(chars, offset, length);
+		}
+		lookups++;
+		int hash = 0;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + chars[i];
+		}
+		int mask = slots.length - 1;
+		int index = (hash ^ (hash >>> 16)) & mask;
+		String label;
+		while ((label = slots[index]) != null) {
+			if (label.hashCode() == hash && matches(label, chars, offset, length)) {
+				hits++;
+				return label;
+			}
+			index = (index + 1) & mask;
+		}
+		label = new String(chars, offset, length);
+		if (size < capacity) {
+			slots[index] = label;
+			size++;
+		}
+		return label;
+	}
+
+	private static boolean matches(String label, char[] chars, int offset, int length) {
+		if (label.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (label.charAt(i) != chars[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of distinct labels in the table
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of lookups of labels short enough to be interned
+	 */
+	public long getLookups() {
+		return lookups;
+	}
+
+	/**
+	 * @return the number of lookups answered with a canonical instance
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the share of lookups answered with a canonical instance, or 0 if there were none
+	 */
+	public double getHitRate() {
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Remove all labels and reset the statistics
+	 */
+	public void clear() {
+		if (size > 0) {
+			Arrays.fill(slots, null);
+			size = 0;
+		}
+		lookups = 0;
+		hits = 0;
+	}
+
+	/**
+	 * Add the lookups and hits of another table to the statistics of this one
+	 */
+	void addStatistics(LabelTable other) {
+		lookups += other.lookups;
+		hits += other.hits;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("LabelTable[size=%d, lookups=%d, hits=%d]", size, lookups, hits);
+	}
+
+}
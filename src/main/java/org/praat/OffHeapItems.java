@@ -0,0 +1,336 @@
+/*
+ * #%L
+ * LabelUtils
+ * %%
+ * Copyright (C) 2012 INRIA
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.praat;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Items of a tier kept in direct memory outside the Java heap: start and end times as doubles, and the labels as UTF-8
+ * bytes back to back with their offsets.<br>
+ * The memory is given back by {@link #free()} right away rather than whenever the buffers are garbage collected; the
+ * items must not be accessed afterwards.
+ */
+final class OffHeapItems {
+
+	/**
+	 * Releases the memory of a direct or mapped buffer, which must not be used afterwards
+	 */
+	static final Consumer<ByteBuffer> CLEANER = findCleaner();
+
+	/**
+	 * Initial number of label bytes reserved per item when the labels are not known in advance
+	 */
+	private static final int LABEL_BYTES_PER_ITEM = 8;
+
+	private ByteBuffer startBytes;
+	private ByteBuffer endBytes;
+	private ByteBuffer offsetBytes;
+	private ByteBuffer labelBytes;
+	private final DoubleBuffer starts;
+	/**
+	 * End times, or null for point tiers
+	 */
+	private final DoubleBuffer ends;
+	/**
+	 * Offset of each label in {@link #labelBytes}, followed by the end of the last label
+	 */
+	private final IntBuffer offsets;
+	private final BitSet nullLabels = new BitSet();
+	private final int size;
+	/**
+	 * Number of items added so far
+	 */
+	private int count;
+
+	/**
+	 * Copy the items of a tier
+	 * 
+	 * @param ends
+	 *            end times, or null for point tiers
+	 * @param labels
+	 *            returns the characters of the label at an index, or null
+	 */
+	OffHeapItems(int size, double[] starts, double[] ends, IntFunction<CharSequence> labels) {
+		// measure the labels first so that their bytes are allocated exactly once
+		this(size, ends != null, labelLength(size, labels));
+		for (int i = 0; i < size; i++) {
+			add(starts[i], ends != null ? ends[i] : starts[i], labels.apply(i));
+		}
+	}
+
+	/**
+	 * Reserve the memory for a tier of the given size, whose items are then added one by one with
+	 * {@link #add(double, double, CharSequence)} as they are read
+	 * 
+	 * @param intervals
+	 *            whether the items have end times
+	 * @throws IllegalStateException
+	 *             if the items are too many for direct buffers
+	 */
+	OffHeapItems(int size, boolean intervals) {
+		this(size, intervals, Math.min((long) size * LABEL_BYTES_PER_ITEM, Integer.MAX_VALUE));
+	}
+
+	private OffHeapItems(int size, boolean intervals, long labelLength) {
+		this.size = size;
+		startBytes = allocate(size, 8L * size, "times");
+		starts = startBytes.asDoubleBuffer();
+		if (intervals) {
+			endBytes = allocate(size, 8L * size, "times");
+			ends = endBytes.asDoubleBuffer();
+		} else {
+			ends = null;
+		}
+		offsetBytes = allocate(size, 4L * (size + 1), "label offsets");
+		offsets = offsetBytes.asIntBuffer();
+		labelBytes = allocate(size, labelLength, "label bytes");
+		offsets.put(0, 0);
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             if the items need more bytes than a direct buffer holds
+	 */
+	private ByteBuffer allocate(int size, long bytes, String what) {
+		if (bytes > Integer.MAX_VALUE) {
+			free();
+			throw new IllegalStateException("Too many items to keep off the heap: the " + what + " of " + size
+					+ " items need " + bytes + " bytes, a direct buffer holds at most " + Integer.MAX_VALUE);
+		}
+		return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * @return the number of UTF-8 bytes of all labels
+	 */
+	private static long labelLength(int size, IntFunction<CharSequence> labels) {
+		long length = 0;
+		for (int i = 0; i < size; i++) {
+			CharSequence label = labels.apply(i);
+			if (label != null) {
+				length += utf8Length(label);
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Add the next item
+	 * 
+	 * @param end
+	 *            end time, ignored for point tiers
+	 * @param label
+	 *            characters of the label, or null
+	 * @throws IllegalStateException
+	 *             if all items have been added already, or the labels are too long for a direct buffer
+	 */
+	void add(double start, double end, CharSequence label) {
+		if (count == size) {
+			throw new IllegalStateException("All " + size + " items have been added already");
+		}
+		starts.put(count, start);
+		if (ends != null) {
+			ends.put(count, end);
+		}
+		if (label == null) {
+			nullLabels.set(count);
+		} else {
+			ensureLabelCapacity(utf8Length(label));
+			putUtf8(label);
+		}
+		count++;
+		offsets.put(count, labelBytes.position());
+	}
+
+	private void ensureLabelCapacity(long length) {
+		if (labelBytes.remaining() >= length) {
+			return;
+		}
+		long needed = labelBytes.position() + length;
+		long capacity = Math.min(Math.max(2L * labelBytes.capacity(), needed), Integer.MAX_VALUE);
+		ByteBuffer grown = allocate(size, Math.max(capacity, needed), "label bytes");
+		labelBytes.flip();
+		grown.put(labelBytes);
+		CLEANER.accept(labelBytes);
+		labelBytes = grown;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean hasEnds() {
+		return ends != null;
+	}
+
+	double start(int index) {
+		return starts.get(index);
+	}
+
+	double end(int index) {
+		return ends != null ? ends.get(index) : starts.get(index);
+	}
+
+	String label(int index) {
+		if (nullLabels.get(index)) {
+			return null;
+		}
+		int offset = offsets.get(index);
+		byte[] bytes = new byte[offsets.get(index + 1) - offset];
+		ByteBuffer source = labelBytes.duplicate();
+		source.position(offset);
+		source.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	boolean isEmpty(int index) {
+		return offsets.get(index) == offsets.get(index + 1);
+	}
+
+	boolean contentEquals(int index, CharSequence s) {
+		if (nullLabels.get(index)) {
+			return false;
+		}
+		int offset = offsets.get(index);
+		int length = offsets.get(index + 1) - offset;
+		// UTF-8 never needs fewer bytes than UTF-16 needs chars
+		if (length < s.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			byte b = labelBytes.get(offset + i);
+			if (b < 0) {
+				return label(index).contentEquals(s);
+			}
+			if (i >= s.length() || s.charAt(i) != b) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Give the memory back to the operating system
+	 */
+	void free() {
+		for (ByteBuffer buffer : new ByteBuffer[] { startBytes, endBytes, offsetBytes, labelBytes }) {
+			if (buffer != null) {
+				CLEANER.accept(buffer);
+			}
+		}
+		startBytes = null;
+		endBytes = null;
+		offsetBytes = null;
+		labelBytes = null;
+	}
+
+	private static long utf8Length(CharSequence s) {
+		long length = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+					&& Character.isLowSurrogate(s.charAt(i + 1))) {
+				length += 4;
+				i++;
+			} else if (Character.isSurrogate(c)) {
+				// unpaired surrogates are replaced like the encoders of the writers do
+				length++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	private void putUtf8(CharSequence s) {
+		ByteBuffer out = labelBytes;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				out.put((byte) c);
+			} else if (c < 0x800) {
+				out.put((byte) (0xC0 | c >> 6));
+				out.put((byte) (0x80 | c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+					&& Character.isLowSurrogate(s.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, s.charAt(++i));
+				out.put((byte) (0xF0 | codePoint >> 18));
+				out.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+				out.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+				out.put((byte) (0x80 | codePoint & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				out.put((byte) '?');
+			} else {
+				out.put((byte) (0xE0 | c >> 12));
+				out.put((byte) (0x80 | c >> 6 & 0x3F));
+				out.put((byte) (0x80 | c & 0x3F));
+			}
+		}
+	}
+
+	/**
+	 * @return a function releasing the memory of a direct buffer, or one leaving that to the garbage collector if the
+	 *         running VM offers no way to do it
+	 */
+	private static Consumer<ByteBuffer> findCleaner() {
+		try {
+			// Java 9 and later
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			final Object unsafe = field.get(null);
+			return buffer -> invoke(invokeCleaner, unsafe, buffer);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// try the Java 8 way
+		}
+		try {
+			final Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+			final Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+			return buffer -> invoke(clean, invoke(cleaner, buffer));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return buffer -> {
+				// released when the buffer is garbage collected
+			};
+		}
+	}
+
+	private static Object invoke(Method method, Object target, Object... arguments) {
+		try {
+			return method.invoke(target, arguments);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot free direct memory", e);
+		}
+	}
+
+}
@@ -26,29 +26,72 @@ public class Point {
 	protected double time;
 	protected String text;
 
+	/**
+	 * Tier and index the text is taken from once it is needed, or null
+	 */
+	private Tier tier;
+	private int index;
+
 	public Point(double time, String text) {
 		this.time = time;
 		this.text = text;
 	}
 
+	/**
+	 * Create a view of an item of a tier, which only creates its text when {@link #getText()} is called
+	 */
+	Point(double time, Tier tier, int index) {
+		this.time = time;
+		this.tier = tier;
+		this.index = index;
+	}
+
 	public double getTime() {
 		return time;
 	}
 
+	public long getTicks(TimeResolution resolution) {
+		return resolution.toTicks(time);
+	}
+
 	public String getText() {
+		if (tier != null) {
+			text = tier.getLabel(index);
+			tier = null;
+		}
 		return text;
 	}
 
+	/**
+	 * @return whether the text is empty (or missing), without creating it
+	 */
+	public boolean isEmpty() {
+		if (tier != null) {
+			return tier.isEmpty(index);
+		}
+		return text == null || text.isEmpty();
+	}
+
+	/**
+	 * @return whether the text equals the given characters, without creating it
+	 */
+	public boolean contentEquals(CharSequence s) {
+		if (tier != null) {
+			return tier.contentEquals(index, s);
+		}
+		return text != null && text.contentEquals(s);
+	}
+
 	@Override
 	public String toString() {
-		return Objects.toStringHelper(this).add("time", time).add("text", text).toString();
+		return Objects.toStringHelper(this).add("time", time).add("text", getText()).toString();
 	}
 
 	@Override
 	public boolean equals(Object obj) {
 		if (obj instanceof Point) {
 			final Point other = (Point) obj;
-			return Objects.equal(this.time, other.time) && Objects.equal(this.text, other.text);
+			return Objects.equal(this.time, other.time) && Objects.equal(this.getText(), other.getText());
 		} else {
 			return false;
 		}
@@ -56,7 +99,7 @@ public class Point {
 
 	@Override
 	public int hashCode() {
-		return Objects.hashCode(time, text);
+		return Objects.hashCode(time, getText());
 	}
 
 }
@@ -20,9 +20,13 @@
 package org.praat;
 
 import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 
+import org.praat.PraatEventReader.Event;
+
 import com.google.common.base.Objects;
 
 public class PointTier extends Tier implements Iterable<Point> {
@@ -33,55 +37,140 @@ public class PointTier extends Tier implements Iterable<Point> {
 
 	public PointTier(String name, double startTime, double endTime, List<Point> points) {
 		this(name, startTime, endTime);
-		items = points;
+		for (Point point : points) {
+			addPoint(point);
+		}
+		trimToSize();
 	}
 
 	public PointTier(PraatFile file) throws Exception {
 		read(file);
 	}
 
+	PointTier(PraatEventReader events) throws IOException {
+		read(events);
+	}
+
+	public void addPoint(Point point) {
+		append(point.getTime(), point.getTime(), point.getText());
+	}
+
 	@Override
 	public PraatObject read(PraatFile file) throws Exception {
-		xmin = file.readDouble();
-		xmax = file.readDouble();
-		int numItems = file.readInteger();
-
-		// iterate over intervals
-		for (int i = 0; i < numItems; i++) {
-			double time = file.readDouble();
-			String label = file.readString();
-			Point point = new Point(time, label);
-			items.add(point);
-		}
+		PraatEventReader events = new PraatEventReader(file, PraatEventReader.POINT_TIER);
+		events.next();
+		read(events);
 		return this;
 	}
 
+	/**
+	 * Collect the points reported by the given reader, which must be at {@link Event#TIER_START}
+	 */
+	private void read(PraatEventReader events) throws IOException {
+		xmin = events.getXmin();
+		xmax = events.getXmax();
+
+		readItems(events, Event.POINT);
+	}
+
 	@Override
 	public void write(PraatFile file) throws IOException {
 		file.writeDouble("xmin =", xmin);
 		file.writeDouble("xmax =", xmax);
-		file.writeInteger("points: size =", items.size());
+		file.writeInteger("points: size =", size);
 
 		// iterate over items
-		int p = 1;
-		for (Point point : items) {
-			file.writeLine("points [%d]:", p++);
+		for (int i = 0; i < size; i++) {
+			file.writeItemHeading("points", i + 1);
 			file.increaseIndent();
-			file.writeDouble("number =", point.getTime());
-			file.writeString("mark =", point.getText());
+			file.writeDouble("number =", getStart(i));
+			file.writeString("mark =", getLabel(i));
 			file.decreaseIndent();
 		}
 	}
 
+	/**
+	 * @return the time of the point at the given index
+	 */
+	public double getTime(int index) {
+		return getStart(index);
+	}
+
+	/**
+	 * @return a new {@link Point} holding the item at the given index; its text is only created when needed
+	 */
+	public Point getPoint(int index) {
+		return new Point(getStart(index), this, index);
+	}
+
+	/**
+	 * @return the points with start &lt;= time &lt;= end, in the order of the tier
+	 */
+	public List<Point> pointsIn(double start, double end) {
+		return select(start, end, true, true, this::getPoint);
+	}
+
+	/**
+	 * @return a live view of the points of this tier; changes made through the list and its iterators write through.
+	 *         Items taken from the list read their text from their index once it is needed, so after items have been
+	 *         added or removed through the list, items taken before must not be asked for their text any more; the
+	 *         iterators take care of this for the item they returned last.
+	 */
+	public List<Point> getPoints() {
+		return new AbstractList<Point>() {
+
+			@Override
+			public Point get(int index) {
+				return getPoint(index);
+			}
+
+			@Override
+			public Point set(int index, Point point) {
+				Point previous = new Point(getStart(index), getLabel(index));
+				PointTier.this.set(index, point.getTime(), point.getTime(), point.getText());
+				return previous;
+			}
+
+			@Override
+			public void add(int index, Point point) {
+				PointTier.this.insert(index, point.getTime(), point.getTime(), point.getText());
+				modCount++;
+			}
+
+			@Override
+			public Point remove(int index) {
+				Point previous = new Point(getStart(index), getLabel(index));
+				PointTier.this.remove(index);
+				modCount++;
+				return previous;
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public Iterator<Point> iterator() {
+				return listIterator();
+			}
+
+			@Override
+			public ListIterator<Point> listIterator(int index) {
+				return new ItemIterator<Point>(super.listIterator(index));
+			}
+		};
+	}
+
 	@Override
 	public ListIterator<Point> iterator() {
-		ListIterator<Point> iterator = items.listIterator();
+		ListIterator<Point> iterator = getPoints().listIterator();
 		return iterator;
 	}
 
 	@Override
 	public String toString() {
-		return Objects.toStringHelper(this).add("xmin", xmin).add("xmax", xmax).add("name", name).add("points", items).toString();
+		return Objects.toStringHelper(this).add("xmin", xmin).add("xmax", xmax).add("name", name).add("points", getPoints()).toString();
 	}
 
 }
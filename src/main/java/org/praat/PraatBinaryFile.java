@@ -21,60 +21,373 @@ package org.praat;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 
+/**
+ * Praat's binary format: after the <code>ooBinaryFile</code> header, all values are stored big-endian without any
+ * decoration. Class names are stored as strings with a one-byte length, all other strings with a two-byte length. An
+ * escape length (all bits set) marks strings stored as UTF-16 code units rather than ASCII bytes.
+ */
 public class PraatBinaryFile extends PraatFile {
 
-	public PraatObject read(File file) {
-		// TODO Auto-generated method stub
-		return null;
+	private static final byte[] HEADER = "ooBinaryFile".getBytes(StandardCharsets.US_ASCII);
+
+	private ByteBuffer bytes;
+
+	/**
+	 * Number of bytes of a file read from {@link #input} that have been dropped from the buffer
+	 */
+	private long consumed;
+
+	private WritableByteChannel channel;
+
+	/**
+	 * Decoding space for strings
+	 */
+	private char[] chars = new char[64];
+
+	public PraatBinaryFile() {
+		// empty constructor for reading
+	}
+
+	public PraatBinaryFile(File file) throws IOException {
+		this(newChannel(file), new PraatCodec());
+	}
+
+	/**
+	 * Prepare writing to a stream, which is closed once the object has been written
+	 */
+	public PraatBinaryFile(OutputStream out) {
+		this(Channels.newChannel(out), new PraatCodec());
+	}
+
+	/**
+	 * Prepare writing to a channel through the output buffer of a codec
+	 */
+	PraatBinaryFile(WritableByteChannel channel, PraatCodec codec) {
+		this(channel, codec, true);
+	}
+
+	/**
+	 * @param header
+	 *            whether to start with the file header; parts of a file that are concatenated later go without
+	 */
+	PraatBinaryFile(WritableByteChannel channel, PraatCodec codec, boolean header) {
+		this.codec = codec;
+		this.channel = channel;
+		bytes = codec.output();
+		if (header) {
+			bytes.put(HEADER);
+		}
+	}
+
+	/**
+	 * Create a reader for a part of a binary file, such as the block of an object of a {@link CollectionFile}
+	 */
+	static PraatBinaryFile forBlock(ByteBuffer block, PraatCodec codec) {
+		PraatBinaryFile reader = new PraatBinaryFile();
+		reader.codec = codec;
+		reader.bytes = block.duplicate().order(ByteOrder.BIG_ENDIAN);
+		return reader;
+	}
+
+	public PraatObject read(ByteBuffer bytes) throws Exception {
+		begin(bytes);
+		return readPayload(objectClass);
+	}
+
+	/**
+	 * Skip the header and determine the class of the root object. If the file is read from {@link #input}, the bytes
+	 * are its first part, and the buffer is refilled with the rest.
+	 */
+	void begin(ByteBuffer bytes) throws IOException {
+		this.bytes = (input == null ? bytes.duplicate() : bytes).order(ByteOrder.BIG_ENDIAN);
+		this.bytes.position(this.bytes.position() + HEADER.length);
+		objectClass = readClassName();
+	}
+
+	public void write(PraatObject object) throws IOException {
+		try {
+			beginObject(object.getClass().getSimpleName());
+			object.write(this);
+			flush();
+		} finally {
+			channel.close();
+		}
 	}
 
 	@Override
 	public String readString() throws IOException {
-		// TODO Auto-generated method stub
-		return null;
+		return toString(decodeString());
+	}
+
+	@Override
+	void readLabel(LabelBuffer into) throws IOException {
+		int length = decodeString();
+		into.append(chars, 0, length);
+	}
+
+	/**
+	 * Decode a string with a two-byte length into {@link #chars}
+	 * 
+	 * @return the number of chars
+	 */
+	private int decodeString() throws IOException {
+		int length = readUnsignedShort();
+		if (length == 0xffff) {
+			return decodeUtf16(readUnsignedShort());
+		}
+		return decodeAscii(length);
+	}
+
+	/**
+	 * Read a string with a one-byte length, which is how class names are stored.
+	 */
+	@Override
+	public String readClassName() throws IOException {
+		int length = require(1).get() & 0xff;
+		if (length == 0xff) {
+			return toString(decodeUtf16(require(1).get() & 0xff));
+		}
+		return toString(decodeAscii(length));
+	}
+
+	private int decodeAscii(int length) throws IOException {
+		require(length);
+		char[] chars = chars(length);
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) (bytes.get() & 0xff);
+		}
+		return length;
+	}
+
+	/**
+	 * Decode a string of the given number of characters, each stored as one UTF-16 code unit or as a surrogate pair.
+	 */
+	private int decodeUtf16(int length) throws IOException {
+		char[] chars = chars(2 * length);
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			char c = require(2).getChar();
+			chars[count++] = c;
+			if (Character.isHighSurrogate(c)) {
+				chars[count++] = require(2).getChar();
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public void skipString() throws IOException {
+		int length = readUnsignedShort();
+		if (length != 0xffff) {
+			skip(length);
+			return;
+		}
+		length = readUnsignedShort();
+		for (int i = 0; i < length; i++) {
+			if (Character.isHighSurrogate(require(2).getChar())) {
+				skip(2);
+			}
+		}
+	}
+
+	@Override
+	public void skipDouble() throws IOException {
+		skip(8);
+	}
+
+	@Override
+	long position() {
+		return consumed + bytes.position();
+	}
+
+	private void skip(int length) throws IOException {
+		require(length);
+		bytes.position(bytes.position() + length);
+	}
+
+	private char[] chars(int length) {
+		if (chars.length < length) {
+			chars = new char[Math.max(length, 2 * chars.length)];
+		}
+		return chars;
+	}
+
+	/**
+	 * Create a String from the first characters of {@link #chars}
+	 */
+	private String toString(int length) {
+		if (labels != null) {
+			return labels.intern(chars, 0, length);
+		}
+		return new String(chars, 0, length);
+	}
+
+	private int readUnsignedShort() throws IOException {
+		return require(2).getShort() & 0xffff;
 	}
 
 	@Override
 	public int readInteger() throws IOException {
-		// TODO Auto-generated method stub
-		return 0;
+		return require(4).getInt();
 	}
 
 	@Override
 	public double readDouble() throws IOException {
-		// TODO Auto-generated method stub
-		return 0;
+		return require(8).getDouble();
 	}
 
 	@Override
-	public PraatObject readPayLoad() throws Exception {
-		// TODO Auto-generated method stub
-		return null;
+	public boolean readExists() throws IOException {
+		return require(1).get() != 0;
+	}
+
+	/**
+	 * Make sure that the given number of bytes is left before reading them
+	 */
+	private ByteBuffer require(int length) throws IOException {
+		if (bytes.remaining() < length && !refill(length)) {
+			throw new IllegalArgumentException("Early end of binary file at byte " + (consumed + bytes.position()));
+		}
+		return bytes;
+	}
+
+	/**
+	 * Drop the bytes read so far from the buffer and read more of the file behind the rest. No value is longer than the
+	 * buffer, since strings have at most 0xfffe bytes.
+	 * 
+	 * @return whether the given number of bytes is left
+	 */
+	private boolean refill(int length) throws IOException {
+		if (input == null) {
+			return false;
+		}
+		consumed += bytes.position();
+		bytes.compact();
+		while (bytes.hasRemaining() && input.read(bytes) >= 0) {
+			// fill the whole buffer, so that refills are rare
+		}
+		bytes.flip();
+		return bytes.remaining() >= length;
 	}
 
 	@Override
 	public void writeString(String decorator, String value) throws IOException {
-		// TODO Auto-generated method stub
+		writeString(value == null ? "" : value, 0xffff);
+	}
+
+	@Override
+	public void writeClassName(String decorator, String className) throws IOException {
+		writeString(className, 0xff);
+	}
 
+	/**
+	 * Write a string preceded by its length, which is an unsigned byte or short depending on the escape value of the
+	 * field. Strings that are not pure ASCII are written as the escape value, the number of characters and the UTF-16
+	 * code units.
+	 */
+	private void writeString(String value, int escape) throws IOException {
+		boolean ascii = true;
+		for (int i = 0; i < value.length() && ascii; i++) {
+			ascii = value.charAt(i) <= 0x7f;
+		}
+		int length = ascii ? value.length() : value.codePointCount(0, value.length());
+		if (length >= escape) {
+			throw new IllegalArgumentException("String too long for binary Praat file: " + length + " characters");
+		}
+		if (ascii) {
+			writeLength(length, escape);
+			for (int i = 0; i < value.length(); i++) {
+				ensure(1).put((byte) value.charAt(i));
+			}
+		} else {
+			writeLength(escape, escape);
+			writeLength(length, escape);
+			for (int i = 0; i < value.length(); i++) {
+				ensure(2).putChar(value.charAt(i));
+			}
+		}
+	}
+
+	private void writeLength(int length, int escape) throws IOException {
+		if (escape == 0xff) {
+			ensure(1).put((byte) length);
+		} else {
+			ensure(2).putShort((short) length);
+		}
 	}
 
 	@Override
 	public void writeInteger(String decorator, int value) throws IOException {
-		// TODO Auto-generated method stub
-
+		ensure(4).putInt(value);
 	}
 
 	@Override
 	public void writeDouble(String decorator, double value) throws IOException {
-		// TODO Auto-generated method stub
+		ensure(8).putDouble(value);
+	}
+
+	@Override
+	public void writeExists(String decorator, boolean exists) throws IOException {
+		ensure(1).put((byte) (exists ? 1 : 0));
+	}
+
+	@Override
+	public void writeListHeading(String decorator) throws IOException {
+		// decorations are not part of binary files
+	}
 
+	@Override
+	public void writeItemHeading(String decorator, int index) throws IOException {
+		// decorations are not part of binary files
 	}
 
 	@Override
 	public void writeLine(String format, Object... args) throws IOException {
-		// TODO Auto-generated method stub
+		// decorations are not part of binary files
+	}
+
+	@Override
+	void beginObject(String className) throws IOException {
+		writeClassName("Object class =", className);
+	}
+
+	@Override
+	void flushOutput() throws IOException {
+		flush();
+	}
+
+	@Override
+	void closeOutput() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Make room for the given number of bytes in the output buffer, writing it to the channel if necessary
+	 */
+	private ByteBuffer ensure(int length) throws IOException {
+		if (bytes.remaining() < length) {
+			flush();
+		}
+		return bytes;
+	}
 
+	private void flush() throws IOException {
+		bytes.flip();
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+		bytes.clear();
 	}
 
 	@Override
@@ -0,0 +1,366 @@
+/*
+ * #%L
+ * LabelUtils
+ * %%
+ * Copyright (C) 2012 INRIA
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.praat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+import org.praat.PraatTextFile.EOL;
+
+/**
+ * Buffers, decoders, encoders and a label table for reading and writing Praat files, kept for reuse from one file to
+ * the next.<br>
+ * Every thread has a codec of its own, which {@link #acquire()} hands out and {@link #close()} takes back. The static
+ * methods of {@link PraatFile} borrow it for each file they read or write, so converting many small files does not
+ * allocate a new set of buffers and coders for every one of them. If the codec of a thread is already in use, for
+ * instance by a tier task that runs while the file is being read, a fresh one is handed out instead.<br>
+ * Objects read through a codec never refer to its buffers, so they stay valid after the codec has been returned. A file
+ * mapped by the codec is unmapped as soon as the next file is read or the codec is returned, rather than whenever the
+ * garbage collector gets to it.
+ */
+public final class PraatCodec implements AutoCloseable {
+
+	/**
+	 * Files up to this size are read into the input buffer, larger ones are memory-mapped until the next read. Files
+	 * too large for a single mapping are read piece by piece through the input buffer (see {@link #streamBuffer()}).
+	 */
+	private static final int MAP_THRESHOLD = 1 << 20;
+
+	private static final int INPUT_SIZE = 64 * 1024;
+
+	private static final int OUTPUT_SIZE = 64 * 1024;
+
+	private static final ThreadLocal<PraatCodec> CODECS = new ThreadLocal<PraatCodec>() {
+		@Override
+		protected PraatCodec initialValue() {
+			return new PraatCodec();
+		}
+	};
+
+	private boolean inUse;
+
+	/**
+	 * Undecoded contents of the file being read
+	 */
+	private ByteBuffer input;
+
+	/**
+	 * Contents of the file read last if it was mapped, or null
+	 */
+	private MappedByteBuffer mapped;
+
+	/**
+	 * Decoded characters for the text lexer
+	 */
+	private char[] lexerBuffer;
+
+	/**
+	 * Characters and encoded bytes for the writers
+	 */
+	private char[] writeBuffer;
+	private ByteBuffer output;
+
+	private final Map<Charset, CharsetDecoder> decoders = new HashMap<Charset, CharsetDecoder>(4);
+	private final Map<Charset, CharsetEncoder> encoders = new HashMap<Charset, CharsetEncoder>(4);
+
+	private LabelTable labels;
+
+	/**
+	 * Number of items from which on tiers are built off the heap, or 0
+	 */
+	private int offHeapThreshold;
+
+	/**
+	 * Create a codec that is not shared with anyone; use {@link #acquire()} to get the pooled one.
+	 */
+	public PraatCodec() {
+		// buffers are allocated on first use
+	}
+
+	/**
+	 * @return the codec of the current thread, or a fresh one if that is in use. A fresh codec reads with the settings
+	 *         of the codec in use, since it works on its behalf. Return it with {@link #close()}.
+	 */
+	public static PraatCodec acquire() {
+		PraatCodec codec = CODECS.get();
+		if (codec.inUse) {
+			int offHeapThreshold = codec.offHeapThreshold;
+			codec = new PraatCodec();
+			codec.offHeapThreshold = offHeapThreshold;
+		}
+		codec.inUse = true;
+		return codec;
+	}
+
+	/**
+	 * Return the codec to its thread, unmapping the file read last, emptying its label table and resetting its
+	 * settings for the next document
+	 */
+	@Override
+	public void close() {
+		unmap();
+		offHeapThreshold = 0;
+		if (labels != null) {
+			labels.clear();
+		}
+		inUse = false;
+	}
+
+	/**
+	 * @return the label table of this codec, which is emptied whenever the codec is returned
+	 */
+	public LabelTable getLabelTable() {
+		if (labels == null) {
+			labels = new LabelTable();
+		}
+		return labels;
+	}
+
+	/**
+	 * @return the number of items from which on tiers are built off the heap, or 0 if they never are
+	 */
+	public int getOffHeapThreshold() {
+		return offHeapThreshold;
+	}
+
+	/**
+	 * Build the tiers with at least the given number of intervals or points in direct memory outside the heap while
+	 * they are read, as {@link Tier#moveOffHeap()} would put them afterwards, so that they never take up the heap at
+	 * all. The number of items of a tier is known from its header before its items are read.
+	 * 
+	 * @param offHeapThreshold
+	 *            number of items, or 0 to keep all tiers on the heap
+	 */
+	public void setOffHeapThreshold(int offHeapThreshold) {
+		if (offHeapThreshold < 0) {
+			throw new IllegalArgumentException("Negative off-heap threshold: " + offHeapThreshold);
+		}
+		this.offHeapThreshold = offHeapThreshold;
+	}
+
+	/**
+	 * Read a Praat file, gzip compressed if its name ends with <code>.gz</code>.
+	 * 
+	 * @see PraatFile#readFromFile(File, Charset, LabelTable, Predicate, ForkJoinPool)
+	 */
+	public PraatObject read(File file, Charset charset, LabelTable labels, Predicate<String> tierFilter,
+			ForkJoinPool pool) throws Exception {
+		PraatFile praatFile = PraatFile.open(file, charset, this);
+		try {
+			return PraatFile.readObject(praatFile, labels, tierFilter, pool);
+		} finally {
+			praatFile.closeInput();
+		}
+	}
+
+	/**
+	 * Read a Praat file from a channel, which is read piece by piece through the input buffer as far as the object
+	 * extends, but not closed.
+	 * 
+	 * @see PraatFile#readFromChannel(ReadableByteChannel, Charset, LabelTable, Predicate, ForkJoinPool)
+	 */
+	public PraatObject read(ReadableByteChannel channel, Charset charset, LabelTable labels,
+			Predicate<String> tierFilter, ForkJoinPool pool) throws Exception {
+		PraatFile praatFile;
+		try {
+			praatFile = PraatFile.open(channel, charset, "stream", this);
+		} catch (IOException e) {
+			throw new IOException("Stream not readable", e);
+		}
+		return PraatFile.readObject(praatFile, labels, tierFilter, pool);
+	}
+
+	/**
+	 * Write an object in the long text format to a channel, which is closed afterwards
+	 */
+	public void writeText(PraatObject object, WritableByteChannel channel, Charset charset, EOL eol)
+			throws IOException {
+		writeText(object, channel, charset, eol, null);
+	}
+
+	/**
+	 * @see PraatFile#writeText(PraatObject, File, Charset, EOL, ForkJoinPool)
+	 */
+	public void writeText(PraatObject object, WritableByteChannel channel, Charset charset, EOL eol,
+			ForkJoinPool pool) throws IOException {
+		new PraatTextFile(channel, charset, eol, this).write(object, pool);
+	}
+
+	/**
+	 * Write an object in the short text format to a channel, which is closed afterwards
+	 */
+	public void writeShortText(PraatObject object, WritableByteChannel channel, Charset charset, EOL eol)
+			throws IOException {
+		writeShortText(object, channel, charset, eol, null);
+	}
+
+	/**
+	 * @see PraatFile#writeText(PraatObject, File, Charset, EOL, ForkJoinPool)
+	 */
+	public void writeShortText(PraatObject object, WritableByteChannel channel, Charset charset, EOL eol,
+			ForkJoinPool pool) throws IOException {
+		new PraatShortTextFile(channel, charset, eol, this).write(object, pool);
+	}
+
+	/**
+	 * Write an object in the binary format to a channel, which is closed afterwards
+	 */
+	public void writeBinary(PraatObject object, WritableByteChannel channel) throws IOException {
+		new PraatBinaryFile(channel, this).write(object);
+	}
+
+	/**
+	 * Read the contents of a file through a single {@link FileChannel}. Small files are read into the input buffer,
+	 * larger files are memory-mapped. The returned buffer is only valid until the next read through this codec or
+	 * until the codec is closed.
+	 * 
+	 * @throws IOException
+	 *             if the file is larger than a buffer can be (2 GB); such files can only be read piece by piece
+	 */
+	ByteBuffer readBytes(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return readBytes(channel, file, 0, channel.size());
+		}
+	}
+
+	/**
+	 * Read a range of a file, like {@link #readBytes(File)} reads all of it
+	 * 
+	 * @throws IOException
+	 *             if the range extends beyond the end of the file or is larger than a buffer can be
+	 */
+	ByteBuffer readBytes(File file, long offset, long length) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (offset < 0 || length < 0 || offset + length > channel.size()) {
+				throw new IOException("Range of " + length + " bytes at " + offset + " beyond the end of " + file);
+			}
+			return readBytes(channel, file, offset, length);
+		}
+	}
+
+	private ByteBuffer readBytes(FileChannel channel, File file, long offset, long length) throws IOException {
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("File too large to be read at once: " + file + " has " + length
+					+ " bytes, a buffer holds at most " + Integer.MAX_VALUE);
+		}
+		unmap();
+		if (length > MAP_THRESHOLD) {
+			mapped = channel.map(MapMode.READ_ONLY, offset, length);
+			return mapped;
+		}
+		ByteBuffer buffer = input;
+		if (buffer == null || buffer.capacity() < length) {
+			buffer = ByteBuffer.allocate(length <= INPUT_SIZE ? INPUT_SIZE : MAP_THRESHOLD);
+			input = buffer;
+		}
+		buffer.clear();
+		buffer.limit((int) length);
+		while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+			// keep reading until the whole range is in the buffer
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private void unmap() {
+		if (mapped != null) {
+			OffHeapItems.CLEANER.accept(mapped);
+			mapped = null;
+		}
+	}
+
+	/**
+	 * @return the empty input buffer, for reading a file piece by piece. Like the buffers returned by
+	 *         {@link #readBytes(File)}, it is only valid until the next read through this codec.
+	 */
+	ByteBuffer streamBuffer() {
+		if (input == null) {
+			input = ByteBuffer.allocate(INPUT_SIZE);
+		}
+		input.clear();
+		return input;
+	}
+
+	/**
+	 * @return a decoder for the charset, reset for a new input. Malformed input is replaced, not rejected.
+	 */
+	CharsetDecoder decoder(Charset charset) {
+		CharsetDecoder decoder = decoders.get(charset);
+		if (decoder == null) {
+			decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			decoders.put(charset, decoder);
+		}
+		return decoder.reset();
+	}
+
+	/**
+	 * @return an encoder for the charset, reset for a new output. Unmappable characters are replaced.
+	 */
+	CharsetEncoder encoder(Charset charset) {
+		CharsetEncoder encoder = encoders.get(charset);
+		if (encoder == null) {
+			encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			encoders.put(charset, encoder);
+		}
+		return encoder.reset();
+	}
+
+	char[] lexerBuffer() {
+		if (lexerBuffer == null) {
+			lexerBuffer = new char[PraatTextLexer.BUFFER_SIZE];
+		}
+		return lexerBuffer;
+	}
+
+	char[] writeBuffer() {
+		if (writeBuffer == null) {
+			writeBuffer = new char[PraatTextFile.BUFFER_SIZE];
+		}
+		return writeBuffer;
+	}
+
+	/**
+	 * @return the empty output buffer
+	 */
+	ByteBuffer output() {
+		if (output == null) {
+			output = ByteBuffer.allocate(OUTPUT_SIZE);
+		}
+		output.clear();
+		return output;
+	}
+}
@@ -0,0 +1,457 @@
+/*
+ * #%L
+ * LabelUtils
+ * %%
+ * Copyright (C) 2012 INRIA
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.praat;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Pull parser for TextGrids and their tiers.<br>
+ * Instead of building the {@link TextGrid} &rarr; {@link Tier} &rarr; {@link Interval} object graph, the reader reports
+ * one event at a time and only keeps the values of the current event. Files are memory-mapped, while compressed files,
+ * files over 2 GB and channels are decoded piece by piece through a buffer of fixed size, so the heap a reader needs
+ * does not grow with the file:
+ * 
+ * <pre>
+ * try (PraatEventReader events = PraatEventReader.open(file)) {
+ * 	while (events.next() != Event.END) {
+ * 		...
+ * 	}
+ * }
+ * </pre>
+ * 
+ * A TextGrid yields {@link Event#TEXT_GRID}, then for each tier {@link Event#TIER_START}, its {@link Event#INTERVAL}s or
+ * {@link Event#POINT}s and {@link Event#TIER_END}, and finally {@link Event#END}. A file holding a single tier yields
+ * the events of that tier only.<br>
+ * With a tier filter (see {@link #setTierFilter(Predicate)}), the tiers of a TextGrid whose names are not accepted are
+ * skipped without parsing their numbers or creating their labels, and yield no events at all.
+ */
+public class PraatEventReader implements Closeable {
+
+	public enum Event {
+		/**
+		 * Start of a TextGrid: time domain and number of tiers are available
+		 */
+		TEXT_GRID,
+		/**
+		 * Start of a tier: class, name, time domain and number of intervals or points are available
+		 */
+		TIER_START,
+		/**
+		 * An interval with start time, end time and text
+		 */
+		INTERVAL,
+		/**
+		 * A point with time and text
+		 */
+		POINT,
+		/**
+		 * End of the current tier
+		 */
+		TIER_END,
+		/**
+		 * End of the object, no more events follow
+		 */
+		END
+	}
+
+	static final String TEXT_GRID = "TextGrid";
+	static final String INTERVAL_TIER = "IntervalTier";
+	static final String TEXT_TIER = "TextTier";
+	static final String POINT_TIER = "PointTier";
+
+	private final PraatFile file;
+	private final String objectClass;
+
+	private Predicate<String> tierFilter;
+
+	/**
+	 * Characters of the labels read so far, or null if labels are read as (interned) Strings right away
+	 */
+	private final LabelBuffer labelBuffer;
+
+	/**
+	 * Whether the labels of all events are kept in {@link #labelBuffer} rather than only the one of the current event
+	 */
+	private final boolean retainLabels;
+
+	private Event event;
+	private int tiersLeft;
+	private int itemsLeft;
+
+	private double xmin;
+	private double xmax;
+	private int size;
+	private String tierClass;
+	private String tierName;
+	private boolean intervals;
+
+	private double startTime;
+	private double endTime;
+	private String text;
+	private int textOffset;
+	private int textLength;
+
+	/**
+	 * Create an event reader for building objects, which keeps the characters of all labels for
+	 * {@link Tier#appendLabel(double, double, LabelBuffer, int, int)}
+	 */
+	PraatEventReader(PraatFile file, String objectClass) {
+		this(file, objectClass, true);
+	}
+
+	/**
+	 * Create an event reader for an object of the given class that starts at the current position of the file
+	 */
+	private PraatEventReader(PraatFile file, String objectClass, boolean retainLabels) {
+		if (!TEXT_GRID.equals(objectClass) && !isTierClass(objectClass)) {
+			throw new IllegalArgumentException("Unsupported Praat class for event reading: " + objectClass);
+		}
+		this.file = file;
+		this.objectClass = objectClass;
+		tierFilter = file.tierFilter;
+		// with a label table, labels are interned while reading; otherwise they only become Strings on demand
+		labelBuffer = file.labels == null ? new LabelBuffer() : null;
+		this.retainLabels = retainLabels;
+	}
+
+	/**
+	 * Open a Praat file holding a TextGrid or a single tier, detecting the charset of text files.
+	 */
+	public static PraatEventReader open(File file) throws IOException {
+		return open(file, null);
+	}
+
+	/**
+	 * Open a Praat file holding a TextGrid or a single tier.
+	 * 
+	 * @param charset
+	 *            Charset of text files, or <code>null</code> to detect it
+	 */
+	public static PraatEventReader open(File file, Charset charset) throws IOException {
+		return open(file, charset, null);
+	}
+
+	/**
+	 * Open a Praat file holding a TextGrid or a single tier, sharing String instances between equal labels.
+	 * 
+	 * @param charset
+	 *            Charset of text files, or <code>null</code> to detect it
+	 * @param labels
+	 *            Table of canonical labels for this file, or <code>null</code>
+	 */
+	public static PraatEventReader open(File file, Charset charset, LabelTable labels) throws IOException {
+		return open(PraatFile.open(file, charset), labels);
+	}
+
+	/**
+	 * Open a Praat file read from a channel, such as an entry of an archive. The channel is read as the events are
+	 * asked for, and closed by {@link #close()}.
+	 * 
+	 * @param charset
+	 *            Charset of text files, or <code>null</code> to detect it
+	 * @param labels
+	 *            Table of canonical labels for this file, or <code>null</code>
+	 */
+	public static PraatEventReader open(ReadableByteChannel channel, Charset charset, LabelTable labels)
+			throws IOException {
+		PraatFile praatFile;
+		try {
+			praatFile = PraatFile.open(channel, charset, "stream", new PraatCodec());
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+		return open(praatFile, labels);
+	}
+
+	private static PraatEventReader open(PraatFile praatFile, LabelTable labels) throws IOException {
+		try {
+			praatFile.setLabelTable(labels);
+			return new PraatEventReader(praatFile, praatFile.objectClass, false);
+		} catch (RuntimeException e) {
+			praatFile.closeInput();
+			throw e;
+		}
+	}
+
+	/**
+	 * Close the file or channel the events are read from, unmapping a mapped file
+	 */
+	@Override
+	public void close() throws IOException {
+		file.closeInput();
+		// only the readers opened by the static methods are closed, and their codecs are their own
+		file.codec.close();
+	}
+
+	static boolean isTierClass(String className) {
+		return INTERVAL_TIER.equals(className) || TEXT_TIER.equals(className) || POINT_TIER.equals(className);
+	}
+
+	/**
+	 * Only report the tiers of a TextGrid whose names are accepted by the given filter; <code>null</code> reports all
+	 * tiers. A tier that is the root object of its file is always reported.
+	 */
+	public void setTierFilter(Predicate<String> tierFilter) {
+		this.tierFilter = tierFilter;
+	}
+
+	public boolean hasNext() {
+		return event != Event.END;
+	}
+
+	/**
+	 * Read the next event
+	 * 
+	 * @throws NoSuchElementException
+	 *             after {@link Event#END}
+	 */
+	public Event next() throws IOException {
+		if (event == null) {
+			if (TEXT_GRID.equals(objectClass)) {
+				xmin = file.readDouble();
+				xmax = file.readDouble();
+				size = file.readExists() ? file.readInteger() : 0;
+				tiersLeft = size;
+				return event = Event.TEXT_GRID;
+			}
+			// a tier of its own has no class and name preceding it
+			return startTier(objectClass, null);
+		}
+		switch (event) {
+		case TEXT_GRID:
+		case TIER_END:
+			while (tiersLeft > 0) {
+				tiersLeft--;
+				String className = file.readClassName();
+				String name = file.readString();
+				if (tierFilter == null || tierFilter.test(name)) {
+					return startTier(className, name);
+				}
+				checkTierClass(className);
+				file.skipDouble();
+				file.skipDouble();
+				itemsLeft = file.readInteger();
+				skipItems(INTERVAL_TIER.equals(className));
+			}
+			return event = Event.END;
+		case TIER_START:
+		case INTERVAL:
+		case POINT:
+			if (itemsLeft > 0) {
+				itemsLeft--;
+				startTime = file.readDouble();
+				endTime = intervals ? file.readDouble() : startTime;
+				readText();
+				return event = intervals ? Event.INTERVAL : Event.POINT;
+			}
+			return event = Event.TIER_END;
+		default:
+			throw new NoSuchElementException("No events after the end of the object");
+		}
+	}
+
+	private void readText() throws IOException {
+		if (labelBuffer == null) {
+			text = file.readString();
+			return;
+		}
+		if (!retainLabels) {
+			labelBuffer.clear();
+		}
+		text = null;
+		textOffset = labelBuffer.length();
+		file.readLabel(labelBuffer);
+		textLength = labelBuffer.length() - textOffset;
+	}
+
+	/**
+	 * Skip the remaining intervals or points of the current tier
+	 * 
+	 * @return {@link Event#TIER_END}
+	 * @throws IllegalStateException
+	 *             if the reader is not inside a tier
+	 */
+	public Event skipTier() throws IOException {
+		if (event != Event.TIER_START && event != Event.INTERVAL && event != Event.POINT) {
+			throw new IllegalStateException("Not inside a tier: " + event);
+		}
+		skipItems(intervals);
+		return event = Event.TIER_END;
+	}
+
+	private void skipItems(boolean intervals) throws IOException {
+		for (; itemsLeft > 0; itemsLeft--) {
+			file.skipDouble();
+			if (intervals) {
+				file.skipDouble();
+			}
+			file.skipString();
+		}
+	}
+
+	private static void checkTierClass(String className) {
+		if (!isTierClass(className)) {
+			throw new IllegalArgumentException("Unsupported tier class: " + className);
+		}
+	}
+
+	private Event startTier(String className, String name) throws IOException {
+		checkTierClass(className);
+		tierClass = className;
+		tierName = name;
+		intervals = INTERVAL_TIER.equals(className);
+		xmin = file.readDouble();
+		xmax = file.readDouble();
+		size = file.readInteger();
+		itemsLeft = size;
+		return event = Event.TIER_START;
+	}
+
+	/**
+	 * @return The current event, or <code>null</code> before the first call of {@link #next()}
+	 */
+	public Event getEvent() {
+		return event;
+	}
+
+	/**
+	 * @return Start of the time domain of the TextGrid (at {@link Event#TEXT_GRID}) or of the current tier (from
+	 *         {@link Event#TIER_START} through {@link Event#TIER_END})
+	 */
+	public double getXmin() {
+		return xmin;
+	}
+
+	/**
+	 * @return End of the time domain of the TextGrid or of the current tier
+	 */
+	public double getXmax() {
+		return xmax;
+	}
+
+	/**
+	 * @return Number of tiers of the TextGrid (including those skipped by the tier filter) or of intervals or points of
+	 *         the current tier
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	public String getTierClass() {
+		return tierClass;
+	}
+
+	/**
+	 * @return Name of the current tier, which is <code>null</code> for a tier that is the root object of its file
+	 */
+	public String getTierName() {
+		return tierName;
+	}
+
+	/**
+	 * @return Start time of the current interval
+	 */
+	public double getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * @return End time of the current interval
+	 */
+	public double getEndTime() {
+		return endTime;
+	}
+
+	/**
+	 * @return Time of the current point
+	 */
+	public double getTime() {
+		return startTime;
+	}
+
+	/**
+	 * @return Text of the current interval or point
+	 */
+	public String getText() {
+		if (text == null && labelBuffer != null) {
+			text = labelBuffer.toString(textOffset, textLength);
+		}
+		return text;
+	}
+
+	/**
+	 * @return Whether the text of the current interval or point is empty, without creating it as a String
+	 */
+	public boolean isTextEmpty() {
+		return text == null && labelBuffer != null ? textLength == 0 : text.isEmpty();
+	}
+
+	/**
+	 * @return Whether the text of the current interval or point equals the given characters, without creating it as a
+	 *         String
+	 */
+	public boolean textEquals(CharSequence s) {
+		if (text == null && labelBuffer != null) {
+			return labelBuffer.contentEquals(textOffset, textLength, s);
+		}
+		return text.contentEquals(s);
+	}
+
+	/**
+	 * @return whether the current tier has enough items to be built off the heap, see
+	 *         {@link PraatCodec#setOffHeapThreshold(int)}
+	 */
+	boolean isOffHeapTier() {
+		int threshold = file.codec != null ? file.codec.getOffHeapThreshold() : 0;
+		return threshold > 0 && size >= threshold;
+	}
+
+	/**
+	 * Add the current interval or point to items off the heap, without creating its text as a String
+	 */
+	void appendTo(OffHeapItems items) {
+		if (text == null && labelBuffer != null) {
+			items.add(startTime, endTime, labelBuffer.chars(textOffset, textLength));
+			// the characters have been copied out of the heap, so the buffer need not keep them
+			labelBuffer.truncate(textOffset);
+		} else {
+			items.add(startTime, endTime, text);
+		}
+	}
+
+	/**
+	 * Add the current interval or point to a tier, keeping its text unmaterialized if possible
+	 */
+	void appendTo(Tier tier) {
+		if (text == null && labelBuffer != null && retainLabels) {
+			tier.appendLabel(startTime, endTime, labelBuffer, textOffset, textLength);
+		} else {
+			tier.append(startTime, endTime, getText());
+		}
+	}
+
+}
@@ -20,57 +20,415 @@
 package org.praat;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.praat.PraatTextFile.EOL;
 
-import com.google.common.io.Files;
 import com.google.common.io.Resources;
 
 abstract public class PraatFile {
 
+	/**
+	 * Class of the root object, known once the header has been read
+	 */
+	String objectClass;
+
+	/**
+	 * Canonical strings for repeated labels, or null
+	 */
+	LabelTable labels;
+
+	/**
+	 * Names of the tiers of a TextGrid to read, or null to read all tiers
+	 */
+	Predicate<String> tierFilter;
+
+	/**
+	 * Buffers and coders this file reads or writes through
+	 */
+	PraatCodec codec;
+
+	/**
+	 * Channel a file is read from piece by piece, or null if its contents are in memory
+	 */
+	ReadableByteChannel input;
+
+	private static final byte[] BINARY_HEADER = "ooBinaryFile".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Number of bytes to decode when looking for the text file header (enough for two-byte encodings)
+	 */
+	private static final int HEADER_LENGTH = 64;
+
+	/**
+	 * File name ending of gzip compressed files
+	 */
+	public static final String GZIP_ENDING = ".gz";
+
+	/**
+	 * Size of the deflater and inflater buffers; large buffers keep the number of reads and writes low on slow storage
+	 */
+	static final int GZIP_BUFFER_SIZE = 1 << 16;
+
 	public static PraatObject read(String resource) throws Exception {
 		return read(resource, Charset.defaultCharset());
 	}
 
 	public static PraatObject read(String resource, Charset charset) throws Exception {
-		// get path from resource
-		String path;
+		// read the resource as a stream, since it may well be inside a jar
+		URL url;
 		try {
-			path = Resources.getResource(resource).getPath();
+			url = Resources.getResource(resource);
 		} catch (IllegalArgumentException e) {
 			throw new IllegalArgumentException("Resource not found: " + resource);
 		}
+		try (InputStream stream = url.openStream()) {
+			return readFromStream(stream, charset);
+		}
+	}
 
-		// inspect file reading first line
-		File file = new File(path);
-
-		return readFromFile(file, charset);
+	/**
+	 * Read a Praat file, detecting the charset of text files from their first bytes (see
+	 * {@link #detectCharset(ByteBuffer, Charset)}).
+	 */
+	public static PraatObject readFromFile(File file) throws Exception {
+		return readFromFile(file, null);
 	}
 
+	/**
+	 * Read a Praat file. Files too large to be mapped (over 2 GB) are read piece by piece through a buffer of fixed
+	 * size instead.
+	 * 
+	 * @param file
+	 *            Praat text or binary file, gzip compressed if its name ends with <code>.gz</code>
+	 * @param charset
+	 *            Charset of text files, or <code>null</code> to detect it from the byte order mark and the first bytes
+	 */
 	public static PraatObject readFromFile(File file, Charset charset) throws Exception {
-		String firstLine;
+		return readFromFile(file, charset, null);
+	}
+
+	/**
+	 * Read a Praat file, sharing String instances between equal labels.
+	 * 
+	 * @param file
+	 *            Praat text or binary file
+	 * @param charset
+	 *            Charset of text files, or <code>null</code> to detect it from the byte order mark and the first bytes
+	 * @param labels
+	 *            Table of canonical labels for this file, or <code>null</code> to create labels only when they are needed
+	 */
+	public static PraatObject readFromFile(File file, Charset charset, LabelTable labels) throws Exception {
+		return readFromFile(file, charset, labels, null);
+	}
+
+	/**
+	 * Read a Praat file, keeping only some of the tiers of a TextGrid. The other tiers are skipped without parsing
+	 * their numbers or creating their labels.
+	 * 
+	 * @param file
+	 *            Praat text or binary file
+	 * @param charset
+	 *            Charset of text files, or <code>null</code> to detect it from the byte order mark and the first bytes
+	 * @param labels
+	 *            Table of canonical labels for this file, or <code>null</code> to create labels only when they are needed
+	 * @param tierFilter
+	 *            Accepts the names of the tiers to read, or <code>null</code> to read all tiers
+	 */
+	public static PraatObject readFromFile(File file, Charset charset, LabelTable labels, Predicate<String> tierFilter)
+			throws Exception {
+		return readFromFile(file, charset, labels, tierFilter, null);
+	}
+
+	/**
+	 * Read a Praat file, parsing the tiers of a TextGrid in long text format in parallel. The byte offsets of the tiers
+	 * are found by a quick scan first (see {@link TierIndex}), then each tier is parsed by a task of its own. Tier order
+	 * is preserved. Other files are read sequentially, and so are compressed files and files over 2 GB, which are
+	 * decoded piece by piece rather than held in memory.<br>
+	 * Since a {@link LabelTable} cannot be shared between threads, each tier parsed in parallel uses a table of its own;
+	 * their lookups and hits are added to the given table.
+	 * 
+	 * @param pool
+	 *            Pool to parse the tiers on, or <code>null</code> to read sequentially
+	 * @see #readFromFile(File, Charset, LabelTable, Predicate)
+	 */
+	public static PraatObject readFromFile(File file, Charset charset, LabelTable labels, Predicate<String> tierFilter,
+			ForkJoinPool pool) throws Exception {
+		try (PraatCodec codec = PraatCodec.acquire()) {
+			return codec.read(file, charset, labels, tierFilter, pool);
+		}
+	}
+
+	/**
+	 * Read a Praat file from a stream, detecting the charset of text files. The stream is read piece by piece as far
+	 * as the object extends, and not closed.
+	 */
+	public static PraatObject readFromStream(InputStream stream) throws Exception {
+		return readFromStream(stream, null);
+	}
+
+	/**
+	 * Read a Praat file from a stream. The stream is read piece by piece as far as the object extends, and not closed.
+	 * 
+	 * @param charset
+	 *            Charset of text files, or <code>null</code> to detect it from the byte order mark and the first bytes
+	 */
+	public static PraatObject readFromStream(InputStream stream, Charset charset) throws Exception {
+		return readFromStream(stream, charset, null, null, null);
+	}
+
+	/**
+	 * Read a Praat file from a stream. The stream is read piece by piece as far as the object extends, and not closed.
+	 * Since the whole text is never in memory, the tiers are read sequentially even if a pool is given.
+	 * 
+	 * @see #readFromFile(File, Charset, LabelTable, Predicate, ForkJoinPool)
+	 */
+	public static PraatObject readFromStream(InputStream stream, Charset charset, LabelTable labels,
+			Predicate<String> tierFilter, ForkJoinPool pool) throws Exception {
+		return readFromChannel(Channels.newChannel(stream), charset, labels, tierFilter, pool);
+	}
+
+	/**
+	 * Read a Praat file from a channel. The channel is read piece by piece as far as the object extends, and not
+	 * closed.
+	 * 
+	 * @param charset
+	 *            Charset of text files, or <code>null</code> to detect it from the byte order mark and the first bytes
+	 */
+	public static PraatObject readFromChannel(ReadableByteChannel channel, Charset charset) throws Exception {
+		return readFromChannel(channel, charset, null, null, null);
+	}
+
+	/**
+	 * Read a Praat file from a channel. The channel is read piece by piece as far as the object extends, and not
+	 * closed. Since the whole text is never in memory, the tiers are read sequentially even if a pool is given.
+	 * 
+	 * @see #readFromFile(File, Charset, LabelTable, Predicate, ForkJoinPool)
+	 */
+	public static PraatObject readFromChannel(ReadableByteChannel channel, Charset charset, LabelTable labels,
+			Predicate<String> tierFilter, ForkJoinPool pool) throws Exception {
+		try (PraatCodec codec = PraatCodec.acquire()) {
+			return codec.read(channel, charset, labels, tierFilter, pool);
+		}
+	}
+
+	static PraatObject readObject(PraatFile praatFile, LabelTable labels, Predicate<String> tierFilter,
+			ForkJoinPool pool) throws Exception {
+		praatFile.setLabelTable(labels);
+		praatFile.tierFilter = tierFilter;
+		// the tiers can only be found ahead of parsing if the whole text is in memory
+		if (pool != null && praatFile instanceof PraatTextFile && praatFile.input == null
+				&& PraatEventReader.TEXT_GRID.equals(praatFile.objectClass)) {
+			return new TextGrid().read((PraatTextFile) praatFile, pool);
+		}
+		return praatFile.readPayload(praatFile.objectClass);
+	}
+
+	/**
+	 * Use the given table (or none) for the strings read from now on
+	 */
+	void setLabelTable(LabelTable labels) {
+		this.labels = labels;
+	}
+
+	/**
+	 * Open a Praat file and read its header. The reader gets buffers of its own, so it may be kept while other files are
+	 * read on the same thread.
+	 * 
+	 * @return A reader of the matching subclass, positioned at the start of the root object
+	 */
+	static PraatFile open(File file, Charset charset) throws IOException {
+		return open(file, charset, new PraatCodec());
+	}
+
+	/**
+	 * Open a Praat file and read its header, reading through the given codec. Compressed files and files too large to
+	 * be mapped (over 2 GB) are read piece by piece through the input buffer of the codec instead, and stay open until
+	 * {@link #closeInput()}.
+	 * 
+	 * @return A reader of the matching subclass, positioned at the start of the root object
+	 */
+	static PraatFile open(File file, Charset charset, PraatCodec codec) throws IOException {
+		ReadableByteChannel channel = null;
+		ByteBuffer bytes = null;
 		try {
-			firstLine = Files.readFirstLine(file, charset);
+			if (isGzip(file)) {
+				// decompress on the fly: the inflated bytes are decoded as the reader asks for them
+				InputStream in = new FileInputStream(file);
+				try {
+					channel = Channels.newChannel(new GZIPInputStream(in, GZIP_BUFFER_SIZE));
+				} catch (IOException e) {
+					in.close();
+					throw e;
+				}
+			} else if (file.length() > Integer.MAX_VALUE) {
+				channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			} else {
+				bytes = codec.readBytes(file);
+			}
 		} catch (IOException e) {
-			throw new IOException("File not readable: " + file);
+			throw new IOException("File not readable: " + file, e);
+		}
+		if (channel != null) {
+			try {
+				return open(channel, charset, file.toString(), codec);
+			} catch (IOException | RuntimeException e) {
+				channel.close();
+				throw e;
+			}
 		}
+		return open(bytes, charset, file.toString(), codec);
+	}
 
+	/**
+	 * Read the header of a Praat file from a channel, which is then read piece by piece through the input buffer of
+	 * the codec as the file is parsed. {@link #closeInput()} closes the channel.
+	 * 
+	 * @param source
+	 *            Description of where the bytes come from, for error messages
+	 * @return A reader of the matching subclass, positioned at the start of the root object
+	 */
+	static PraatFile open(ReadableByteChannel channel, Charset charset, String source, PraatCodec codec)
+			throws IOException {
+		ByteBuffer head = codec.streamBuffer();
+		while (head.hasRemaining() && channel.read(head) >= 0) {
+			// the header and the start of the root object are read in one go
+		}
+		head.flip();
+		return open(head, charset, source, codec, channel);
+	}
+
+	/**
+	 * Read the header of a Praat file held in memory.
+	 * 
+	 * @param source
+	 *            Description of where the bytes come from, for error messages
+	 * @return A reader of the matching subclass, positioned at the start of the root object
+	 */
+	static PraatFile open(ByteBuffer bytes, Charset charset, String source, PraatCodec codec) throws IOException {
+		return open(bytes, charset, source, codec, null);
+	}
+
+	/**
+	 * @param channel
+	 *            Channel to read the rest of the file from once the bytes have been consumed, or <code>null</code> if
+	 *            the bytes are the whole file
+	 */
+	private static PraatFile open(ByteBuffer bytes, Charset charset, String source, PraatCodec codec,
+			ReadableByteChannel channel) throws IOException {
 		// file must not be empty
-		if (firstLine == null) {
-			throw new IllegalArgumentException("File is empty: " + file);
+		if (!bytes.hasRemaining()) {
+			throw new IllegalArgumentException("File is empty: " + source);
 		}
 
 		// determine whether this is a text or binary file and return instance of corresponding subclass
-		if (firstLine.contains("ooTextFile")) {
-			PraatTextFile textFile = new PraatTextFile();
-			return textFile.read(file, charset);
-		} else if (firstLine.equals("ooBinaryFile")) {
+		if (isBinary(bytes)) {
 			PraatBinaryFile binaryFile = new PraatBinaryFile();
-			return binaryFile.read(file);
+			binaryFile.codec = codec;
+			binaryFile.input = channel;
+			binaryFile.begin(bytes);
+			return binaryFile;
+		}
+		ByteBuffer text = bytes.duplicate();
+		if (charset == null) {
+			charset = detectCharset(text, StandardCharsets.UTF_8);
+		}
+		if (readHeader(text, charset).contains("ooTextFile")) {
+			PraatTextFile textFile = new PraatTextFile();
+			textFile.codec = codec;
+			textFile.input = channel;
+			return textFile.begin(text, charset);
 		} else {
-			throw new IllegalArgumentException("Not a Praat file: " + file);
+			throw new IllegalArgumentException("Not a Praat file: " + source);
+		}
+	}
+
+	/**
+	 * Determine the charset of a text file from its byte order mark or, lacking one, from the zero bytes that two-byte
+	 * encodings put next to the ASCII characters of the header. A byte order mark is skipped by advancing the position
+	 * of the buffer.
+	 * 
+	 * @param bytes
+	 *            Contents of the file
+	 * @param fallback
+	 *            Charset to assume for files that are neither UTF-16 nor marked as UTF-8
+	 * @return The detected charset
+	 */
+	public static Charset detectCharset(ByteBuffer bytes, Charset fallback) {
+		int start = bytes.position();
+		int b0 = bytes.remaining() > 0 ? bytes.get(start) & 0xff : -1;
+		int b1 = bytes.remaining() > 1 ? bytes.get(start + 1) & 0xff : -1;
+		int b2 = bytes.remaining() > 2 ? bytes.get(start + 2) & 0xff : -1;
+		if (b0 == 0xef && b1 == 0xbb && b2 == 0xbf) {
+			bytes.position(start + 3);
+			return StandardCharsets.UTF_8;
+		} else if (b0 == 0xfe && b1 == 0xff) {
+			bytes.position(start + 2);
+			return StandardCharsets.UTF_16BE;
+		} else if (b0 == 0xff && b1 == 0xfe) {
+			bytes.position(start + 2);
+			return StandardCharsets.UTF_16LE;
+		} else if (b0 == 0 && b1 > 0) {
+			return StandardCharsets.UTF_16BE;
+		} else if (b0 > 0 && b1 == 0) {
+			return StandardCharsets.UTF_16LE;
+		}
+		return fallback;
+	}
+
+	/**
+	 * @return true if the remaining bytes start with the header of a binary file
+	 */
+	static boolean isBinary(ByteBuffer bytes) {
+		return startsWith(bytes, BINARY_HEADER);
+	}
+
+	private static boolean startsWith(ByteBuffer bytes, byte[] prefix) {
+		if (bytes.remaining() < prefix.length) {
+			return false;
+		}
+		int start = bytes.position();
+		for (int i = 0; i < prefix.length; i++) {
+			if (bytes.get(start + i) != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Decode just enough bytes to see the header of a text file
+	 */
+	private static String readHeader(ByteBuffer bytes, Charset charset) {
+		ByteBuffer head = bytes.duplicate();
+		head.limit(Math.min(head.limit(), head.position() + HEADER_LENGTH));
+		return charset.decode(head).toString();
+	}
+
+	/**
+	 * Close the channel a file is read from piece by piece; files read from memory have nothing to close
+	 */
+	void closeInput() throws IOException {
+		if (input != null) {
+			input.close();
 		}
 	}
 
@@ -80,7 +438,87 @@ abstract public class PraatFile {
 
 	abstract public double readDouble() throws IOException;
 
-	abstract public PraatObject readPayLoad() throws Exception;
+	/**
+	 * Read an existence flag, which Praat writes as <code>&lt;exists&gt;</code> or <code>&lt;absent&gt;</code> in text
+	 * files.
+	 */
+	abstract public boolean readExists() throws IOException;
+
+	/**
+	 * Read a string into a label buffer. Subclasses override this to avoid creating a String.
+	 */
+	void readLabel(LabelBuffer into) throws IOException {
+		into.append(readString());
+	}
+
+	/**
+	 * Skip a string without creating it. Subclasses override this to avoid decoding the string.
+	 */
+	public void skipString() throws IOException {
+		readString();
+	}
+
+	/**
+	 * Skip a number without parsing it. Subclasses override this to avoid converting the number.
+	 */
+	public void skipDouble() throws IOException {
+		readDouble();
+	}
+
+	/**
+	 * @return the byte offset in the file just after the last value read, or -1 if the reader cannot tell it
+	 */
+	long position() {
+		return -1;
+	}
+
+	/**
+	 * Read the class name of a payload. Text files store it like any other string.
+	 */
+	public String readClassName() throws IOException {
+		return readString();
+	}
+
+	public PraatObject readPayLoad() throws Exception {
+		// determine payload class
+		String className = readClassName();
+
+		// read name
+		String name = readString();
+
+		// read payload
+		PraatObject object = readPayload(className);
+		object.setName(name);
+		return object;
+	}
+
+	protected PraatObject readPayload(String className) throws Exception {
+		return PraatObjectRegistry.create(className, this);
+	}
+
+	/**
+	 * @return true if the file is gzip compressed, which is recognized by the <code>.gz</code> ending of its name
+	 */
+	public static boolean isGzip(File file) {
+		return file.getName().toLowerCase(Locale.ROOT).endsWith(GZIP_ENDING);
+	}
+
+	/**
+	 * Open a file for writing through a channel, compressing the output if the name ends with <code>.gz</code>
+	 */
+	static WritableByteChannel newChannel(File file) throws IOException {
+		if (isGzip(file)) {
+			OutputStream out = new FileOutputStream(file);
+			try {
+				return Channels.newChannel(new GZIPOutputStream(out, GZIP_BUFFER_SIZE));
+			} catch (IOException e) {
+				out.close();
+				throw e;
+			}
+		}
+		return FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+	}
 
 	public static void writeText(PraatObject object, File file) throws IOException {
 		writeText(object, file, Charset.defaultCharset());
@@ -91,8 +529,46 @@ abstract public class PraatFile {
 	}
 
 	public static void writeText(PraatObject object, File file, Charset charset, EOL eol) throws IOException {
-		PraatTextFile textFile = new PraatTextFile(file, charset, eol);
-		textFile.write(object);
+		writeText(object, newChannel(file), charset, eol);
+	}
+
+	/**
+	 * Write an object in the long text format. The tiers of a TextGrid are rendered into memory in parallel and then
+	 * written in their order, so the file is the same as when written sequentially.
+	 * 
+	 * @param pool
+	 *            Pool to render the tiers on, or <code>null</code> to write sequentially
+	 */
+	public static void writeText(PraatObject object, File file, Charset charset, EOL eol, ForkJoinPool pool)
+			throws IOException {
+		writeText(object, newChannel(file), charset, eol, pool);
+	}
+
+	/**
+	 * Write an object in the long text format to a stream, which is closed afterwards
+	 */
+	public static void writeText(PraatObject object, OutputStream out, Charset charset, EOL eol) throws IOException {
+		writeText(object, Channels.newChannel(out), charset, eol);
+	}
+
+	/**
+	 * Write an object in the long text format to a channel, which is closed afterwards
+	 */
+	public static void writeText(PraatObject object, WritableByteChannel channel, Charset charset, EOL eol)
+			throws IOException {
+		writeText(object, channel, charset, eol, null);
+	}
+
+	/**
+	 * Write an object in the long text format to a channel, which is closed afterwards
+	 * 
+	 * @see #writeText(PraatObject, File, Charset, EOL, ForkJoinPool)
+	 */
+	public static void writeText(PraatObject object, WritableByteChannel channel, Charset charset, EOL eol,
+			ForkJoinPool pool) throws IOException {
+		try (PraatCodec codec = PraatCodec.acquire()) {
+			codec.writeText(object, channel, charset, eol, pool);
+		}
 	}
 
 	public static void writeShortText(PraatObject object, File file) throws IOException {
@@ -104,12 +580,65 @@ abstract public class PraatFile {
 	}
 
 	public static void writeShortText(PraatObject object, File file, Charset charset, EOL eol) throws IOException {
-		PraatShortTextFile shortTextFile = new PraatShortTextFile(file, charset, eol);
-		shortTextFile.write(object);
+		writeShortText(object, newChannel(file), charset, eol);
+	}
+
+	/**
+	 * Write an object in the short text format, rendering the tiers of a TextGrid in parallel
+	 * 
+	 * @see #writeText(PraatObject, File, Charset, EOL, ForkJoinPool)
+	 */
+	public static void writeShortText(PraatObject object, File file, Charset charset, EOL eol, ForkJoinPool pool)
+			throws IOException {
+		writeShortText(object, newChannel(file), charset, eol, pool);
 	}
 
-	public static void writeBinary(PraatObject object, File file) {
-		// TODO Auto-generated method stub
+	/**
+	 * Write an object in the short text format to a stream, which is closed afterwards
+	 */
+	public static void writeShortText(PraatObject object, OutputStream out, Charset charset, EOL eol)
+			throws IOException {
+		writeShortText(object, Channels.newChannel(out), charset, eol);
+	}
+
+	/**
+	 * Write an object in the short text format to a channel, which is closed afterwards
+	 */
+	public static void writeShortText(PraatObject object, WritableByteChannel channel, Charset charset, EOL eol)
+			throws IOException {
+		writeShortText(object, channel, charset, eol, null);
+	}
+
+	/**
+	 * Write an object in the short text format to a channel, which is closed afterwards
+	 * 
+	 * @see #writeText(PraatObject, File, Charset, EOL, ForkJoinPool)
+	 */
+	public static void writeShortText(PraatObject object, WritableByteChannel channel, Charset charset, EOL eol,
+			ForkJoinPool pool) throws IOException {
+		try (PraatCodec codec = PraatCodec.acquire()) {
+			codec.writeShortText(object, channel, charset, eol, pool);
+		}
+	}
+
+	public static void writeBinary(PraatObject object, File file) throws IOException {
+		writeBinary(object, newChannel(file));
+	}
+
+	/**
+	 * Write an object in the binary format to a stream, which is closed afterwards
+	 */
+	public static void writeBinary(PraatObject object, OutputStream out) throws IOException {
+		writeBinary(object, Channels.newChannel(out));
+	}
+
+	/**
+	 * Write an object in the binary format to a channel, which is closed afterwards
+	 */
+	public static void writeBinary(PraatObject object, WritableByteChannel channel) throws IOException {
+		try (PraatCodec codec = PraatCodec.acquire()) {
+			codec.writeBinary(object, channel);
+		}
 	}
 
 	abstract public void writeString(String decorator, String value) throws IOException;
@@ -118,8 +647,50 @@ abstract public class PraatFile {
 
 	abstract public void writeDouble(String decorator, double value) throws IOException;
 
+	/**
+	 * Write an existence flag, the counterpart of {@link #readExists()}.
+	 */
+	abstract public void writeExists(String decorator, boolean exists) throws IOException;
+
+	/**
+	 * Write the class name of a payload. Text files store it like any other string.
+	 */
+	public void writeClassName(String decorator, String className) throws IOException {
+		writeString(decorator, className);
+	}
+
+	/**
+	 * Write the heading of a list of items, such as <code>item []:</code>
+	 */
+	public void writeListHeading(String decorator) throws IOException {
+		writeLine("%s []: ", decorator);
+	}
+
+	/**
+	 * Write the heading of an item of a list, such as <code>intervals [3]:</code>
+	 */
+	public void writeItemHeading(String decorator, int index) throws IOException {
+		writeLine("%s [%d]:", decorator, index);
+	}
+
 	abstract public void writeLine(String format, Object... args) throws IOException;
 
+	/**
+	 * Start an object of the given class, whose payload the caller then writes piece by piece
+	 */
+	abstract void beginObject(String className) throws IOException;
+
+	/**
+	 * Write out everything buffered so far without ending the output, e.g. before bytes are copied into the channel
+	 * directly
+	 */
+	abstract void flushOutput() throws IOException;
+
+	/**
+	 * Write out everything buffered so far and close the channel
+	 */
+	abstract void closeOutput() throws IOException;
+
 	abstract public void increaseIndent();
 
 	abstract public void decreaseIndent();
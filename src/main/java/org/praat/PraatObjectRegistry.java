@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * LabelUtils
+ * %%
+ * Copyright (C) 2012 INRIA
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.praat;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps the class names found in Praat files to factories creating the matching {@link PraatObject}s.<br>
+ * The classes of this package are registered up front. Other names are resolved once by looking for a class of that
+ * name in this package; the resulting factory is cached, so reflection is never used per object. Third-party code can
+ * add its own Praat classes with {@link #register(String, Factory)}.
+ */
+public final class PraatObjectRegistry {
+
+	/**
+	 * Creates a {@link PraatObject} by reading it from a {@link PraatFile}
+	 */
+	public interface Factory {
+
+		public PraatObject create(PraatFile file) throws Exception;
+
+	}
+
+	private static final ConcurrentMap<String, Factory> FACTORIES = new ConcurrentHashMap<String, Factory>();
+
+	static {
+		register(PraatEventReader.TEXT_GRID, TextGrid::new);
+		register(PraatEventReader.INTERVAL_TIER, IntervalTier::new);
+		register(PraatEventReader.TEXT_TIER, TextTier::new);
+		register(PraatEventReader.POINT_TIER, PointTier::new);
+		register("Collection", Collection::new);
+	}
+
+	private PraatObjectRegistry() {
+	}
+
+	/**
+	 * Register a factory for a Praat class, replacing any previous registration for that name.
+	 *
+	 * @param className
+	 *            the class name as written in Praat files
+	 * @param factory
+	 *            the factory reading objects of that class
+	 */
+	public static void register(String className, Factory factory) {
+		if (className == null || factory == null) {
+			throw new NullPointerException("Class name and factory must not be null");
+		}
+		FACTORIES.put(className, factory);
+	}
+
+	/**
+	 * @return whether objects of the given Praat class can be read without a reflective lookup
+	 */
+	public static boolean isRegistered(String className) {
+		return FACTORIES.containsKey(className);
+	}
+
+	/**
+	 * Get the factory for a Praat class, looking up and caching a constructor taking a {@link PraatFile} for classes
+	 * that have not been registered.
+	 *
+	 * @throws ClassNotFoundException
+	 *             if there is no such Praat class
+	 */
+	public static Factory getFactory(String className) throws ClassNotFoundException {
+		Factory factory = FACTORIES.get(className);
+		if (factory == null) {
+			factory = lookup(className);
+			Factory previous = FACTORIES.putIfAbsent(className, factory);
+			if (previous != null) {
+				factory = previous;
+			}
+		}
+		return factory;
+	}
+
+	/**
+	 * Read an object of the given Praat class from a file
+	 */
+	public static PraatObject create(String className, PraatFile file) throws Exception {
+		return getFactory(className).create(file);
+	}
+
+	private static Factory lookup(String className) throws ClassNotFoundException {
+		String packageName = PraatObjectRegistry.class.getPackage().getName();
+		Class<?> praatClass;
+		try {
+			praatClass = Class.forName(packageName + "." + className, true, PraatObjectRegistry.class.getClassLoader());
+		} catch (ClassNotFoundException e) {
+			throw new ClassNotFoundException("Unsupported Praat class: " + className);
+		}
+		if (!PraatObject.class.isAssignableFrom(praatClass)) {
+			throw new ClassCastException("Could not cast " + praatClass + " to PraatObject");
+		}
+		final Constructor<?> constructor;
+		try {
+			constructor = praatClass.getConstructor(PraatFile.class);
+		} catch (NoSuchMethodException e) {
+			throw new ClassNotFoundException("Unsupported Praat class: " + className, e);
+		}
+		return file -> (PraatObject) constructor.newInstance(file);
+	}
+
+}
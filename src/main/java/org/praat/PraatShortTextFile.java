@@ -21,37 +21,110 @@ package org.praat;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 
+/**
+ * Praat's short text format, which stores one value per line without any decorators. Values are therefore read
+ * positionally, and anything that is not the expected value on a line of its own is rejected.
+ */
 public class PraatShortTextFile extends PraatTextFile {
 
+	public PraatShortTextFile() {
+		// empty constructor for reading
+	}
+
 	public PraatShortTextFile(File file, Charset charset, EOL eol) throws IOException {
 		super(file, charset, eol);
 	}
 
+	public PraatShortTextFile(OutputStream out, Charset charset, EOL eol) throws IOException {
+		super(out, charset, eol);
+	}
+
+	PraatShortTextFile(WritableByteChannel channel, Charset charset, EOL eol, PraatCodec codec) throws IOException {
+		super(channel, charset, eol, codec);
+	}
+
+	PraatShortTextFile(WritableByteChannel channel, Charset charset, EOL eol, PraatCodec codec, boolean header)
+			throws IOException {
+		super(channel, charset, eol, codec, header);
+	}
+
+	@Override
+	public String readString() throws IOException {
+		return lexer.readNextString();
+	}
+
+	@Override
+	public int readInteger() throws IOException {
+		return lexer.readNextInteger();
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return lexer.readNextDouble();
+	}
+
+	@Override
+	public boolean readExists() throws IOException {
+		return lexer.readNextFlag();
+	}
+
+	@Override
+	void readLabel(LabelBuffer into) throws IOException {
+		lexer.readNextString(into);
+	}
+
+	@Override
+	public void skipString() throws IOException {
+		lexer.skipNextString();
+	}
+
+	@Override
+	public void skipDouble() throws IOException {
+		lexer.skipNextNumber();
+	}
+
 	@Override
 	public void writeString(String decorator, String value) throws IOException {
-		writer.write(String.format("\"%s\"", value));
+		appendQuoted(value);
 		writeLine();
 	}
 
 	public void writeBareString(String value) throws IOException {
-		writer.write(value);
+		append(value);
 		writeLine();
 	}
 
 	@Override
 	public void writeInteger(String decorator, int value) throws IOException {
-		writer.write(number.format(value));
+		appendInteger(value);
 		writeLine();
 	}
 
 	@Override
 	public void writeDouble(String descriptor, double value) throws IOException {
-		writer.write(number.format(value));
+		appendDouble(value);
 		writeLine();
 	}
 
+	@Override
+	public void writeExists(String decorator, boolean exists) throws IOException {
+		writeBareString(exists ? "<exists>" : "<absent>");
+	}
+
+	@Override
+	public void writeListHeading(String decorator) throws IOException {
+		// short text files have no headings
+	}
+
+	@Override
+	public void writeItemHeading(String decorator, int index) throws IOException {
+		// short text files have no headings
+	}
+
 	@Override
 	public void writeLine(String format, Object... args) throws IOException {
 		// do nothing
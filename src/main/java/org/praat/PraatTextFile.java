@@ -19,46 +19,106 @@
  */
 package org.praat;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Constructor;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
-import java.text.NumberFormat;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
-import jregex.Matcher;
-import jregex.Pattern;
+public class PraatTextFile extends PraatFile {
 
-import com.google.common.base.Strings;
-import com.google.common.io.Files;
+	PraatTextLexer lexer;
 
-public class PraatTextFile extends PraatFile {
+	/**
+	 * The undecoded text being read and its charset. If the text is read piece by piece from {@link #input}, the source
+	 * is <code>null</code>.
+	 */
+	ByteBuffer source;
+	Charset charset;
+
+	static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Destination of the written text, and the encoder and byte buffer on the way there
+	 */
+	private WritableByteChannel channel;
+	private CharsetEncoder encoder;
+	private ByteBuffer encoded;
 
-	private BufferedReader reader;
+	/**
+	 * Output buffer; all writing goes through the typed <code>append</code> methods, which fill it without allocating
+	 */
+	private char[] buffer;
+	private int count;
+	private CharBuffer pending;
 
-	protected BufferedWriter writer;
-	private String eol;
-	protected NumberFormat number;
+	private char[] eol;
+	private EOL eolStyle;
 	final private int tabSize = 4;
 	private int indent = 0;
 
-	private static Pattern STRING_PATTERN = new Pattern("\"({target}.*)\"");
-	private static Pattern INTEGER_PATTERN = new Pattern("(?!\\[)({target}\\d+)(?!\\])");
-	private static Pattern DOUBLE_PATTERN = new Pattern("(?!\\[)({target}\\d+(\\.\\d+)?)(?![\\d\\]])");
+	/**
+	 * Spaces for the deepest indentation so far; each level is a prefix of it
+	 */
+	private char[] indentation = new char[0];
 
 	public PraatTextFile() {
 		// TODO Auto-generated constructor stub
 	}
 
 	public PraatTextFile(File file, Charset charset, EOL eol) throws IOException {
-		writer = Files.newWriter(file, charset);
-		this.eol = eol.toString();
-		number = NumberFormat.getInstance(Locale.US);
-		number.setMaximumFractionDigits(32);
-		writer.write("File type = \"ooTextFile\"");
-		writeLine();
+		this(newChannel(file), charset, eol, new PraatCodec());
+	}
+
+	/**
+	 * Prepare writing to a stream, which is closed once the object has been written
+	 */
+	public PraatTextFile(OutputStream out, Charset charset, EOL eol) throws IOException {
+		this(Channels.newChannel(out), charset, eol, new PraatCodec());
+	}
+
+	/**
+	 * Prepare writing to a channel through the buffers and the encoder of a codec
+	 */
+	PraatTextFile(WritableByteChannel channel, Charset charset, EOL eol, PraatCodec codec) throws IOException {
+		this(channel, charset, eol, codec, true);
+	}
+
+	/**
+	 * @param header
+	 *            whether to start with the file header; parts of a file that are concatenated later go without
+	 */
+	PraatTextFile(WritableByteChannel channel, Charset charset, EOL eol, PraatCodec codec, boolean header)
+			throws IOException {
+		this.codec = codec;
+		this.channel = channel;
+		encoder = codec.encoder(charset);
+		encoded = codec.output();
+		buffer = codec.writeBuffer();
+		pending = CharBuffer.wrap(buffer);
+		this.eol = eol.toString().toCharArray();
+		eolStyle = eol;
+		if (header) {
+			append("File type = \"ooTextFile\"");
+			writeLine();
+		}
 	}
 
 	public PraatObject read(File file) throws Exception {
@@ -66,139 +126,317 @@ public class PraatTextFile extends PraatFile {
 	}
 
 	public PraatObject read(File file, Charset charset) throws Exception {
-		reader = Files.newReader(file, charset);
-		reader.readLine(); // discard first line
+		if (codec == null) {
+			codec = new PraatCodec();
+		}
+		return read(codec.readBytes(file), charset);
+	}
+
+	public PraatObject read(ByteBuffer bytes, Charset charset) throws Exception {
+		PraatTextFile reader = begin(bytes, charset);
+		return reader.readPayload(reader.objectClass);
+	}
+
+	/**
+	 * Create a reader for a part of a long text file, such as a block of a {@link TierIndex}
+	 */
+	static PraatTextFile forBlock(ByteBuffer block, Charset charset, PraatCodec codec) {
+		PraatTextFile reader = new PraatTextFile();
+		reader.codec = codec;
+		reader.lexer = new PraatTextLexer(new ByteBufferReader(block.duplicate(), codec.decoder(charset)),
+				codec.lexerBuffer());
+		reader.source = block;
+		reader.charset = charset;
+		return reader;
+	}
+
+	/**
+	 * Create a reader for the block of an object of a {@link CollectionFile}, which is a {@link PraatShortTextFile} if
+	 * the block holds values without decorators
+	 */
+	static PraatTextFile forObject(ByteBuffer block, Charset charset, PraatCodec codec) throws IOException {
+		PraatTextFile reader = forBlock(block, charset, codec);
+		if (!reader.lexer.isAtValue()) {
+			return reader;
+		}
+		PraatShortTextFile shortText = new PraatShortTextFile();
+		shortText.codec = codec;
+		shortText.lexer = reader.lexer;
+		shortText.source = block;
+		shortText.charset = charset;
+		return shortText;
+	}
+
+	/**
+	 * Read the header of a text file. If the file is read from {@link #input}, the bytes are its first part, which the
+	 * reader refills with the rest.
+	 * 
+	 * @return The reader for the rest of the file, which is a {@link PraatShortTextFile} for files in short text format
+	 */
+	PraatTextFile begin(ByteBuffer bytes, Charset charset) throws IOException {
+		if (codec == null) {
+			codec = new PraatCodec();
+		}
+		ByteBufferReader text = input == null ? new ByteBufferReader(bytes.duplicate(), codec.decoder(charset))
+				: new ByteBufferReader(bytes, codec.decoder(charset), input);
+		PraatTextLexer lexer = new PraatTextLexer(text, codec.lexerBuffer());
+		lexer.readString(); // discard file type
 
 		// determine payload class (and ignore missing name)
-		String className = readString();
-		return readPayload(className);
+		String className = lexer.readString();
+
+		// short text files have no decorators, their first value follows the header immediately
+		PraatTextFile reader = lexer.isAtValue() ? new PraatShortTextFile() : this;
+		reader.codec = codec;
+		reader.lexer = lexer;
+		reader.objectClass = className;
+		reader.input = input;
+		reader.source = input == null ? bytes : null;
+		reader.charset = charset;
+		return reader;
+	}
+
+	@Override
+	void setLabelTable(LabelTable labels) {
+		super.setLabelTable(labels);
+		lexer.labels = labels;
 	}
 
 	@Override
-	public PraatObject readPayLoad() throws Exception {
-		// determine payload class
-		String className = readString();
+	public String readString() throws IOException {
+		return lexer.readString();
+	}
+
+	@Override
+	public int readInteger() throws IOException {
+		return lexer.readInteger();
+	}
 
-		// read name
-		String name = readString();
+	@Override
+	public double readDouble() throws IOException {
+		return lexer.readDouble();
+	}
 
-		// read payload
-		PraatObject object = readPayload(className);
-		object.setName(name);
-		return object;
+	@Override
+	public boolean readExists() throws IOException {
+		return lexer.readFlag();
 	}
 
-	private PraatObject readPayload(String className) throws Exception {
-		// use reflection to create payload instance
-		String packageName = getClass().getPackage().getName();
-		String fullyQuallifiedClassString = packageName + "." + className;
-		Class<?> praatClass;
-		try {
-			praatClass = Class.forName(fullyQuallifiedClassString);
-		} catch (ClassNotFoundException e) {
-			throw new ClassNotFoundException("Unsupported Praat class: " + className);
+	@Override
+	void readLabel(LabelBuffer into) throws IOException {
+		lexer.readString(into);
+	}
+
+	@Override
+	public void skipString() throws IOException {
+		lexer.skipString();
+	}
+
+	@Override
+	public void skipDouble() throws IOException {
+		lexer.skipNumber();
+	}
+
+	/**
+	 * The bytes of the characters decoded ahead of the lexer are counted back from the position of the decoder. This
+	 * only works for the charsets whose characters have a known width; replaced malformed input has no width to count
+	 * back either.
+	 */
+	@Override
+	long position() {
+		if (!(lexer.getReader() instanceof ByteBufferReader)) {
+			return -1;
 		}
-		Class<?> superClass = getClass().getSuperclass();
-		Constructor<?> constructor = praatClass.getConstructor(superClass);
-		PraatObject payload;
-		try {
-			payload = (PraatObject) constructor.newInstance(this);
-		} catch (ClassCastException e) {
-			throw new ClassCastException("Could not cast " + praatClass + " to PraatObject");
+		CharBuffer unread = lexer.unread();
+		long length = 0;
+		boolean utf8 = StandardCharsets.UTF_8.equals(charset);
+		int width;
+		if (StandardCharsets.UTF_16BE.equals(charset) || StandardCharsets.UTF_16LE.equals(charset)) {
+			width = 2;
+		} else if (TierIndex.isAsciiCompatible(charset)) {
+			width = 1;
+		} else {
+			return -1;
 		}
-		return payload;
+		while (unread.hasRemaining()) {
+			char c = unread.get();
+			if (c == '\ufffd') {
+				return -1;
+			} else if (!utf8 || c < 0x80) {
+				length += width;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c)) {
+				// the low surrogate is part of the same four bytes
+				length += 4;
+			} else if (!Character.isLowSurrogate(c)) {
+				length += 3;
+			}
+		}
+		return ((ByteBufferReader) lexer.getReader()).position() - length;
 	}
 
-	@Override
-	public String readString() throws IOException {
-		// get string from buffer
-		String target;
+	public void write(PraatObject object) throws IOException {
 		try {
-			target = readPattern(STRING_PATTERN);
-		} catch (IOException e) {
-			throw new IOException("Could not read from buffer");
-		} catch (IllegalArgumentException e) {
-			throw new IllegalArgumentException("Could not read string from buffer");
+			beginObject(object.getClass().getSimpleName());
+			writePayLoad(object);
+			flushBuffer();
+			finish();
+		} finally {
+			channel.close();
 		}
-		return target;
 	}
 
-	@Override
-	public int readInteger() throws IOException {
-		// get integer string from buffer
-		String target = null;
+	/**
+	 * Write an object, rendering the tiers of a TextGrid in parallel on the given pool
+	 * 
+	 * @param pool
+	 *            Pool to render the tiers on, or <code>null</code> to write sequentially
+	 */
+	public void write(PraatObject object, ForkJoinPool pool) throws IOException {
+		if (pool == null || !(object instanceof TextGrid)) {
+			write(object);
+			return;
+		}
 		try {
-			target = readPattern(INTEGER_PATTERN);
-		} catch (IOException e) {
-			throw new IOException("Could not read from buffer");
-		} catch (IllegalArgumentException e) {
-			throw new IllegalArgumentException("Could not read integer from buffer");
+			beginObject(object.getClass().getSimpleName());
+			((TextGrid) object).write(this, pool);
+			flushBuffer();
+			finish();
+		} finally {
+			channel.close();
 		}
+	}
 
-		// parse integer
-		int targetInt;
-		try {
-			targetInt = Integer.parseInt(target);
-		} catch (NumberFormatException e) {
-			throw new NumberFormatException("Could not parse integer from string: " + target);
+	/**
+	 * Render parts of the output on a pool and write them behind the output so far, in the order of the parts. Each
+	 * part is written into memory by a writer of its own, with the format, charset and line ends of this one but
+	 * without a header.
+	 */
+	void writeParts(List<PartWriter> parts, ForkJoinPool pool) throws IOException {
+		List<Callable<ByteBuffer>> tasks = new ArrayList<Callable<ByteBuffer>>(parts.size());
+		for (final PartWriter part : parts) {
+			tasks.add(() -> {
+				// each worker encodes through the buffers of its own codec
+				try (PraatCodec codec = PraatCodec.acquire()) {
+					PartOutput out = new PartOutput();
+					PraatTextFile writer = newPart(Channels.newChannel(out), codec);
+					part.write(writer);
+					writer.closeOutput();
+					return out.toByteBuffer();
+				}
+			});
+		}
+		List<Future<ByteBuffer>> results = pool.invokeAll(tasks);
+		ByteBuffer[] rendered = new ByteBuffer[results.size()];
+		long length = 0;
+		for (int i = 0; i < rendered.length; i++) {
+			try {
+				rendered[i] = results.get(i).get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				} else if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				} else if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				throw new IOException(e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while writing");
+			}
+			length += rendered[i].remaining();
+		}
+
+		flushOutput();
+		if (channel instanceof GatheringByteChannel) {
+			GatheringByteChannel gathering = (GatheringByteChannel) channel;
+			while (length > 0) {
+				length -= gathering.write(rendered);
+			}
+		} else {
+			for (ByteBuffer part : rendered) {
+				while (part.hasRemaining()) {
+					channel.write(part);
+				}
+			}
 		}
-		return targetInt;
 	}
 
-	@Override
-	public double readDouble() throws IOException {
-		// get double string from buffer
-		String target = null;
-		try {
-			target = readPattern(DOUBLE_PATTERN);
-		} catch (IOException e) {
-			throw new IOException("Could not read from buffer");
-		} catch (IllegalArgumentException e) {
-			throw new IllegalArgumentException("Could not read double from buffer");
+	/**
+	 * Create a writer for a part of this output, which goes without the file header and without a byte order mark
+	 */
+	PraatTextFile newPart(WritableByteChannel channel, PraatCodec codec) throws IOException {
+		Charset partCharset = withoutByteOrderMark(encoder.charset());
+		if (this instanceof PraatShortTextFile) {
+			return new PraatShortTextFile(channel, partCharset, eolStyle, codec, false);
 		}
+		return new PraatTextFile(channel, partCharset, eolStyle, codec, false);
+	}
 
-		// parse double
-		double targetDouble;
-		try {
-			targetDouble = Double.parseDouble(target);
-		} catch (NumberFormatException e) {
-			throw new NumberFormatException("Could not parse double from string: " + target);
+	/**
+	 * @return the charset for parts of an output after the first one, which must not start with a byte order mark of
+	 *         their own
+	 */
+	static Charset withoutByteOrderMark(Charset charset) {
+		switch (charset.name()) {
+		case "UTF-16":
+			return StandardCharsets.UTF_16BE;
+		case "x-UTF-16LE-BOM":
+			return StandardCharsets.UTF_16LE;
+		case "X-UTF-32BE-BOM":
+			return Charset.forName("UTF-32BE");
+		case "X-UTF-32LE-BOM":
+			return Charset.forName("UTF-32LE");
+		default:
+			return charset;
 		}
-		return targetDouble;
 	}
 
-	private String readPattern(Pattern pattern) throws IOException {
-		String line;
-		// keep reading line from BufferedReader until we match
-		while ((line = reader.readLine()) != null) {
+	/**
+	 * Writes one part of a text file
+	 */
+	interface PartWriter {
+		void write(PraatTextFile file) throws IOException;
+	}
 
-			// match pattern to line
-			Matcher matcher = pattern.matcher(line);
+	/**
+	 * Memory for a rendered part, handed on without copying it
+	 */
+	private static final class PartOutput extends ByteArrayOutputStream {
 
-			// find pattern in line
-			if (!matcher.find()) {
-				continue; // read next line if pattern not found
-			}
+		PartOutput() {
+			super(BUFFER_SIZE);
+		}
 
-			// get match target
-			String target = null;
-			try {
-				target = matcher.group("target");
-			} catch (IllegalArgumentException e) {
-				throw new IllegalArgumentException("Pattern /" + pattern + "/ does not contain required group");
-			}
-			return target;
+		ByteBuffer toByteBuffer() {
+			return ByteBuffer.wrap(buf, 0, count);
 		}
-		throw new IllegalArgumentException("End of buffer reached without finding pattern /" + pattern + "/");
 	}
 
-	public void write(PraatObject object) throws IOException {
-		writer.write(String.format("Object class = \"%s\"", object.getClass().getSimpleName()));
+	@Override
+	void beginObject(String className) throws IOException {
+		append("Object class = ");
+		appendQuoted(className);
 		writeLine();
 		writeLine();
-		writePayLoad(object);
-		writer.flush();
-		writer.close();
+	}
+
+	@Override
+	void flushOutput() throws IOException {
+		flushBuffer();
+		drain();
+	}
+
+	@Override
+	void closeOutput() throws IOException {
+		try {
+			flushBuffer();
+			finish();
+		} finally {
+			channel.close();
+		}
 	}
 
 	public void writePayLoad(PraatObject object) throws IOException {
@@ -207,33 +445,216 @@ public class PraatTextFile extends PraatFile {
 
 	@Override
 	public void writeString(String decorator, String value) throws IOException {
-		writeLine("%s \"%s\" ", decorator, value);
+		appendDecorator(decorator);
+		appendQuoted(value);
+		append(' ');
+		writeLine();
 	}
 
 	@Override
 	public void writeInteger(String decorator, int value) throws IOException {
-		writeLine("%s %d ", decorator, value);
+		appendDecorator(decorator);
+		appendInteger(value);
+		append(' ');
+		writeLine();
 	}
 
 	@Override
 	public void writeDouble(String decorator, double value) throws IOException {
-		writeLine("%s %s ", decorator, number.format(value));
+		appendDecorator(decorator);
+		appendDouble(value);
+		append(' ');
+		writeLine();
+	}
+
+	@Override
+	public void writeExists(String decorator, boolean exists) throws IOException {
+		appendDecorator(decorator);
+		append(exists ? "<exists> " : "<absent> ");
+		writeLine();
+	}
+
+	@Override
+	public void writeListHeading(String decorator) throws IOException {
+		appendIndent();
+		append(decorator);
+		append(" []: ");
+		writeLine();
+	}
+
+	@Override
+	public void writeItemHeading(String decorator, int index) throws IOException {
+		appendIndent();
+		append(decorator);
+		append(" [");
+		appendInteger(index);
+		append("]:");
+		writeLine();
 	}
 
 	@Override
 	public void writeLine(String format, Object... args) throws IOException {
-		writer.write(Strings.repeat(" ", tabSize * indent));
-		writer.write(String.format(Locale.US, format, args));
+		appendIndent();
+		append(String.format(Locale.US, format, args));
 		writeLine();
 	}
 
 	public void writeLine() throws IOException {
-		writer.write(eol);
+		append(eol, 0, eol.length);
+	}
+
+	/**
+	 * Append the indentation and the decorator of a value line, followed by a space
+	 */
+	private void appendDecorator(String decorator) throws IOException {
+		appendIndent();
+		append(decorator);
+		append(' ');
+	}
+
+	private void appendIndent() throws IOException {
+		append(indentation, 0, tabSize * indent);
+	}
+
+	protected void append(char c) throws IOException {
+		if (count == buffer.length) {
+			flushBuffer();
+		}
+		buffer[count++] = c;
+	}
+
+	protected void append(String s) throws IOException {
+		append(s, 0, s.length());
+	}
+
+	private void append(String s, int start, int end) throws IOException {
+		while (start < end) {
+			if (count == buffer.length) {
+				flushBuffer();
+			}
+			int chunk = Math.min(end - start, buffer.length - count);
+			s.getChars(start, start + chunk, buffer, count);
+			count += chunk;
+			start += chunk;
+		}
+	}
+
+	protected void append(char[] chars, int offset, int length) throws IOException {
+		while (length > buffer.length - count) {
+			int chunk = buffer.length - count;
+			System.arraycopy(chars, offset, buffer, count, chunk);
+			count += chunk;
+			offset += chunk;
+			length -= chunk;
+			flushBuffer();
+		}
+		System.arraycopy(chars, offset, buffer, count, length);
+		count += length;
+	}
+
+	/**
+	 * Append a string in quotes, doubling any quotes inside it, which is how Praat escapes them. A <code>null</code>
+	 * string is written as an empty one, as in binary files.
+	 */
+	protected void appendQuoted(String value) throws IOException {
+		if (value == null) {
+			value = "";
+		}
+		append('"');
+		int start = 0;
+		int quote;
+		while ((quote = value.indexOf('"', start)) >= 0) {
+			append(value, start, quote + 1);
+			append('"');
+			start = quote + 1;
+		}
+		append(value, start, value.length());
+		append('"');
+	}
+
+	protected void appendInteger(int value) throws IOException {
+		if (buffer.length - count < 11) {
+			flushBuffer();
+		}
+		long rest = value;
+		if (rest < 0) {
+			buffer[count++] = '-';
+			rest = -rest;
+		}
+		int digits = 1;
+		for (long i = rest / 10; i > 0; i /= 10) {
+			digits++;
+		}
+		count += digits;
+		for (int i = count - 1; i >= count - digits; i--) {
+			buffer[i] = (char) ('0' + rest % 10);
+			rest /= 10;
+		}
+	}
+
+	/**
+	 * Append the shortest representation of a value that reads back exactly (see {@link TimestampCodec})
+	 */
+	protected void appendDouble(double value) throws IOException {
+		if (buffer.length - count < TimestampCodec.MAX_LENGTH) {
+			flushBuffer();
+		}
+		count = TimestampCodec.format(value, buffer, count);
+	}
+
+	/**
+	 * Encode the buffered characters. A surrogate pair split by the end of the buffer is kept for the next round.
+	 */
+	private void flushBuffer() throws IOException {
+		pending.clear();
+		pending.limit(count);
+		encode(false);
+		count = pending.remaining();
+		System.arraycopy(buffer, pending.position(), buffer, 0, count);
+	}
+
+	/**
+	 * Encode what is left at the end of the text and write out all bytes
+	 */
+	private void finish() throws IOException {
+		pending.clear();
+		pending.limit(count);
+		encode(true);
+		count = 0;
+		while (encoder.flush(encoded).isOverflow()) {
+			drain();
+		}
+		drain();
+	}
+
+	private void encode(boolean endOfInput) throws IOException {
+		while (true) {
+			CoderResult result = encoder.encode(pending, encoded, endOfInput);
+			if (result.isUnderflow()) {
+				return;
+			} else if (result.isOverflow()) {
+				drain();
+			} else {
+				result.throwException();
+			}
+		}
+	}
+
+	private void drain() throws IOException {
+		encoded.flip();
+		while (encoded.hasRemaining()) {
+			channel.write(encoded);
+		}
+		encoded.clear();
 	}
 
 	@Override
 	public void increaseIndent() {
 		indent++;
+		if (tabSize * indent > indentation.length) {
+			indentation = new char[tabSize * indent * 2];
+			Arrays.fill(indentation, ' ');
+		}
 	}
 
 	@Override
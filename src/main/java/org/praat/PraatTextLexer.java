@@ -0,0 +1,533 @@
+/*
+ * #%L
+ * LabelUtils
+ * %%
+ * Copyright (C) 2012 INRIA
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.praat;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Single-pass tokenizer for Praat's long and short text formats.<br>
+ * The lexer works directly on a refillable char buffer and recognizes the few token kinds of the format: quoted strings
+ * (with <code>""</code> escapes), integers, doubles and <code>&lt;exists&gt;</code> flags. Anything else between two
+ * tokens (decorators like <code>xmin =</code>, index markers like <code>[1]</code> and <code>!</code> comments) is
+ * skipped, just like Praat itself does.
+ */
+final class PraatTextLexer {
+
+	static final int BUFFER_SIZE = 8192;
+
+	private static final int STRING = 0;
+	private static final int NUMBER = 1;
+	private static final int FLAG = 2;
+
+	private static final String[] KIND_NAMES = { "a string", "a number", "a flag" };
+
+	private final Reader reader;
+
+	private char[] buffer;
+	private int pos;
+	private int limit;
+
+	/**
+	 * Start of the token currently being scanned, or -1. Characters from here on survive a refill.
+	 */
+	private int mark = -1;
+
+	private int line = 1;
+
+	/**
+	 * Whether a line break was passed since the last value
+	 */
+	private boolean lineBreak = false;
+
+	/**
+	 * Location of the last scanned token; either a range of {@link #buffer} or of {@link #scratch}
+	 */
+	private char[] tokenChars;
+	private int tokenOffset;
+	private int tokenLength;
+
+	/**
+	 * Scratch space for strings that contain escaped quotes
+	 */
+	private char[] scratch = new char[64];
+
+	/**
+	 * Canonical strings for repeated labels, or null
+	 */
+	LabelTable labels;
+
+	PraatTextLexer(Reader reader) {
+		this(reader, new char[BUFFER_SIZE]);
+	}
+
+	/**
+	 * @param buffer
+	 *            Space for the decoded characters, whose contents are overwritten
+	 */
+	PraatTextLexer(Reader reader, char[] buffer) {
+		this.reader = reader;
+		this.buffer = buffer;
+	}
+
+	int getLine() {
+		return line;
+	}
+
+	Reader getReader() {
+		return reader;
+	}
+
+	/**
+	 * @return the characters that have been decoded but not read yet, which follow the last token
+	 */
+	CharBuffer unread() {
+		return CharBuffer.wrap(buffer, pos, limit - pos);
+	}
+
+	String readString() throws IOException {
+		seek(STRING);
+		return stringValue();
+	}
+
+	int readInteger() throws IOException {
+		seek(NUMBER);
+		return integerValue();
+	}
+
+	double readDouble() throws IOException {
+		seek(NUMBER);
+		return doubleValue();
+	}
+
+	boolean readFlag() throws IOException {
+		seek(FLAG);
+		return flagValue();
+	}
+
+	/**
+	 * Read a string that must be the next value on a line of its own, as in short text files.
+	 */
+	String readNextString() throws IOException {
+		expect(STRING);
+		return stringValue();
+	}
+
+	int readNextInteger() throws IOException {
+		expect(NUMBER);
+		return integerValue();
+	}
+
+	double readNextDouble() throws IOException {
+		expect(NUMBER);
+		return doubleValue();
+	}
+
+	boolean readNextFlag() throws IOException {
+		expect(FLAG);
+		return flagValue();
+	}
+
+	/**
+	 * Read a string into a label buffer, without creating a String
+	 */
+	void readString(LabelBuffer into) throws IOException {
+		seek(STRING);
+		scanString();
+		into.append(tokenChars, tokenOffset, tokenLength);
+	}
+
+	void readNextString(LabelBuffer into) throws IOException {
+		expect(STRING);
+		scanString();
+		into.append(tokenChars, tokenOffset, tokenLength);
+	}
+
+	/**
+	 * Skip a string without copying its characters
+	 */
+	void skipString() throws IOException {
+		seek(STRING);
+		skipQuoted();
+	}
+
+	/**
+	 * Skip a number without parsing it
+	 */
+	void skipNumber() throws IOException {
+		seek(NUMBER);
+		scanNumber();
+	}
+
+	void skipNextString() throws IOException {
+		expect(STRING);
+		skipQuoted();
+	}
+
+	void skipNextNumber() throws IOException {
+		expect(NUMBER);
+		scanNumber();
+	}
+
+	/**
+	 * Check whether the next non-blank character starts a value rather than a decorator. Short text files have no
+	 * decorators, so this distinguishes them from long text files right after the header.
+	 */
+	boolean isAtValue() throws IOException {
+		while (pos < limit || fill()) {
+			char c = buffer[pos];
+			if (c == '\n') {
+				line++;
+				lineBreak = true;
+			} else if (c == '\r') {
+				lineBreak = true;
+			} else if (c != ' ' && c != '\t') {
+				return c == '"' || c == '<' || c == '-' || c == '+' || c == '.' || (c >= '0' && c <= '9');
+			}
+			pos++;
+		}
+		return false;
+	}
+
+	private String stringValue() throws IOException {
+		scanString();
+		if (labels != null) {
+			return labels.intern(tokenChars, tokenOffset, tokenLength);
+		}
+		return new String(tokenChars, tokenOffset, tokenLength);
+	}
+
+	private int integerValue() throws IOException {
+		scanNumber();
+		return parseInteger(tokenChars, tokenOffset, tokenLength);
+	}
+
+	private double doubleValue() throws IOException {
+		scanNumber();
+		return TimestampCodec.parse(tokenChars, tokenOffset, tokenLength);
+	}
+
+	private boolean flagValue() throws IOException {
+		scanFlag();
+		if (contentEquals("exists") || contentEquals("true")) {
+			return true;
+		} else if (contentEquals("absent") || contentEquals("false")) {
+			return false;
+		}
+		throw new IllegalArgumentException("Unknown flag <" + new String(tokenChars, tokenOffset, tokenLength) + "> (line "
+				+ line + ")");
+	}
+
+	/**
+	 * Advance to the next value, which must be of the given kind and start a new line. Nothing but blanks may precede
+	 * it.
+	 */
+	private void expect(int kind) throws IOException {
+		boolean newLine = lineBreak;
+		lineBreak = false;
+		while (true) {
+			if (pos == limit && !fill()) {
+				throw new IllegalArgumentException("Early end of text while looking for " + KIND_NAMES[kind] + " (line "
+						+ line + ")");
+			}
+			char c = buffer[pos];
+			if (c == '\n') {
+				line++;
+				newLine = true;
+			} else if (c == '\r') {
+				newLine = true;
+			} else if (c != ' ' && c != '\t') {
+				break;
+			}
+			pos++;
+		}
+		char c = buffer[pos];
+		boolean matches;
+		switch (kind) {
+		case STRING:
+			matches = c == '"';
+			break;
+		case FLAG:
+			matches = c == '<';
+			break;
+		default:
+			matches = c == '-' || c == '+' || c == '.' || (c >= '0' && c <= '9');
+		}
+		if (!matches || !newLine) {
+			throw new IllegalArgumentException("Misaligned short text file: expected " + KIND_NAMES[kind]
+					+ " on a line of its own but found '" + c + "' (line " + line + ")");
+		}
+	}
+
+	/**
+	 * Advance to the first character of the next token of the given kind, skipping whitespace, decorators, index markers
+	 * and comments.
+	 */
+	private void seek(int kind) throws IOException {
+		while (true) {
+			if (pos == limit && !fill()) {
+				throw new IllegalArgumentException("Early end of text while looking for " + KIND_NAMES[kind] + " (line "
+						+ line + ")");
+			}
+			char c = buffer[pos];
+			switch (c) {
+			case '\n':
+				line++;
+				break;
+			case '"':
+				if (kind == STRING) {
+					return;
+				}
+				throw mismatch(STRING, kind);
+			case '<':
+				if (kind == FLAG) {
+					return;
+				}
+				throw mismatch(FLAG, kind);
+			case '!':
+				skipUntil('\n');
+				continue;
+			case '[':
+				skipUntil(']');
+				continue;
+			default:
+				if (c >= '0' && c <= '9') {
+					if (kind == NUMBER) {
+						return;
+					}
+					throw mismatch(NUMBER, kind);
+				}
+				if (kind == NUMBER && (c == '-' || c == '+' || c == '.')) {
+					return;
+				}
+			}
+			pos++;
+		}
+	}
+
+	/**
+	 * Skip to (but not past) the next occurrence of the given character
+	 */
+	private void skipUntil(char end) throws IOException {
+		while (true) {
+			if (pos == limit && !fill()) {
+				return;
+			}
+			char c = buffer[pos];
+			if (c == end) {
+				return;
+			}
+			if (c == '\n') {
+				line++;
+			}
+			pos++;
+		}
+	}
+
+	private IllegalArgumentException mismatch(int found, int expected) {
+		return new IllegalArgumentException("Found " + KIND_NAMES[found] + " while looking for " + KIND_NAMES[expected]
+				+ " (line " + line + ")");
+	}
+
+	/**
+	 * Scan a quoted string starting at the opening quote. Doubled quotes inside the string stand for a single quote.
+	 */
+	private void scanString() throws IOException {
+		pos++;
+		mark = pos;
+		int scratchLength = -1;
+		while (true) {
+			if (pos == limit && !fill()) {
+				mark = -1;
+				throw new IllegalArgumentException("Early end of text inside a string (line " + line + ")");
+			}
+			char c = buffer[pos++];
+			if (c == '"') {
+				// a doubled quote is an escaped quote, anything else ends the string
+				boolean more = pos < limit || fill();
+				int end = pos - 1;
+				if (more && buffer[pos] == '"') {
+					scratchLength = appendScratch(scratchLength, end + 1);
+					pos++;
+					mark = pos;
+					continue;
+				}
+				if (scratchLength < 0) {
+					tokenChars = buffer;
+					tokenOffset = mark;
+					tokenLength = end - mark;
+				} else {
+					tokenChars = scratch;
+					tokenOffset = 0;
+					tokenLength = appendScratch(scratchLength, end);
+				}
+				mark = -1;
+				return;
+			}
+			if (c == '\n') {
+				line++;
+			}
+		}
+	}
+
+	/**
+	 * Move past a quoted string starting at the opening quote. Unlike {@link #scanString()}, nothing is kept, so the
+	 * buffer never has to grow.
+	 */
+	private void skipQuoted() throws IOException {
+		pos++;
+		while (true) {
+			if (pos == limit && !fill()) {
+				throw new IllegalArgumentException("Early end of text inside a string (line " + line + ")");
+			}
+			char c = buffer[pos++];
+			if (c == '"') {
+				if ((pos < limit || fill()) && buffer[pos] == '"') {
+					pos++;
+					continue;
+				}
+				return;
+			}
+			if (c == '\n') {
+				line++;
+			}
+		}
+	}
+
+	/**
+	 * Move the characters between {@link #mark} and <code>end</code> to the scratch space
+	 */
+	private int appendScratch(int scratchLength, int end) {
+		int length = Math.max(scratchLength, 0);
+		int count = end - mark;
+		if (length + count > scratch.length) {
+			scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, length + count));
+		}
+		System.arraycopy(buffer, mark, scratch, length, count);
+		return length + count;
+	}
+
+	/**
+	 * Scan a number token, which extends up to the next whitespace character
+	 */
+	private void scanNumber() throws IOException {
+		mark = pos;
+		while (pos < limit || fill()) {
+			char c = buffer[pos];
+			if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+				break;
+			}
+			pos++;
+		}
+		tokenChars = buffer;
+		tokenOffset = mark;
+		tokenLength = pos - mark;
+		mark = -1;
+	}
+
+	/**
+	 * Scan a flag such as <code>&lt;exists&gt;</code> starting at the opening bracket. The token is the text between the
+	 * brackets.
+	 */
+	private void scanFlag() throws IOException {
+		pos++;
+		mark = pos;
+		while (true) {
+			if (pos == limit && !fill()) {
+				mark = -1;
+				throw new IllegalArgumentException("Early end of text inside a flag (line " + line + ")");
+			}
+			if (buffer[pos++] == '>') {
+				break;
+			}
+		}
+		tokenChars = buffer;
+		tokenOffset = mark;
+		tokenLength = pos - 1 - mark;
+		mark = -1;
+	}
+
+	private boolean contentEquals(String s) {
+		if (s.length() != tokenLength) {
+			return false;
+		}
+		for (int i = 0; i < tokenLength; i++) {
+			if (tokenChars[tokenOffset + i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Make more characters available. Everything from {@link #mark} (or, if no token is being scanned, from
+	 * {@link #pos}) on is kept.
+	 *
+	 * @return false at the end of input
+	 */
+	private boolean fill() throws IOException {
+		int keep = mark >= 0 ? mark : pos;
+		if (keep > 0) {
+			System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+			limit -= keep;
+			pos -= keep;
+			if (mark >= 0) {
+				mark -= keep;
+			}
+		} else if (limit == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		int read = reader.read(buffer, limit, buffer.length - limit);
+		if (read <= 0) {
+			return false;
+		}
+		limit += read;
+		return true;
+	}
+
+	static int parseInteger(char[] chars, int offset, int length) {
+		int i = offset;
+		int end = offset + length;
+		boolean negative = false;
+		if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+			negative = chars[i++] == '-';
+		}
+		if (i == end) {
+			throw new NumberFormatException("Could not parse integer from string: " + new String(chars, offset, length));
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			char c = chars[i];
+			if (c < '0' || c > '9' || value > Integer.MAX_VALUE) {
+				throw new NumberFormatException("Could not parse integer from string: " + new String(chars, offset, length));
+			}
+			value = value * 10 + (c - '0');
+		}
+		value = negative ? -value : value;
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new NumberFormatException("Could not parse integer from string: " + new String(chars, offset, length));
+		}
+		return (int) value;
+	}
+
+}
@@ -20,7 +20,16 @@
 package org.praat;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+import org.praat.PraatEventReader.Event;
 
 import com.google.common.base.Objects;
 import com.google.common.collect.Iterables;
@@ -66,37 +75,160 @@ public class TextGrid extends Collection implements PraatObject {
 		read(file);
 	}
 
+	TextGrid() {
+		// empty constructor for reading
+	}
+
 	@Override
 	public PraatObject read(PraatFile file) throws Exception {
-		xmin = file.readDouble();
-		xmax = file.readDouble();
-		return super.read(file);
+		return read(new PraatEventReader(file, PraatEventReader.TEXT_GRID));
+	}
+
+	/**
+	 * Build the TextGrid from the events of a reader that has not been advanced yet
+	 */
+	TextGrid read(PraatEventReader events) throws IOException {
+		events.next();
+		xmin = events.getXmin();
+		xmax = events.getXmax();
+		readTiers(events);
+		return this;
+	}
+
+	private void readTiers(PraatEventReader events) throws IOException {
+		while (events.next() == Event.TIER_START) {
+			items.add(Tier.create(events));
+		}
+	}
+
+	/**
+	 * Build the TextGrid from a text file, parsing the tiers in parallel if their offsets can be found. Otherwise, the
+	 * tiers are read one after another.
+	 */
+	TextGrid read(PraatTextFile file, ForkJoinPool pool) throws Exception {
+		return read(file, file instanceof PraatShortTextFile ? null : TierIndex.scan(file.source, file.charset), pool);
+	}
+
+	/**
+	 * Build the TextGrid from a text file whose tier blocks have been found already
+	 * 
+	 * @param index
+	 *            Blocks of the tiers, or <code>null</code> to read the tiers one after another
+	 */
+	TextGrid read(PraatTextFile file, TierIndex index, ForkJoinPool pool) throws Exception {
+		PraatEventReader events = new PraatEventReader(file, PraatEventReader.TEXT_GRID);
+		events.next();
+		xmin = events.getXmin();
+		xmax = events.getXmax();
+
+		if (index == null || index.size() != events.getSize()) {
+			readTiers(events);
+			return this;
+		}
+
+		final Predicate<String> tierFilter = file.tierFilter;
+		final int offHeapThreshold = file.codec.getOffHeapThreshold();
+		final LabelTable[] labels = new LabelTable[index.size()];
+		List<Callable<Tier>> tasks = new ArrayList<Callable<Tier>>(index.size());
+		for (int i = 0; i < index.size(); i++) {
+			final ByteBuffer block = index.getBlock(i);
+			final LabelTable tierLabels = file.labels != null ? new LabelTable() : null;
+			labels[i] = tierLabels;
+			tasks.add(() -> {
+				// each worker decodes through the buffers of its own codec
+				try (PraatCodec codec = PraatCodec.acquire()) {
+					codec.setOffHeapThreshold(offHeapThreshold);
+					PraatTextFile part = PraatTextFile.forBlock(block, index.getCharset(), codec);
+					part.setLabelTable(tierLabels);
+					return readTier(part, tierFilter);
+				}
+			});
+		}
+		for (Future<Tier> result : pool.invokeAll(tasks)) {
+			Tier tier;
+			try {
+				tier = result.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception) {
+					throw (Exception) e.getCause();
+				} else if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				throw e;
+			}
+			if (tier != null) {
+				items.add(tier);
+			}
+		}
+		if (file.labels != null) {
+			for (LabelTable part : labels) {
+				file.labels.addStatistics(part);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Read a tier block starting at its <code>item [n]:</code> marker
+	 * 
+	 * @return the tier, or <code>null</code> if it is not accepted by the filter
+	 */
+	private static Tier readTier(PraatTextFile part, Predicate<String> tierFilter) throws IOException {
+		String className = part.readClassName();
+		String name = part.readString();
+		if (tierFilter != null && !tierFilter.test(name)) {
+			return null;
+		}
+		PraatEventReader events = new PraatEventReader(part, className);
+		events.next();
+		Tier tier = Tier.create(events);
+		tier.setName(name);
+		return tier;
 	}
 
 	@Override
 	public void write(PraatFile file) throws IOException {
-		file.writeDouble("xmin =", xmin);
-		file.writeDouble("xmax =", xmax);
-		if (file instanceof PraatShortTextFile) {
-			((PraatShortTextFile) file).writeBareString("<exists>");
-		} else {
-			file.writeLine("tiers? <exists> ");
-		}
-		file.writeInteger("size =", items.size());
+		writeHeader(file);
 
 		// iterate over items
 		int i = 1;
-		file.writeLine("item []: ");
 		for (PraatObject item : items) {
-			file.increaseIndent();
-			file.writeLine("item [%d]:", i++);
-			file.increaseIndent();
-			file.writeString("class =", item.getClass().getSimpleName());
-			file.writeString("name =", item.getName());
-			item.write(file);
-			file.decreaseIndent();
-			file.decreaseIndent();
+			writeItem(file, item, i++);
+		}
+	}
+
+	/**
+	 * Write the TextGrid to a text file, rendering the tiers in parallel. The output is the same as that of
+	 * {@link #write(PraatFile)}.
+	 */
+	void write(PraatTextFile file, ForkJoinPool pool) throws IOException {
+		writeHeader(file);
+		List<PraatTextFile.PartWriter> parts = new ArrayList<PraatTextFile.PartWriter>(items.size());
+		int i = 1;
+		for (final PraatObject item : items) {
+			final int number = i++;
+			parts.add(part -> writeItem(part, item, number));
 		}
+		file.writeParts(parts, pool);
+	}
+
+	private void writeHeader(PraatFile file) throws IOException {
+		file.writeDouble("xmin =", xmin);
+		file.writeDouble("xmax =", xmax);
+		file.writeExists("tiers?", true);
+		file.writeInteger("size =", items.size());
+		file.writeListHeading("item");
+	}
+
+	private static void writeItem(PraatFile file, PraatObject item, int number) throws IOException {
+		file.increaseIndent();
+		file.writeItemHeading("item", number);
+		file.increaseIndent();
+		file.writeClassName("class =", item.getClass().getSimpleName());
+		file.writeString("name =", item.getName());
+		item.write(file);
+		file.decreaseIndent();
+		file.decreaseIndent();
 	}
 
 	@Override
@@ -109,6 +241,39 @@ public class TextGrid extends Collection implements PraatObject {
 		this.name = name;
 	}
 
+	/**
+	 * @return the number of intervals and points in all tiers
+	 */
+	public long getItemCount() {
+		long count = 0;
+		for (PraatObject item : items) {
+			count += ((Tier) item).size();
+		}
+		return count;
+	}
+
+	/**
+	 * Move the items of all tiers out of the heap
+	 * 
+	 * @see Tier#moveOffHeap()
+	 */
+	public void moveOffHeap() {
+		for (PraatObject item : items) {
+			((Tier) item).moveOffHeap();
+		}
+	}
+
+	/**
+	 * Give back the memory of all tiers moved off the heap
+	 * 
+	 * @see Tier#free()
+	 */
+	public void free() {
+		for (PraatObject item : items) {
+			((Tier) item).free();
+		}
+	}
+
 	/**
 	 * Ensure that the time domain of the TextGrid encloses the time domains of all Tiers.<br>
 	 * Note that if the time domains of individual Tiers differ, these deviations are <i>not</i> corrected.
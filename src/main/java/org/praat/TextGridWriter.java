@@ -0,0 +1,367 @@
+/*
+ * #%L
+ * LabelUtils
+ * %%
+ * Copyright (C) 2012 INRIA
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.praat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.praat.PraatTextFile.EOL;
+
+/**
+ * Writes a TextGrid item by item, without building a {@link TextGrid} in memory first.<br>
+ * Praat files give the number of items of a tier before the items, so the items of each tier are written to a
+ * temporary file of their own as they arrive, and {@link #close()} joins them behind the headings once all counts are
+ * known. Memory use is therefore independent of the size of the TextGrid. All items go through one writer and one
+ * codec; the bytes of each tier are collected in a small buffer, and its temporary file is only opened while a full
+ * buffer is appended to it, so no file stays open between items however many tiers there are.<br>
+ * Tiers are written in the order in which their first item arrives. The time domain of a tier runs from the start of
+ * its first item to the end of its last one, like that of {@link IntervalTier#IntervalTier(String, java.util.List)};
+ * the time domain of the TextGrid encloses those of all tiers, like that of
+ * {@link TextGrid#TextGrid(String, java.util.List)}. The output is the same as if the TextGrid had been written at
+ * once.
+ */
+public final class TextGridWriter implements AutoCloseable {
+
+	private enum Format {
+		TEXT, SHORT_TEXT, BINARY
+	}
+
+	/**
+	 * Bytes of items collected for a tier before they are appended to its temporary file
+	 */
+	private static final int SPILL_SIZE = 16 * 1024;
+
+	private final File file;
+	private final Format format;
+	private final Charset charset;
+	private final EOL eol;
+
+	private final Map<String, Part> tiers = new LinkedHashMap<String, Part>();
+	private boolean closed;
+
+	/**
+	 * Buffers and coders for the items of all tiers and for the file written in the end
+	 */
+	private final PraatCodec codec = new PraatCodec();
+	/**
+	 * Writer of the items, created with the first one, and the tier it currently writes to
+	 */
+	private PraatFile items;
+	private Part current;
+
+	private TextGridWriter(File file, Format format, Charset charset, EOL eol) {
+		this.file = file;
+		this.format = format;
+		this.charset = charset;
+		this.eol = eol;
+	}
+
+	/**
+	 * Write a TextGrid in the long text format, compressed if the file name ends with <code>.gz</code>
+	 */
+	public static TextGridWriter text(File file, Charset charset, EOL eol) {
+		return new TextGridWriter(file, Format.TEXT, charset, eol);
+	}
+
+	/**
+	 * Write a TextGrid in the short text format, compressed if the file name ends with <code>.gz</code>
+	 */
+	public static TextGridWriter shortText(File file, Charset charset, EOL eol) {
+		return new TextGridWriter(file, Format.SHORT_TEXT, charset, eol);
+	}
+
+	/**
+	 * Write a TextGrid in the binary format, compressed if the file name ends with <code>.gz</code>
+	 */
+	public static TextGridWriter binary(File file) {
+		return new TextGridWriter(file, Format.BINARY, null, null);
+	}
+
+	/**
+	 * Append an interval to the interval tier of the given name, which is created by its first interval
+	 */
+	public void addInterval(String tierName, double start, double end, String text) throws IOException {
+		Part tier = getTier(tierName, false);
+		tier.add(start, end);
+		PraatFile out = writeTo(tier);
+		out.writeItemHeading("intervals", tier.size);
+		out.increaseIndent();
+		out.writeDouble("xmin =", start);
+		out.writeDouble("xmax =", end);
+		out.writeString("text =", text);
+		out.decreaseIndent();
+	}
+
+	/**
+	 * Append a point to the point tier of the given name, which is created by its first point
+	 */
+	public void addPoint(String tierName, double time, String mark) throws IOException {
+		Part tier = getTier(tierName, true);
+		tier.add(time, time);
+		PraatFile out = writeTo(tier);
+		out.writeItemHeading("points", tier.size);
+		out.increaseIndent();
+		out.writeDouble("number =", time);
+		out.writeString("mark =", mark);
+		out.decreaseIndent();
+	}
+
+	/**
+	 * @return the number of tiers so far
+	 */
+	public int getTierCount() {
+		return tiers.size();
+	}
+
+	/**
+	 * Write the TextGrid to the file and delete the temporary files of its tiers
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			if (items != null) {
+				items.flushOutput();
+			}
+			for (Part tier : tiers.values()) {
+				tier.spill();
+			}
+			writeFile();
+		} finally {
+			deleteParts();
+		}
+	}
+
+	/**
+	 * Delete the temporary files of the tiers without writing anything, e.g. after an error
+	 */
+	public void discard() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		deleteParts();
+	}
+
+	private void writeFile() throws IOException {
+		double xmin = 0;
+		double xmax = 0;
+		for (Part tier : tiers.values()) {
+			if (tier.xmin < xmin) {
+				xmin = tier.xmin;
+			}
+			if (tier.xmax > xmax) {
+				xmax = tier.xmax;
+			}
+		}
+		WritableByteChannel channel = PraatFile.newChannel(file);
+		try {
+			// the items have all been written out, so their buffers are free for the file
+			PraatFile out = newWriter(channel, charset, codec, true);
+			// the same sequence as TextGrid#write(PraatFile) and Tier#write(PraatFile)
+			out.beginObject("TextGrid");
+			out.writeDouble("xmin =", xmin);
+			out.writeDouble("xmax =", xmax);
+			out.writeExists("tiers?", true);
+			out.writeInteger("size =", tiers.size());
+			out.writeListHeading("item");
+			int i = 1;
+			for (Part tier : tiers.values()) {
+				out.increaseIndent();
+				out.writeItemHeading("item", i++);
+				out.increaseIndent();
+				out.writeClassName("class =", tier.points ? "TextTier" : "IntervalTier");
+				out.writeString("name =", tier.name);
+				out.writeDouble("xmin =", tier.xmin);
+				out.writeDouble("xmax =", tier.xmax);
+				out.writeInteger(tier.points ? "points: size =" : "intervals: size =", tier.size);
+				out.flushOutput();
+				try (FileChannel items = FileChannel.open(tier.path, StandardOpenOption.READ)) {
+					long position = 0;
+					long length = items.size();
+					while (position < length) {
+						position += items.transferTo(position, length - position, channel);
+					}
+				}
+				out.decreaseIndent();
+				out.decreaseIndent();
+			}
+			out.closeOutput();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private Part getTier(String name, boolean points) throws IOException {
+		if (closed) {
+			throw new IllegalStateException("TextGrid has been written already");
+		}
+		Part tier = tiers.get(name);
+		if (tier == null) {
+			tier = new Part(name, points);
+			tiers.put(name, tier);
+		} else if (tier.points != points) {
+			throw new IllegalArgumentException("Tier " + name + " is " + (points ? "an interval" : "a point") + " tier");
+		}
+		return tier;
+	}
+
+	/**
+	 * @return the writer of the items, switched to the given tier
+	 */
+	private PraatFile writeTo(Part tier) throws IOException {
+		if (items == null) {
+			items = newWriter(new ItemChannel(), charset != null ? PraatTextFile.withoutByteOrderMark(charset) : null,
+					codec, false);
+			// items are nested in the list of tiers and in their tier
+			items.increaseIndent();
+			items.increaseIndent();
+		} else if (tier != current) {
+			// the bytes written so far belong to the previous tier
+			items.flushOutput();
+		}
+		current = tier;
+		return items;
+	}
+
+	private PraatFile newWriter(WritableByteChannel channel, Charset charset, PraatCodec codec, boolean header)
+			throws IOException {
+		switch (format) {
+		case BINARY:
+			return new PraatBinaryFile(channel, codec, header);
+		case SHORT_TEXT:
+			return new PraatShortTextFile(channel, charset, eol, codec, header);
+		default:
+			return new PraatTextFile(channel, charset, eol, codec, header);
+		}
+	}
+
+	private void deleteParts() throws IOException {
+		IOException failure = null;
+		for (Part tier : tiers.values()) {
+			try {
+				Files.deleteIfExists(tier.path);
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Passes the bytes of the items on to the tier they are written to
+	 */
+	private final class ItemChannel implements WritableByteChannel {
+
+		@Override
+		public int write(ByteBuffer bytes) throws IOException {
+			return current.write(bytes);
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+			// the temporary files are only open while they are appended to
+		}
+	}
+
+	/**
+	 * The items of a tier, written to a temporary file
+	 */
+	private static final class Part {
+
+		private final String name;
+		private final boolean points;
+		private final Path path;
+		/**
+		 * Bytes not appended to the temporary file yet, or null before the first item
+		 */
+		private ByteBuffer pending;
+		private int size;
+		private double xmin;
+		private double xmax;
+
+		Part(String name, boolean points) throws IOException {
+			this.name = name;
+			this.points = points;
+			path = Files.createTempFile("tier", ".part");
+		}
+
+		void add(double start, double end) {
+			if (size == 0) {
+				xmin = start;
+			}
+			xmax = end;
+			size++;
+		}
+
+		int write(ByteBuffer bytes) throws IOException {
+			int count = bytes.remaining();
+			if (pending == null) {
+				pending = ByteBuffer.allocate(SPILL_SIZE);
+			}
+			while (bytes.hasRemaining()) {
+				if (!pending.hasRemaining()) {
+					spill();
+				}
+				ByteBuffer chunk = bytes.duplicate();
+				chunk.limit(chunk.position() + Math.min(chunk.remaining(), pending.remaining()));
+				pending.put(chunk);
+				bytes.position(chunk.position());
+			}
+			return count;
+		}
+
+		/**
+		 * Append the pending bytes to the temporary file, which is only open meanwhile
+		 */
+		void spill() throws IOException {
+			if (pending == null || pending.position() == 0) {
+				return;
+			}
+			pending.flip();
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+				while (pending.hasRemaining()) {
+					channel.write(pending);
+				}
+			}
+			pending.clear();
+		}
+	}
+
+}
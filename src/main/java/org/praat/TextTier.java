@@ -19,6 +19,7 @@
  */
 package org.praat;
 
+import java.io.IOException;
 import java.util.List;
 
 public class TextTier extends PointTier {
@@ -27,6 +28,10 @@ public class TextTier extends PointTier {
 		super(file);
 	}
 
+	TextTier(PraatEventReader events) throws IOException {
+		super(events);
+	}
+
 	public TextTier(String name, double startTime, double endTime, List<Point> points) {
 		super(name, startTime, endTime, points);
 	}
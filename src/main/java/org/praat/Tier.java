@@ -17,19 +17,78 @@
  * limitations under the License.
  * #L%
  */
+
 package org.praat;
 
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+import org.praat.PraatEventReader.Event;
 
 import com.google.common.base.Objects;
-import com.google.common.collect.Lists;
 
+/**
+ * Common base of interval and point tiers.<br>
+ * The items of a tier are kept in parallel primitive arrays (start times, end times and labels) instead of one object
+ * per item. {@link Interval}s and {@link Point}s are only created on demand by the iterators of the subclasses; bulk
+ * consumers should prefer the indexed accessors {@link #getStart(int)}, {@link #getEnd(int)} and
+ * {@link #getLabel(int)}.<br>
+ * Labels read from a file may stay undecoded: they are then kept as offset and length into a buffer shared by all tiers
+ * of the parse, and only become Strings when {@link #getLabel(int)} is called for them. {@link #isEmpty(int)} and
+ * {@link #contentEquals(int, CharSequence)} never create a String.<br>
+ * Very large tiers can be moved into direct memory outside the heap with {@link #moveOffHeap()}, or be read right into
+ * it (see {@link PraatCodec#setOffHeapThreshold(int)}), where they neither add to the heap size nor to the work of the
+ * garbage collector; {@link #free()} gives that memory back.<br>
+ * Time queries use binary search as long as start and end times both ascend, which is how Praat keeps them. Tiers
+ * built out of order get an index for queries instead, which is built on the first query after a change.
+ */
 abstract public class Tier implements PraatObject {
 
+	private static final double[] NO_TIMES = new double[0];
+	private static final String[] NO_LABELS = new String[0];
+
 	protected double xmin;
 	protected double xmax;
 	protected String name;
-	protected List<Point> items = Lists.newArrayList();
+
+	protected double[] starts = NO_TIMES;
+	/**
+	 * End times, or null for point tiers
+	 */
+	protected double[] ends;
+	protected String[] labels = NO_LABELS;
+	protected int size;
+
+	/**
+	 * Characters of the labels not created yet, with their offsets and lengths; a length of -1 means that the label is
+	 * in {@link #labels}
+	 */
+	private LabelBuffer labelBuffer;
+	private int[] labelOffsets;
+	private int[] labelLengths;
+
+	/**
+	 * Items moved out of the heap, or null; the arrays above are empty then
+	 */
+	private OffHeapItems offHeap;
+
+	/**
+	 * Whether start and end times both ascend; only known to be current if {@link #orderChecked} is set
+	 */
+	private boolean ordered = true;
+	private boolean orderChecked = true;
+
+	/**
+	 * Query index of a tier that is not in order: the item indices sorted by start time, and the largest end time in
+	 * each prefix of that order
+	 */
+	private int[] byStart;
+	private double[] maxEnds;
 
 	protected Tier() {
 		// empty constructor
@@ -41,6 +100,23 @@ abstract public class Tier implements PraatObject {
 		xmax = endTime;
 	}
 
+	/**
+	 * Build a tier from the events of the given reader, which must be at {@link Event#TIER_START}
+	 */
+	static Tier create(PraatEventReader events) throws IOException {
+		String tierClass = events.getTierClass();
+		Tier tier;
+		if (PraatEventReader.INTERVAL_TIER.equals(tierClass)) {
+			tier = new IntervalTier(events);
+		} else if (PraatEventReader.TEXT_TIER.equals(tierClass)) {
+			tier = new TextTier(events);
+		} else {
+			tier = new PointTier(events);
+		}
+		tier.setName(events.getTierName());
+		return tier;
+	}
+
 	public double getStartTime() {
 		return xmin;
 	}
@@ -49,6 +125,625 @@ abstract public class Tier implements PraatObject {
 		return xmax;
 	}
 
+	/**
+	 * @return the number of intervals or points in this tier
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the start time of the item at the given index; for point tiers, the time of the point
+	 */
+	public double getStart(int index) {
+		checkIndex(index);
+		return startOf(index);
+	}
+
+	/**
+	 * @return the end time of the item at the given index; for point tiers, the time of the point
+	 */
+	public double getEnd(int index) {
+		checkIndex(index);
+		return endOf(index);
+	}
+
+	/**
+	 * @return the start time of the item at the given index in ticks of the given resolution
+	 */
+	public long getStartTicks(int index, TimeResolution resolution) {
+		return resolution.toTicks(getStart(index));
+	}
+
+	/**
+	 * @return the end time of the item at the given index in ticks of the given resolution
+	 */
+	public long getEndTicks(int index, TimeResolution resolution) {
+		return resolution.toTicks(getEnd(index));
+	}
+
+	/**
+	 * @return the text of the item at the given index
+	 */
+	public String getLabel(int index) {
+		checkIndex(index);
+		if (offHeap != null) {
+			return offHeap.label(index);
+		}
+		String label = labels[index];
+		if (label == null && isBuffered(index)) {
+			label = labelBuffer.toString(labelOffsets[index], labelLengths[index]);
+			labels[index] = label;
+		}
+		return label;
+	}
+
+	/**
+	 * @return whether the text of the item at the given index is empty (or missing), without creating the label
+	 */
+	public boolean isEmpty(int index) {
+		checkIndex(index);
+		if (offHeap != null) {
+			return offHeap.isEmpty(index);
+		}
+		if (labels[index] == null && isBuffered(index)) {
+			return labelLengths[index] == 0;
+		}
+		return labels[index] == null || labels[index].isEmpty();
+	}
+
+	/**
+	 * @return whether the text of the item at the given index equals the given characters, without creating the label
+	 */
+	public boolean contentEquals(int index, CharSequence s) {
+		checkIndex(index);
+		if (offHeap != null) {
+			return offHeap.contentEquals(index, s);
+		}
+		if (labels[index] == null && isBuffered(index)) {
+			return labelBuffer.contentEquals(labelOffsets[index], labelLengths[index], s);
+		}
+		return labels[index] != null && labels[index].contentEquals(s);
+	}
+
+	private boolean isBuffered(int index) {
+		return labelLengths != null && labelLengths[index] >= 0;
+	}
+
+	/**
+	 * Append an item. The end time is ignored by point tiers.
+	 */
+	protected void append(double start, double end, String label) {
+		moveOnHeap();
+		if (size == starts.length) {
+			grow(size + 1);
+		}
+		if (ordered && size > 0) {
+			ordered = start >= starts[size - 1] && (ends == null || end >= ends[size - 1]);
+		}
+		byStart = null;
+		starts[size] = start;
+		if (ends != null) {
+			ends[size] = end;
+		}
+		labels[size] = label;
+		if (labelLengths != null) {
+			labelLengths[size] = -1;
+		}
+		size++;
+	}
+
+	/**
+	 * Append an item whose label is kept undecoded in the given buffer until it is needed
+	 */
+	void appendLabel(double start, double end, LabelBuffer buffer, int offset, int length) {
+		moveOnHeap();
+		if (labelLengths == null) {
+			labelBuffer = buffer;
+			labelOffsets = new int[starts.length];
+			labelLengths = new int[starts.length];
+			Arrays.fill(labelLengths, -1);
+		} else if (buffer != labelBuffer) {
+			// labels from a different parse are created right away
+			append(start, end, buffer.toString(offset, length));
+			return;
+		}
+		append(start, end, null);
+		labelOffsets[size - 1] = offset;
+		labelLengths[size - 1] = length;
+	}
+
+	/**
+	 * Replace the item at the given index. The end time is ignored by point tiers.
+	 */
+	protected void set(int index, double start, double end, String label) {
+		checkIndex(index);
+		moveOnHeap();
+		orderChecked = false;
+		byStart = null;
+		starts[index] = start;
+		if (ends != null) {
+			ends[index] = end;
+		}
+		labels[index] = label;
+		if (labelLengths != null) {
+			labelLengths[index] = -1;
+		}
+	}
+
+	/**
+	 * Insert an item before the item at the given index, or append it if the index is the size of the tier. The end
+	 * time is ignored by point tiers.
+	 */
+	protected void insert(int index, double start, double end, String label) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		if (index == size) {
+			append(start, end, label);
+			return;
+		}
+		moveOnHeap();
+		if (size == starts.length) {
+			grow(size + 1);
+		}
+		shift(index, index + 1, size - index);
+		size++;
+		orderChecked = false;
+		byStart = null;
+		starts[index] = start;
+		if (ends != null) {
+			ends[index] = end;
+		}
+		labels[index] = label;
+		if (labelLengths != null) {
+			labelLengths[index] = -1;
+		}
+	}
+
+	/**
+	 * Remove the item at the given index
+	 */
+	protected void remove(int index) {
+		checkIndex(index);
+		moveOnHeap();
+		shift(index + 1, index, size - index - 1);
+		size--;
+		labels[size] = null;
+		orderChecked = false;
+		byStart = null;
+	}
+
+	/**
+	 * Move the items from one index to another in all item arrays
+	 */
+	private void shift(int from, int to, int count) {
+		System.arraycopy(starts, from, starts, to, count);
+		if (ends != null) {
+			System.arraycopy(ends, from, ends, to, count);
+		}
+		System.arraycopy(labels, from, labels, to, count);
+		if (labelLengths != null) {
+			System.arraycopy(labelOffsets, from, labelOffsets, to, count);
+			System.arraycopy(labelLengths, from, labelLengths, to, count);
+		}
+	}
+
+	/**
+	 * Release the spare capacity of the item arrays, e.g. once a tier has been read completely
+	 */
+	public void trimToSize() {
+		if (offHeap == null && size < starts.length) {
+			starts = Arrays.copyOf(starts, size);
+			if (ends != null) {
+				ends = Arrays.copyOf(ends, size);
+			}
+			labels = Arrays.copyOf(labels, size);
+			if (labelLengths != null) {
+				labelOffsets = Arrays.copyOf(labelOffsets, size);
+				labelLengths = Arrays.copyOf(labelLengths, size);
+			}
+		}
+	}
+
+	/**
+	 * Move the items of this tier into direct memory outside the heap. Labels are stored as UTF-8 and created anew each
+	 * time they are asked for. Changing the tier moves it back onto the heap.
+	 */
+	public void moveOffHeap() {
+		if (offHeap != null || size == 0) {
+			return;
+		}
+		offHeap = new OffHeapItems(size, starts, ends, i -> {
+			if (labels[i] == null && isBuffered(i)) {
+				return labelBuffer.chars(labelOffsets[i], labelLengths[i]);
+			}
+			return labels[i];
+		});
+		starts = NO_TIMES;
+		ends = ends != null ? NO_TIMES : null;
+		labels = NO_LABELS;
+		labelBuffer = null;
+		labelOffsets = null;
+		labelLengths = null;
+	}
+
+	/**
+	 * Collect the items reported by the given reader, which must be at {@link Event#TIER_START}, right into direct
+	 * memory if the reader says the tier is large enough for that
+	 * 
+	 * @param item
+	 *            the event of the items of this tier
+	 */
+	void readItems(PraatEventReader events, Event item) throws IOException {
+		if (!events.isOffHeapTier()) {
+			while (events.next() == item) {
+				events.appendTo(this);
+			}
+			trimToSize();
+			return;
+		}
+		OffHeapItems items = new OffHeapItems(events.getSize(), ends != null);
+		try {
+			while (events.next() == item) {
+				events.appendTo(items);
+			}
+		} catch (IOException | RuntimeException e) {
+			items.free();
+			throw e;
+		}
+		offHeap = items;
+		size = items.size();
+		starts = NO_TIMES;
+		ends = ends != null ? NO_TIMES : null;
+		labels = NO_LABELS;
+	}
+
+	/**
+	 * @return whether the items of this tier are kept outside the heap
+	 */
+	public boolean isOffHeap() {
+		return offHeap != null;
+	}
+
+	/**
+	 * Give back the memory of a tier moved off the heap right away instead of waiting for the garbage collector.
+	 * Afterwards the tier is empty; items and labels created from it before must not be used any more.
+	 */
+	public void free() {
+		if (offHeap != null) {
+			OffHeapItems items = offHeap;
+			offHeap = null;
+			size = 0;
+			byStart = null;
+			items.free();
+		}
+	}
+
+	private void moveOnHeap() {
+		if (offHeap == null) {
+			return;
+		}
+		OffHeapItems items = offHeap;
+		double[] onHeapStarts = new double[size];
+		double[] onHeapEnds = items.hasEnds() ? new double[size] : null;
+		String[] onHeapLabels = new String[size];
+		for (int i = 0; i < size; i++) {
+			onHeapStarts[i] = items.start(i);
+			if (onHeapEnds != null) {
+				onHeapEnds[i] = items.end(i);
+			}
+			onHeapLabels[i] = items.label(i);
+		}
+		starts = onHeapStarts;
+		ends = onHeapEnds;
+		labels = onHeapLabels;
+		offHeap = null;
+		items.free();
+	}
+
+	/**
+	 * Find the items that start before <code>to</code> and end after <code>from</code>, in the order of the tier.
+	 * 
+	 * @param startInclusive
+	 *            whether items starting at <code>to</code> are included, too
+	 * @param endInclusive
+	 *            whether items ending at <code>from</code> are included, too
+	 * @param item
+	 *            creates the item at an index
+	 */
+	protected <T> List<T> select(double from, double to, boolean startInclusive, boolean endInclusive,
+			IntFunction<T> item) {
+		if (isOrdered()) {
+			int first = firstEnding(from, endInclusive);
+			int last = firstStarting(to, startInclusive);
+			return new Selection<T>(first, Math.max(0, last - first), null, item);
+		}
+		int[] indices = search(from, to, startInclusive, endInclusive);
+		return new Selection<T>(0, indices.length, indices, item);
+	}
+
+	/**
+	 * @return the first index whose item would be selected, or -1
+	 * @see #select(double, double, boolean, boolean, IntFunction)
+	 */
+	protected int selectFirst(double from, double to, boolean startInclusive, boolean endInclusive) {
+		if (isOrdered()) {
+			// the items ending late enough are a suffix, the items starting early enough a prefix
+			int first = firstEnding(from, endInclusive);
+			return first < firstStarting(to, startInclusive) ? first : -1;
+		}
+		int[] indices = search(from, to, startInclusive, endInclusive);
+		return indices.length > 0 ? indices[0] : -1;
+	}
+
+	private boolean isOrdered() {
+		if (!orderChecked) {
+			ordered = true;
+			for (int i = 1; i < size && ordered; i++) {
+				ordered = startOf(i) >= startOf(i - 1) && endOf(i) >= endOf(i - 1);
+			}
+			orderChecked = true;
+		}
+		return ordered;
+	}
+
+	private double startOf(int index) {
+		return offHeap != null ? offHeap.start(index) : starts[index];
+	}
+
+	private double endOf(int index) {
+		if (offHeap != null) {
+			return offHeap.end(index);
+		}
+		return ends != null ? ends[index] : starts[index];
+	}
+
+	/**
+	 * @return the first index of an ordered tier whose end is after (or at) the given time
+	 */
+	private int firstEnding(double from, boolean inclusive) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			double end = endOf(middle);
+			if (end > from || inclusive && end == from) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return the first index of an ordered tier whose start is after (or at) the given time, i.e. the number of items
+	 *         that start early enough
+	 */
+	private int firstStarting(double to, boolean inclusive) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			double start = startOf(middle);
+			if (start < to || inclusive && start == to) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Search the query index of a tier that is not in order
+	 * 
+	 * @return the matching indices in ascending order
+	 */
+	private int[] search(double from, double to, boolean startInclusive, boolean endInclusive) {
+		if (byStart == null) {
+			buildIndex();
+		}
+		// the positions of items that start early enough
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			double start = startOf(byStart[middle]);
+			if (start < to || startInclusive && start == to) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		// walk back until no earlier item reaches the range any more
+		int[] found = new int[16];
+		int count = 0;
+		for (int position = low - 1; position >= 0; position--) {
+			double maxEnd = maxEnds[position];
+			if (!(maxEnd > from || endInclusive && maxEnd == from)) {
+				break;
+			}
+			int index = byStart[position];
+			double end = endOf(index);
+			if (end > from || endInclusive && end == from) {
+				if (count == found.length) {
+					found = Arrays.copyOf(found, count * 2);
+				}
+				found[count++] = index;
+			}
+		}
+		found = Arrays.copyOf(found, count);
+		Arrays.sort(found);
+		return found;
+	}
+
+	private void buildIndex() {
+		// sort the start times themselves and put every item at the next free position of its start time, which keeps
+		// items starting together in index order without boxing the indices for a comparator
+		double[] sorted = new double[size];
+		for (int i = 0; i < size; i++) {
+			sorted[i] = startOf(i);
+		}
+		Arrays.sort(sorted);
+		int[] index = new int[size];
+		int[] placed = new int[size];
+		for (int i = 0; i < size; i++) {
+			int first = firstPosition(sorted, startOf(i));
+			index[first + placed[first]++] = i;
+		}
+		double[] max = new double[size];
+		for (int position = 0; position < size; position++) {
+			double end = endOf(index[position]);
+			max[position] = position == 0 || end > max[position - 1] ? end : max[position - 1];
+		}
+		maxEnds = max;
+		byStart = index;
+	}
+
+	/**
+	 * @return the first position of the time in the sorted times, ordered like {@link Double#compare(double, double)}
+	 */
+	private static int firstPosition(double[] sorted, double time) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (Double.compare(sorted[middle], time) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Read-only view of the items at a range of indices or at the given indices
+	 */
+	private static final class Selection<T> extends AbstractList<T> implements RandomAccess {
+
+		private final int offset;
+		private final int size;
+		private final int[] indices;
+		private final IntFunction<T> item;
+
+		Selection(int offset, int size, int[] indices, IntFunction<T> item) {
+			this.offset = offset;
+			this.size = size;
+			this.indices = indices;
+			this.item = item;
+		}
+
+		@Override
+		public T get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+			}
+			return item.apply(indices != null ? indices[index] : offset + index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Iterator over the items of a tier, which can change the tier through {@link #set(Object)}, {@link #add(Object)}
+	 * and {@link #remove()}. Since an item handed out reads its text from the index it was taken from, the text of the
+	 * last item returned is created before the tier is changed.
+	 */
+	static final class ItemIterator<T extends Point> implements ListIterator<T> {
+
+		private final ListIterator<T> iterator;
+		private T last;
+
+		ItemIterator(ListIterator<T> iterator) {
+			this.iterator = iterator;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return iterator.hasNext();
+		}
+
+		@Override
+		public T next() {
+			last = iterator.next();
+			return last;
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			return iterator.hasPrevious();
+		}
+
+		@Override
+		public T previous() {
+			last = iterator.previous();
+			return last;
+		}
+
+		@Override
+		public int nextIndex() {
+			return iterator.nextIndex();
+		}
+
+		@Override
+		public int previousIndex() {
+			return iterator.previousIndex();
+		}
+
+		@Override
+		public void remove() {
+			resolveLast();
+			iterator.remove();
+			last = null;
+		}
+
+		@Override
+		public void set(T item) {
+			resolveLast();
+			iterator.set(item);
+		}
+
+		@Override
+		public void add(T item) {
+			resolveLast();
+			iterator.add(item);
+			last = null;
+		}
+
+		private void resolveLast() {
+			if (last != null) {
+				last.getText();
+			}
+		}
+	}
+
+	private void grow(int minCapacity) {
+		int capacity = Math.max(minCapacity, Math.max(16, starts.length + (starts.length >> 1)));
+		starts = Arrays.copyOf(starts, capacity);
+		if (ends != null) {
+			ends = Arrays.copyOf(ends, capacity);
+		}
+		labels = Arrays.copyOf(labels, capacity);
+		if (labelLengths != null) {
+			labelOffsets = Arrays.copyOf(labelOffsets, capacity);
+			int length = labelLengths.length;
+			labelLengths = Arrays.copyOf(labelLengths, capacity);
+			Arrays.fill(labelLengths, length, capacity, -1);
+		}
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
 	@Override
 	public String getName() {
 		return name;
@@ -64,14 +759,37 @@ abstract public class Tier implements PraatObject {
 		if (obj instanceof Tier) {
 			final Tier other = (Tier) obj;
 			return Objects.equal(this.xmin, other.xmin) && Objects.equal(this.xmax, other.xmax)
-					&& Objects.equal(this.name, other.name) && Objects.equal(this.items, other.items);
+					&& Objects.equal(this.name, other.name) && itemsEqual(other);
 		} else {
 			return false;
 		}
 	}
 
+	private boolean itemsEqual(Tier other) {
+		if (size != other.size || (ends == null) != (other.ends == null)) {
+			return false;
+		}
+		for (int i = 0; i < size; i++) {
+			if (Double.doubleToLongBits(startOf(i)) != Double.doubleToLongBits(other.startOf(i))
+					|| (ends != null && Double.doubleToLongBits(endOf(i)) != Double.doubleToLongBits(other.endOf(i)))
+					|| !Objects.equal(getLabel(i), other.getLabel(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	@Override
 	public int hashCode() {
+		int items = 1;
+		for (int i = 0; i < size; i++) {
+			items = 31 * items + Double.hashCode(startOf(i));
+			if (ends != null) {
+				items = 31 * items + Double.hashCode(endOf(i));
+			}
+			String label = getLabel(i);
+			items = 31 * items + (label == null ? 0 : label.hashCode());
+		}
 		return Objects.hashCode(xmin, xmax, name, items);
 	}
 
@@ -0,0 +1,230 @@
+/*
+ * #%L
+ * LabelUtils
+ * %%
+ * Copyright (C) 2012 INRIA
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.praat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Byte offsets of the tier blocks (<code>item [n]:</code>) of a TextGrid in long text format, or of the object blocks of
+ * a Collection.<br>
+ * The index is built by a single scan over the raw bytes that does not decode them: markers are only recognized outside
+ * of quoted strings and <code>!</code> comments, and only in ASCII-compatible charsets and UTF-16. Each tier block
+ * extends to the start of the next one, the last one to the end of the file, so the blocks can be parsed independently.
+ */
+public final class TierIndex {
+
+	private static final char[] MARKER = "item [".toCharArray();
+
+	private final ByteBuffer bytes;
+	private final Charset charset;
+	private final int[] offsets;
+	private final int size;
+	private final int end;
+
+	private TierIndex(ByteBuffer bytes, Charset charset, int[] offsets, int size, int end) {
+		this.bytes = bytes;
+		this.charset = charset;
+		this.offsets = offsets;
+		this.size = size;
+		this.end = end;
+	}
+
+	/**
+	 * Find the tier blocks in the remaining bytes of a long text TextGrid.
+	 * 
+	 * @return the index, or <code>null</code> if the charset is not supported or the items are not numbered 1, 2, ...
+	 */
+	public static TierIndex scan(ByteBuffer bytes, Charset charset) {
+		return scan(bytes, charset, false);
+	}
+
+	/**
+	 * Find the object blocks in the remaining bytes of a Collection in long text format. Only markers indented like the
+	 * first one count, so the tiers of the TextGrids inside are not taken for objects of the Collection.
+	 * 
+	 * @return the index, or <code>null</code> if the charset is not supported or the objects are not numbered 1, 2, ...
+	 */
+	public static TierIndex scanCollection(ByteBuffer bytes, Charset charset) {
+		return scan(bytes, charset, true);
+	}
+
+	/**
+	 * Find the tier blocks of a TextGrid held in a block of a Collection. The block starts with the marker of the
+	 * object itself, possibly after blanks, which is skipped so that it is not taken for the marker of a tier.
+	 * 
+	 * @return the index, or <code>null</code> if the charset is not supported or the tiers are not numbered 1, 2, ...
+	 */
+	static TierIndex scanObject(ByteBuffer block, Charset charset) {
+		ByteBuffer tiers = block.duplicate();
+		boolean twoBytes = StandardCharsets.UTF_16BE.equals(charset) || StandardCharsets.UTF_16LE.equals(charset);
+		int width = twoBytes ? 2 : 1;
+		int start = tiers.position();
+		while (start + width <= tiers.limit()
+				&& isBlank(unit(tiers, start, width, !StandardCharsets.UTF_16LE.equals(charset)))) {
+			start += width;
+		}
+		tiers.position(Math.min(tiers.limit(), start + width));
+		return scan(tiers, charset, false);
+	}
+
+	private static TierIndex scan(ByteBuffer bytes, Charset charset, boolean sameIndent) {
+		int width;
+		boolean bigEndian = true;
+		if (StandardCharsets.UTF_16BE.equals(charset)) {
+			width = 2;
+		} else if (StandardCharsets.UTF_16LE.equals(charset)) {
+			width = 2;
+			bigEndian = false;
+		} else if (isAsciiCompatible(charset)) {
+			width = 1;
+		} else {
+			return null;
+		}
+
+		int[] offsets = new int[16];
+		int size = 0;
+		int limit = bytes.limit() - width + 1;
+		boolean inString = false;
+		int previous = '\n';
+		int lineStart = bytes.position();
+		int indent = -1;
+		for (int i = bytes.position(); i < limit; i += width) {
+			int c = unit(bytes, i, width, bigEndian);
+			if (c == '\n') {
+				lineStart = i + width;
+			}
+			if (inString) {
+				// a doubled quote closes and reopens the string, so it needs no special treatment
+				inString = c != '"';
+			} else if (c == '"') {
+				inString = true;
+			} else if (c == '!') {
+				while (i + width < limit && unit(bytes, i + width, width, bigEndian) != '\n') {
+					i += width;
+				}
+			} else if (c == 'i' && isBlank(previous) && matches(bytes, i, width, bigEndian)) {
+				int j = i + MARKER.length * width;
+				int number = 0;
+				int digits = 0;
+				int d;
+				while (j < limit && (d = unit(bytes, j, width, bigEndian)) >= '0' && d <= '9' && digits < 10) {
+					number = number * 10 + (d - '0');
+					digits++;
+					j += width;
+				}
+				if (digits > 0 && j < limit && unit(bytes, j, width, bigEndian) == ']'
+						&& (!sameIndent || indent < 0 || i - lineStart == indent)) {
+					// the list heading "item []:" has no number and is not a tier
+					indent = i - lineStart;
+					if (number != size + 1) {
+						return null;
+					}
+					if (size == offsets.length) {
+						offsets = Arrays.copyOf(offsets, size * 2);
+					}
+					offsets[size++] = i;
+					i = j;
+					c = ']';
+				}
+			}
+			previous = c;
+		}
+		return new TierIndex(bytes, charset, offsets, size, bytes.limit());
+	}
+
+	static boolean isAsciiCompatible(Charset charset) {
+		String name = charset.name();
+		return StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset)
+				|| name.startsWith("ISO-8859-") || name.startsWith("windows-125");
+	}
+
+	private static int unit(ByteBuffer bytes, int index, int width, boolean bigEndian) {
+		if (width == 1) {
+			return bytes.get(index) & 0xff;
+		}
+		int high = bytes.get(bigEndian ? index : index + 1) & 0xff;
+		int low = bytes.get(bigEndian ? index + 1 : index) & 0xff;
+		return high << 8 | low;
+	}
+
+	private static boolean isBlank(int c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+	}
+
+	private static boolean matches(ByteBuffer bytes, int index, int width, boolean bigEndian) {
+		if (index + MARKER.length * width > bytes.limit()) {
+			return false;
+		}
+		for (int k = 0; k < MARKER.length; k++) {
+			if (unit(bytes, index + k * width, width, bigEndian) != MARKER[k]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of tier blocks
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the byte offset of the <code>item [n]:</code> marker of the tier at the given index
+	 */
+	public int getOffset(int index) {
+		checkIndex(index);
+		return offsets[index];
+	}
+
+	/**
+	 * @return the byte offset just after the block of the tier at the given index
+	 */
+	public int getEnd(int index) {
+		checkIndex(index);
+		return index + 1 < size ? offsets[index + 1] : end;
+	}
+
+	/**
+	 * @return a view of the bytes of the block of the tier at the given index
+	 */
+	public ByteBuffer getBlock(int index) {
+		ByteBuffer block = bytes.duplicate();
+		block.limit(getEnd(index));
+		block.position(getOffset(index));
+		return block;
+	}
+
+	public Charset getCharset() {
+		return charset;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+}
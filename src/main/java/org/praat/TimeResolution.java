@@ -0,0 +1,100 @@
+/*
+ * #%L
+ * LabelUtils
+ * %%
+ * Copyright (C) 2012 INRIA
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.praat;
+
+/**
+ * Fixed-point representation of times as a whole number of ticks at a given resolution, e.g. microseconds.<br>
+ * Praat stores times as doubles and writes them with as many digits as the writing program sees fit, so the same
+ * instant may reach us as slightly different doubles from two tiers. Rounded to ticks, such times become equal
+ * <code>long</code> values, which can be compared, sorted and hashed without boxing.
+ */
+public final class TimeResolution {
+
+	/**
+	 * Ticks of an undefined time, which Praat writes as <code>--undefined--</code>
+	 */
+	public static final long UNDEFINED = Long.MIN_VALUE;
+
+	public static final TimeResolution MILLISECONDS = new TimeResolution(1000L);
+
+	public static final TimeResolution MICROSECONDS = new TimeResolution(1000000L);
+
+	public static final TimeResolution NANOSECONDS = new TimeResolution(1000000000L);
+
+	private final long ticksPerSecond;
+
+	/**
+	 * @param ticksPerSecond
+	 *            number of ticks in a second, at least one
+	 */
+	public TimeResolution(long ticksPerSecond) {
+		if (ticksPerSecond < 1) {
+			throw new IllegalArgumentException("Ticks per second must be positive: " + ticksPerSecond);
+		}
+		this.ticksPerSecond = ticksPerSecond;
+	}
+
+	public long getTicksPerSecond() {
+		return ticksPerSecond;
+	}
+
+	/**
+	 * @return the time rounded to the nearest tick, with halves going to the even tick, or {@link #UNDEFINED} for
+	 *         <code>NaN</code> and infinite times, which Praat both writes as <code>--undefined--</code>
+	 * @throws IllegalArgumentException
+	 *             if the time is finite but too large to be counted in ticks
+	 */
+	public long toTicks(double seconds) {
+		if (Double.isNaN(seconds) || Double.isInfinite(seconds)) {
+			return UNDEFINED;
+		}
+		double ticks = Math.rint(seconds * ticksPerSecond);
+		if (!(Math.abs(ticks) < 0x1p63)) {
+			throw new IllegalArgumentException("Time out of range for " + this + ": " + seconds);
+		}
+		return (long) ticks;
+	}
+
+	/**
+	 * @return the time of the given number of ticks, or <code>NaN</code> for {@link #UNDEFINED}
+	 */
+	public double toSeconds(long ticks) {
+		if (ticks == UNDEFINED) {
+			return Double.NaN;
+		}
+		// a single division of exact operands is correctly rounded, so e.g. 1500 ms come out as exactly 1.5
+		return (double) ticks / ticksPerSecond;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof TimeResolution && ((TimeResolution) obj).ticksPerSecond == ticksPerSecond;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(ticksPerSecond);
+	}
+
+	@Override
+	public String toString() {
+		return ticksPerSecond + " ticks per second";
+	}
+}
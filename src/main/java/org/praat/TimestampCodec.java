@@ -0,0 +1,240 @@
+/*
+ * #%L
+ * LabelUtils
+ * %%
+ * Copyright (C) 2012 INRIA
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package org.praat;
+
+/**
+ * Exact conversion between doubles and their decimal representation in Praat text files.<br>
+ * Parsing works directly on characters. Numbers with at most 18 significant digits and a decimal exponent of at most 22
+ * (which covers virtually all time stamps) are converted with a single correctly rounded multiplication or division
+ * (Clinger's fast path); anything else is left to {@link Double#parseDouble(String)}. Either way the result is the
+ * double nearest to the decimal value.<br>
+ * Formatting writes the shortest plain decimal that parses back to the very same double, e.g. <code>0.7</code> rather
+ * than <code>0.69999999999999995559</code>, so values survive any number of write/read cycles bit for bit. Undefined
+ * values are written as <code>--undefined--</code>, as Praat does. Praat counts infinite values as undefined, too, and
+ * could not read them back otherwise, so they are written the same way and read back as <code>NaN</code>.
+ */
+public final class TimestampCodec {
+
+	/**
+	 * Maximum number of characters written by {@link #format(double, char[], int)}
+	 */
+	public static final int MAX_LENGTH = 32;
+
+	private static final String UNDEFINED = "--undefined--";
+
+	/**
+	 * Largest integer up to which all integers are exactly representable as doubles
+	 */
+	private static final double EXACT_LIMIT = 9007199254740992.0; // 2^53
+
+	private static final int MAX_EXACT_POWER = 22;
+
+	private static final int MAX_DIGITS = 18;
+
+	private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER + 1];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private TimestampCodec() {
+	}
+
+	/**
+	 * Parse a decimal number (optionally with exponent) or <code>--undefined--</code>, which yields
+	 * {@link Double#NaN}.
+	 * 
+	 * @throws NumberFormatException
+	 *             if the characters do not form a number
+	 */
+	public static double parse(char[] chars, int offset, int length) {
+		int i = offset;
+		int end = offset + length;
+		boolean negative = false;
+		if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+			negative = chars[i++] == '-';
+		}
+		long mantissa = 0;
+		int digits = 0; // significant digits in the mantissa
+		int zeros = 0; // zeros not yet multiplied into the mantissa
+		int exponent = 0;
+		boolean point = false;
+		boolean any = false;
+		for (; i < end; i++) {
+			char c = chars[i];
+			if (c >= '0' && c <= '9') {
+				any = true;
+				if (point) {
+					exponent--;
+				}
+				if (c == '0') {
+					// trailing zeros are only multiplied in once another digit follows
+					if (digits > 0) {
+						zeros++;
+					}
+				} else if (digits + zeros >= MAX_DIGITS) {
+					return slowParse(chars, offset, length);
+				} else {
+					for (; zeros > 0; zeros--) {
+						mantissa *= 10;
+						digits++;
+					}
+					mantissa = mantissa * 10 + (c - '0');
+					digits++;
+				}
+			} else if (c == '.' && !point) {
+				point = true;
+			} else {
+				break;
+			}
+		}
+		exponent += zeros;
+		if (i < end) {
+			if (!any || (chars[i] != 'e' && chars[i] != 'E')) {
+				return slowParse(chars, offset, length);
+			}
+			int explicit = parseExponent(chars, i + 1, end);
+			if (explicit == Integer.MIN_VALUE) {
+				return slowParse(chars, offset, length);
+			}
+			exponent += explicit;
+		}
+		if (!any) {
+			return slowParse(chars, offset, length);
+		}
+		if (mantissa == 0) {
+			return negative ? -0.0 : 0.0;
+		}
+		if (mantissa > EXACT_LIMIT || exponent > MAX_EXACT_POWER || exponent < -MAX_EXACT_POWER) {
+			return slowParse(chars, offset, length);
+		}
+		double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * @return the exponent, or {@link Integer#MIN_VALUE} if it is malformed or too large for the fast path
+	 */
+	private static int parseExponent(char[] chars, int i, int end) {
+		boolean negative = false;
+		if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+			negative = chars[i++] == '-';
+		}
+		if (i == end) {
+			return Integer.MIN_VALUE;
+		}
+		int exponent = 0;
+		for (; i < end; i++) {
+			char c = chars[i];
+			if (c < '0' || c > '9' || exponent > 1000) {
+				return Integer.MIN_VALUE;
+			}
+			exponent = exponent * 10 + (c - '0');
+		}
+		return negative ? -exponent : exponent;
+	}
+
+	private static double slowParse(char[] chars, int offset, int length) {
+		String target = new String(chars, offset, length);
+		if (target.equals(UNDEFINED)) {
+			return Double.NaN;
+		}
+		try {
+			return Double.parseDouble(target);
+		} catch (NumberFormatException e) {
+			throw new NumberFormatException("Could not parse double from string: " + target);
+		}
+	}
+
+	/**
+	 * Write the shortest plain decimal representation of a value that parses back to the same double, or
+	 * <code>--undefined--</code> for <code>NaN</code> and infinite values.
+	 * 
+	 * @param buffer
+	 *            Destination, which must have room for {@link #MAX_LENGTH} characters from <code>offset</code> on
+	 * @return the offset after the last character written
+	 */
+	public static int format(double value, char[] buffer, int offset) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return copy(UNDEFINED, buffer, offset);
+		}
+		int start = offset;
+		double magnitude = value;
+		if (value < 0) {
+			buffer[offset++] = '-';
+			magnitude = -value;
+		}
+		for (int scale = 0; scale <= MAX_EXACT_POWER; scale++) {
+			double scaled = magnitude * POWERS_OF_TEN[scale];
+			if (!(scaled < EXACT_LIMIT)) {
+				break;
+			}
+			// the product may be off by one unit in the last place, so check the neighbours as well
+			long rounded = Math.round(scaled);
+			for (long candidate = Math.max(rounded - 1, 0); candidate <= rounded + 1; candidate++) {
+				if (candidate / POWERS_OF_TEN[scale] == magnitude
+						&& (candidate != 0 || Double.doubleToRawLongBits(value) == 0)) {
+					return writeDecimal(candidate, scale, buffer, offset);
+				}
+			}
+		}
+		// values too large, too small or too precise for plain notation, and negative zero
+		return copy(Double.toString(value), buffer, start);
+	}
+
+	/**
+	 * Format a value as a new String (see {@link #format(double, char[], int)})
+	 */
+	public static String toString(double value) {
+		char[] buffer = new char[MAX_LENGTH];
+		return new String(buffer, 0, format(value, buffer, 0));
+	}
+
+	/**
+	 * Write <code>unscaled / 10^scale</code> in plain notation
+	 */
+	private static int writeDecimal(long unscaled, int scale, char[] buffer, int offset) {
+		int digits = 1;
+		for (long rest = unscaled / 10; rest > 0; rest /= 10) {
+			digits++;
+		}
+		digits = Math.max(digits, scale + 1);
+		int end = offset + digits + (scale > 0 ? 1 : 0);
+		int p = end;
+		for (int i = 0; i < digits; i++) {
+			if (i == scale && scale > 0) {
+				buffer[--p] = '.';
+			}
+			buffer[--p] = (char) ('0' + unscaled % 10);
+			unscaled /= 10;
+		}
+		return end;
+	}
+
+	private static int copy(String s, char[] buffer, int offset) {
+		s.getChars(0, s.length(), buffer, offset);
+		return offset + s.length();
+	}
+
+}
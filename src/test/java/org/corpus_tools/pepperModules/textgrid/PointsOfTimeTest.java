@@ -0,0 +1,173 @@
+package org.corpus_tools.pepperModules.textgrid;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.praat.Interval;
+import org.praat.IntervalTier;
+import org.praat.Point;
+import org.praat.TextTier;
+import org.praat.Tier;
+import org.praat.TimeResolution;
+
+/**
+ * Tests for {@link PointsOfTime}: the ranks found while merging the runs of the tiers must be the
+ * ranks a binary search over all distinct times finds, for runs in order and runs that are not.
+ */
+public class PointsOfTimeTest {
+
+	private final Random random = new Random(25);
+
+	@Test
+	public void testExactTimes() {
+		for (int i = 0; i < 20; i++) {
+			assertRanks(createTiers(), null);
+		}
+	}
+
+	@Test
+	public void testRoundedTimes() {
+		for (int i = 0; i < 20; i++) {
+			assertRanks(createTiers(), TimeResolution.MILLISECONDS);
+		}
+	}
+
+	@Test
+	public void testNegativeZero() {
+		List<Tier> tiers = new ArrayList<Tier>();
+		tiers.add(new IntervalTier("words", Arrays.asList(new Interval(-0.0, 0.5, "a"),
+				new Interval(0.5, 1, "b"))));
+		tiers.add(new IntervalTier("syllables", Arrays.asList(new Interval(-1, 0.0, "a"),
+				new Interval(0.0, 1, "b"))));
+		tiers.add(new TextTier("points", -1, 1,
+				Arrays.asList(new Point(-0.0, "a"), new Point(-0.5, "b"))));
+		// -1, -0.5, 0, 0.5 and 1
+		assertEquals(5, assertRanks(tiers, null));
+		assertEquals(5, assertRanks(tiers, TimeResolution.MICROSECONDS));
+	}
+
+	@Test
+	public void testUndefinedTimes() {
+		Tier points = new TextTier("points", 0, 1, Arrays.asList(new Point(0.5, "a"),
+				new Point(Double.POSITIVE_INFINITY, "b"), new Point(Double.NaN, "c"),
+				new Point(Double.NEGATIVE_INFINITY, "d")));
+		// NaN and infinite times are all --undefined-- once rounded, which comes before any time
+		PointsOfTime rounded = new PointsOfTime(TimeResolution.MILLISECONDS);
+		rounded.beginRun(points);
+		for (int i = 0; i < points.size(); i++) {
+			rounded.add(points.getStart(i));
+		}
+		assertEquals(2, rounded.sort());
+		rounded.setPointOfTime(0, 0);
+		rounded.setPointOfTime(1, 10);
+		assertEquals(10, rounded.getStart(points, 0));
+		assertEquals(0, rounded.getStart(points, 1));
+		assertEquals(0, rounded.getStart(points, 2));
+		assertEquals(0, rounded.getStart(points, 3));
+		assertEquals(0, rounded.get(Double.NEGATIVE_INFINITY));
+
+		// exact times keep the infinities apart, in their order, and NaN after them
+		PointsOfTime exact = new PointsOfTime(null);
+		exact.beginRun(points);
+		for (int i = 0; i < points.size(); i++) {
+			exact.add(points.getStart(i));
+		}
+		assertEquals(4, exact.sort());
+		for (int rank = 0; rank < 4; rank++) {
+			exact.setPointOfTime(rank, rank * 10);
+		}
+		assertEquals(10, exact.getStart(points, 0));
+		assertEquals(20, exact.getStart(points, 1));
+		assertEquals(30, exact.getStart(points, 2));
+		assertEquals(0, exact.getStart(points, 3));
+	}
+
+	/**
+	 * Add the tiers as runs, number the distinct times by rank and compare the numbers found for the
+	 * items of the tiers with the ranks in a sorted set of the distinct times
+	 *
+	 * @return the number of distinct times
+	 */
+	private static int assertRanks(List<Tier> tiers, TimeResolution resolution) {
+		PointsOfTime points = new PointsOfTime(resolution);
+		TreeSet<Double> distinct = new TreeSet<Double>();
+		for (Tier tier : tiers) {
+			points.beginRun(tier);
+			for (int i = 0; i < tier.size(); i++) {
+				points.add(tier.getStart(i));
+				distinct.add(round(tier.getStart(i), resolution));
+				if (tier instanceof IntervalTier) {
+					points.add(tier.getEnd(i));
+					distinct.add(round(tier.getEnd(i), resolution));
+				}
+			}
+		}
+		int count = points.sort();
+		assertEquals(distinct.size(), count);
+		for (int rank = 0; rank < count; rank++) {
+			points.setPointOfTime(rank, rank * 10);
+		}
+		Double[] sorted = distinct.toArray(new Double[count]);
+		for (Tier tier : tiers) {
+			for (int i = 0; i < tier.size(); i++) {
+				int start = rank(sorted, tier.getStart(i), resolution);
+				int end = rank(sorted, tier.getEnd(i), resolution);
+				assertEquals(tier.getName() + " " + i, start * 10, points.getStart(tier, i));
+				assertEquals(tier.getName() + " " + i, end * 10, points.getEnd(tier, i));
+				assertEquals(start * 10, points.get(tier.getStart(i)));
+			}
+		}
+		// tiers that have not been added are found by their times
+		Tier other = new IntervalTier("other",
+				Arrays.asList(new Interval(sorted[0], sorted[count - 1], "")));
+		assertEquals(0, points.getStart(other, 0));
+		assertEquals((count - 1) * 10, points.getEnd(other, 0));
+		assertEquals(-1, points.get(sorted[count - 1] + 1));
+		return count;
+	}
+
+	private static int rank(Double[] sorted, double time, TimeResolution resolution) {
+		return Arrays.binarySearch(sorted, round(time, resolution));
+	}
+
+	/**
+	 * @return the time as it is told apart from other times, with -0.0 and 0.0 being the same
+	 */
+	private static double round(double time, TimeResolution resolution) {
+		return resolution != null ? resolution.toSeconds(resolution.toTicks(time)) : time + 0.0;
+	}
+
+	/**
+	 * Interval tiers in order, with boundaries shared between tiers, and point tiers in order and
+	 * out of order
+	 */
+	private List<Tier> createTiers() {
+		List<Tier> tiers = new ArrayList<Tier>();
+		for (int t = 0; t < 1 + random.nextInt(6); t++) {
+			List<Interval> intervals = new ArrayList<Interval>();
+			double start = random.nextInt(3) - 1;
+			for (int i = 0; i < 1 + random.nextInt(300); i++) {
+				double end = start + (random.nextBoolean() ? random.nextInt(8) * 0.125 : random.nextDouble());
+				intervals.add(new Interval(start, end, "" + i));
+				start = end;
+			}
+			tiers.add(new IntervalTier("tier " + t, intervals));
+		}
+		for (int t = 0; t < random.nextInt(3); t++) {
+			List<Point> points = new ArrayList<Point>();
+			double time = -1;
+			for (int i = 0; i < 1 + random.nextInt(100); i++) {
+				time = t == 0 ? time + random.nextInt(4) * 0.25 : random.nextInt(80) * 0.125 - 1;
+				points.add(new Point(time, "" + i));
+			}
+			tiers.add(new TextTier("points " + t, -1, 10, points));
+		}
+		return tiers;
+	}
+}
@@ -0,0 +1,248 @@
+package org.corpus_tools.pepperModules.textgrid;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.praat.Interval;
+import org.praat.IntervalTier;
+import org.praat.PraatFile;
+import org.praat.TextGrid;
+import org.praat.Tier;
+
+/**
+ * Tests for {@link TextGridArchives}: the TextGrid entries of zip and tar archives must be listed
+ * in archive order and each entry must be read back exactly, in any order, from the offsets
+ * recorded while listing.
+ */
+public class TextGridArchivesTest {
+
+	private static final List<String> ENDINGS = Arrays.asList("TextGrid", "TextGrid.gz");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testZip() throws Exception {
+		Map<String, byte[]> entries = createEntries();
+		File zip = folder.newFile("corpus.zip");
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+			out.putNextEntry(new ZipEntry("corpus/"));
+			out.closeEntry();
+			for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				out.putNextEntry(new ZipEntry(entry.getKey()));
+				out.write(entry.getValue());
+				out.closeEntry();
+			}
+		}
+		assertArchive(zip, entries);
+	}
+
+	@Test
+	public void testTar() throws Exception {
+		Map<String, byte[]> entries = createEntries();
+		File tar = folder.newFile("corpus.tar");
+		try (OutputStream out = new FileOutputStream(tar)) {
+			writeTar(out, entries);
+		}
+		assertArchive(tar, entries);
+	}
+
+	@Test
+	public void testCompressedTar() throws Exception {
+		Map<String, byte[]> entries = createEntries();
+		for (String name : new String[] { "corpus.tar.gz", "corpus.tgz" }) {
+			File tar = folder.newFile(name);
+			try (OutputStream out = new GZIPOutputStream(new FileOutputStream(tar))) {
+				writeTar(out, entries);
+			}
+			assertArchive(tar, entries);
+		}
+	}
+
+	@Test
+	public void testSingleEntry() throws Exception {
+		Map<String, byte[]> entries = createEntries();
+		File tar = folder.newFile("corpus.tar.gz");
+		try (OutputStream out = new GZIPOutputStream(new FileOutputStream(tar))) {
+			writeTar(out, entries);
+		}
+		for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+			try (InputStream in = TextGridArchives.openEntry(tar, entry.getKey())) {
+				assertArrayEquals(uncompressed(entry), readAll(in));
+			}
+		}
+		try {
+			TextGridArchives.openEntry(tar, "missing.TextGrid");
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testNames() {
+		assertEquals("corpus", TextGridArchives.getBaseName(new File("corpus.tar.gz")));
+		assertEquals("corpus", TextGridArchives.getBaseName(new File("corpus.TGZ")));
+		assertEquals("corpus.v1", TextGridArchives.getBaseName(new File("corpus.v1.zip")));
+		assertTrue(TextGridArchives.isTextGrid("a/b.textgrid.GZ", ENDINGS));
+		assertFalse(TextGridArchives.isTextGrid("a/b.wav", ENDINGS));
+	}
+
+	/**
+	 * Entries in a directory, with a name too long for a plain tar header, a compressed one and a
+	 * file which is not a TextGrid
+	 */
+	private Map<String, byte[]> createEntries() throws IOException {
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		for (int i = 0; i < 5; i++) {
+			entries.put("corpus/doc" + i + ".TextGrid", textGrid(i, false));
+		}
+		char[] longName = new char[150];
+		Arrays.fill(longName, 'n');
+		entries.put("corpus/" + new String(longName) + ".TextGrid", textGrid(5, false));
+		entries.put("corpus/compressed.TextGrid.gz", textGrid(6, true));
+		entries.put("corpus/audio.wav", new byte[1000]);
+		entries.put("last.TextGrid", textGrid(7, false));
+		return entries;
+	}
+
+	private byte[] textGrid(int size, boolean compressed) throws IOException {
+		List<Interval> intervals = new ArrayList<>();
+		for (int i = 0; i <= size * 100; i++) {
+			intervals.add(new Interval(i, i + 1, "w" + i));
+		}
+		TextGrid grid = new TextGrid("",
+				Collections.<Tier> singletonList(new IntervalTier("words", intervals)));
+		File file = folder.newFile();
+		PraatFile.writeText(grid, file, StandardCharsets.UTF_8);
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		if (!compressed) {
+			return bytes;
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (OutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(bytes);
+		}
+		return out.toByteArray();
+	}
+
+	private static void assertArchive(File file, Map<String, byte[]> entries) throws Exception {
+		TextGridArchives.Archive archive = TextGridArchives.Archive.open(file, ENDINGS);
+		List<String> names = new ArrayList<>(entries.keySet());
+		names.remove("corpus/audio.wav");
+		assertEquals(names, archive.getEntries());
+		// in archive order, then backwards, which restarts a compressed tar for every entry
+		for (int pass = 0; pass < 2; pass++) {
+			for (String name : names) {
+				try (InputStream in = archive.openEntry(name)) {
+					assertArrayEquals(name, uncompressed(name, entries.get(name)), readAll(in));
+				}
+			}
+			Collections.reverse(names);
+		}
+		// entries are streamed to the parser
+		try (InputStream in = archive.openEntry("last.TextGrid")) {
+			TextGrid grid = (TextGrid) PraatFile.readFromStream(in, StandardCharsets.UTF_8);
+			assertEquals(701, grid.getItemCount());
+		}
+		try {
+			archive.openEntry("corpus/audio.wav");
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	private static byte[] uncompressed(Map.Entry<String, byte[]> entry) throws IOException {
+		return uncompressed(entry.getKey(), entry.getValue());
+	}
+
+	private static byte[] uncompressed(String name, byte[] bytes) throws IOException {
+		if (!name.endsWith(".gz")) {
+			return bytes;
+		}
+		return readAll(new GZIPInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Write a ustar archive with a directory entry first and GNU long name entries where needed
+	 */
+	private static void writeTar(OutputStream out, Map<String, byte[]> entries) throws IOException {
+		writeTarEntry(out, "corpus/", '5', new byte[0]);
+		for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+			byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+			if (name.length > 100) {
+				writeTarEntry(out, "././@LongLink", 'L', Arrays.copyOf(name, name.length + 1));
+			}
+			writeTarEntry(out, entry.getKey(), '0', entry.getValue());
+		}
+		out.write(new byte[1024]);
+	}
+
+	private static void writeTarEntry(OutputStream out, String name, char type, byte[] data)
+			throws IOException {
+		byte[] header = new byte[512];
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		System.arraycopy(nameBytes, 0, header, 0, Math.min(nameBytes.length, 100));
+		putOctal(header, 100, 8, 0644);
+		putOctal(header, 108, 8, 0);
+		putOctal(header, 116, 8, 0);
+		putOctal(header, 124, 12, data.length);
+		putOctal(header, 136, 12, 0);
+		header[156] = (byte) type;
+		System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+		Arrays.fill(header, 148, 156, (byte) ' ');
+		int checksum = 0;
+		for (byte b : header) {
+			checksum += b & 0xff;
+		}
+		putOctal(header, 148, 7, checksum);
+		out.write(header);
+		out.write(data);
+		out.write(new byte[(512 - data.length % 512) % 512]);
+	}
+
+	private static void putOctal(byte[] header, int offset, int length, long value) {
+		String octal = Long.toOctalString(value);
+		while (octal.length() < length - 1) {
+			octal = "0" + octal;
+		}
+		System.arraycopy(octal.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+	}
+}
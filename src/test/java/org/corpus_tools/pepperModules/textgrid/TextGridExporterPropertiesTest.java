@@ -0,0 +1,32 @@
+package org.corpus_tools.pepperModules.textgrid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.corpus_tools.pepper.modules.exceptions.PepperModulePropertyException;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TextGridExporterProperties}: only the known formats may be chosen.
+ */
+public class TextGridExporterPropertiesTest {
+
+	@Test
+	public void testKnownFormats() {
+		TextGridExporterProperties properties = new TextGridExporterProperties();
+		assertEquals(TextGridExporterProperties.FORMAT_LONG_TEXT, properties.getFormat());
+		for (String format : new String[] { TextGridExporterProperties.FORMAT_LONG_TEXT,
+				TextGridExporterProperties.FORMAT_SHORT_TEXT, TextGridExporterProperties.FORMAT_BINARY }) {
+			properties.setPropertyValue(TextGridExporterProperties.PROP_FORMAT, format);
+			assertTrue(properties.checkProperties());
+			assertEquals(format, properties.getFormat());
+		}
+	}
+
+	@Test(expected = PepperModulePropertyException.class)
+	public void testUnknownFormatIsRejected() {
+		TextGridExporterProperties properties = new TextGridExporterProperties();
+		properties.setPropertyValue(TextGridExporterProperties.PROP_FORMAT, "shorttext");
+		properties.checkProperties();
+	}
+}
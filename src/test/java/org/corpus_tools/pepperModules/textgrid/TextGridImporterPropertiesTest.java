@@ -0,0 +1,27 @@
+package org.corpus_tools.pepperModules.textgrid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link TextGridImporterProperties}: unset properties must keep the behaviour the
+ * importer had without them.
+ */
+public class TextGridImporterPropertiesTest {
+
+	@Test
+	public void testCharsetIsDetectedUnlessGiven() {
+		TextGridImporterProperties properties = new TextGridImporterProperties();
+		assertNull(properties.getCharset());
+		properties.setPropertyValue(TextGridImporterProperties.PROP_CHARSET, " ");
+		assertNull(properties.getCharset());
+		properties.setPropertyValue(TextGridImporterProperties.PROP_CHARSET, "UTF-16");
+		assertEquals(StandardCharsets.UTF_16, properties.getCharset());
+		properties.setPropertyValue(TextGridImporterProperties.PROP_CHARSET, " utf-8 ");
+		assertEquals(StandardCharsets.UTF_8, properties.getCharset());
+	}
+}
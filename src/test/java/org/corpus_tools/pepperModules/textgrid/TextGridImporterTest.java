@@ -4,13 +4,32 @@ import org.corpus_tools.pepperModules.textgrid.TextGridImporter;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import org.corpus_tools.pepper.common.FormatDesc;
 import org.corpus_tools.pepper.testFramework.PepperImporterTest;
+import org.corpus_tools.pepperModules.textgrid.TextGridImporter.TextGridMapper;
+import org.corpus_tools.salt.SaltFactory;
 import org.corpus_tools.salt.common.SCorpus;
 import org.corpus_tools.salt.common.SDocument;
+import org.eclipse.emf.common.util.URI;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.praat.Interval;
+import org.praat.IntervalTier;
+import org.praat.Point;
+import org.praat.PraatFile;
+import org.praat.PraatTextFile.EOL;
+import org.praat.TextGrid;
+import org.praat.TextTier;
+import org.praat.Tier;
 
 /**
  * This is a dummy implementation of a JUnit test for testing the
@@ -26,6 +45,10 @@ import org.junit.Test;
  * @author Thomas Krause
  */
 public class TextGridImporterTest extends PepperImporterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	/**
 	 * This method is called by the JUnit environment each time before a test
 	 * case starts. So each time a method annotated with @Test is called. This
@@ -44,4 +67,54 @@ public class TextGridImporterTest extends PepperImporterTest {
 		this.supportedFormatsCheck.add(formatDef);
 	}
 
+	/**
+	 * By default the labels of a document are only created when the mapping asks for them, which it does neither for
+	 * empty intervals nor for point tiers.
+	 */
+	@Test
+	public void testUnusedLabelsAreNotCreated() throws Exception {
+		File file = folder.newFile("labels.TextGrid");
+		PraatFile.writeText(new TextGrid("", Arrays.<Tier> asList(
+				new IntervalTier("words", Arrays.asList(new Interval(0, 1, "hello"), new Interval(1, 2, ""),
+						new Interval(2, 3, "world"))),
+				new TextTier("bells", 0, 3, Arrays.asList(new Point(0.5, "ding"), new Point(2.5, "dong"))))),
+				file, StandardCharsets.UTF_8, EOL.UNIX);
+
+		TextGridMapper mapper = new TextGridMapper();
+		mapper.setProperties(new TextGridImporterProperties());
+		mapper.setDocument(SaltFactory.createSDocument());
+		mapper.getDocument().setDocumentGraph(SaltFactory.createSDocumentGraph());
+		TextGrid grid = (TextGrid) mapper.read(URI.createFileURI(file.getAbsolutePath()));
+		Tier words = null;
+		Tier bells = null;
+		for (Object item : grid) {
+			Tier tier = (Tier) item;
+			if ("words".equals(tier.getName())) {
+				words = tier;
+			} else {
+				bells = tier;
+			}
+		}
+		for (int i = 0; i < words.size(); i++) {
+			assertNull(createdLabel(words, i));
+		}
+		assertNull(createdLabel(bells, 0));
+
+		mapper.mapGrid(grid, null);
+		assertEquals("hello world", mapper.getDocument().getDocumentGraph().getTextualDSs().get(0).getText());
+		assertEquals("hello", createdLabel(words, 0));
+		assertNull(createdLabel(words, 1));
+		assertEquals("world", createdLabel(words, 2));
+		assertNull(createdLabel(bells, 0));
+		assertNull(createdLabel(bells, 1));
+	}
+
+	/**
+	 * @return the label of the item at the given index if it has been created, without creating it
+	 */
+	private static String createdLabel(Tier tier, int index) throws Exception {
+		Field labels = Tier.class.getDeclaredField("labels");
+		labels.setAccessible(true);
+		return ((String[]) labels.get(tier))[index];
+	}
 }
@@ -0,0 +1,122 @@
+package org.praat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link PraatFile#detectCharset(ByteBuffer, Charset)}: the charset of a text file must be told by its byte
+ * order mark or, lacking one, by the zero bytes of UTF-16, and a charset given by the caller must be used as it is.
+ */
+public class CharsetDetectionTest {
+
+	private static final byte[] UTF_8_BOM = { (byte) 0xef, (byte) 0xbb, (byte) 0xbf };
+	private static final byte[] UTF_16BE_BOM = { (byte) 0xfe, (byte) 0xff };
+	private static final byte[] UTF_16LE_BOM = { (byte) 0xff, (byte) 0xfe };
+
+	private static final String TEXT = "File type = \"ooTextFile\"\n" //
+			+ "Object class = \"TextGrid\"\n" //
+			+ "\n" //
+			+ "xmin = 0 \n" //
+			+ "xmax = 1 \n" //
+			+ "tiers? <exists> \n" //
+			+ "size = 1 \n" //
+			+ "item []: \n" //
+			+ "    item [1]:\n" //
+			+ "        class = \"IntervalTier\" \n" //
+			+ "        name = \"words\" \n" //
+			+ "        xmin = 0 \n" //
+			+ "        xmax = 1 \n" //
+			+ "        intervals: size = 1 \n" //
+			+ "        intervals [1]:\n" //
+			+ "            xmin = 0 \n" //
+			+ "            xmax = 1 \n" //
+			+ "            text = \"caf\u00e9 \u4e2d\u6587\" \n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testByteOrderMarks() {
+		assertDetected(StandardCharsets.UTF_8, UTF_8_BOM, StandardCharsets.UTF_8);
+		assertDetected(StandardCharsets.UTF_16BE, UTF_16BE_BOM, StandardCharsets.UTF_16BE);
+		assertDetected(StandardCharsets.UTF_16LE, UTF_16LE_BOM, StandardCharsets.UTF_16LE);
+	}
+
+	@Test
+	public void testZeroBytes() {
+		assertDetected(StandardCharsets.UTF_16BE, new byte[0], StandardCharsets.UTF_16BE);
+		assertDetected(StandardCharsets.UTF_16LE, new byte[0], StandardCharsets.UTF_16LE);
+	}
+
+	@Test
+	public void testFallback() {
+		assertDetected(StandardCharsets.ISO_8859_1, new byte[0], StandardCharsets.ISO_8859_1);
+		assertDetected(StandardCharsets.UTF_8, new byte[0], StandardCharsets.UTF_8);
+		// too short to tell
+		ByteBuffer bytes = ByteBuffer.wrap(new byte[] { 'F' });
+		assertEquals(StandardCharsets.US_ASCII, PraatFile.detectCharset(bytes, StandardCharsets.US_ASCII));
+		assertEquals(0, bytes.position());
+		assertEquals(StandardCharsets.UTF_8, PraatFile.detectCharset(ByteBuffer.allocate(0), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testFilesAreReadInTheirCharset() throws Exception {
+		TextGrid expected = new TextGrid("", Collections.<Tier> singletonList(new IntervalTier("words",
+				Arrays.asList(new Interval(0, 1, "caf\u00e9 \u4e2d\u6587")))));
+		Object[][] encodings = { { UTF_8_BOM, StandardCharsets.UTF_8 }, { new byte[0], StandardCharsets.UTF_8 },
+				{ UTF_16BE_BOM, StandardCharsets.UTF_16BE }, { UTF_16LE_BOM, StandardCharsets.UTF_16LE },
+				{ new byte[0], StandardCharsets.UTF_16BE }, { new byte[0], StandardCharsets.UTF_16LE } };
+		for (Object[] encoding : encodings) {
+			File file = write((byte[]) encoding[0], (Charset) encoding[1]);
+			assertEquals(encoding[1].toString(), expected, PraatFile.readFromFile(file));
+			assertEquals(encoding[1].toString(), expected, PraatFile.readFromFile(file, null));
+		}
+	}
+
+	@Test
+	public void testGivenCharsetOverridesDetection() throws Exception {
+		TextGrid expected = new TextGrid("", Collections.<Tier> singletonList(new IntervalTier("words",
+				Arrays.asList(new Interval(0, 1, "caf\u00e9 ??")))));
+		// ISO-8859-1 cannot be told from UTF-8, so it must be given
+		File file = write(new byte[0], StandardCharsets.ISO_8859_1);
+		assertEquals(expected, PraatFile.readFromFile(file, StandardCharsets.ISO_8859_1));
+		assertNotEquals(expected, PraatFile.readFromFile(file));
+	}
+
+	private static void assertDetected(Charset expected, byte[] bom, Charset charset) {
+		byte[] bytes = encode(bom, charset);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		Charset fallback = charset.equals(StandardCharsets.ISO_8859_1) ? charset : StandardCharsets.UTF_8;
+		assertEquals(expected, PraatFile.detectCharset(buffer, fallback));
+		// the byte order mark is skipped
+		assertEquals(bom.length, buffer.position());
+		assertEquals(TEXT.substring(0, 9), new String(bytes, bom.length, buffer.remaining(), expected).substring(0, 9));
+	}
+
+	private File write(byte[] bom, Charset charset) throws Exception {
+		File file = folder.newFile();
+		Files.write(file.toPath(), encode(bom, charset));
+		return file;
+	}
+
+	private static byte[] encode(byte[] bom, Charset charset) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bytes.write(bom, 0, bom.length);
+		byte[] text = TEXT.getBytes(charset);
+		bytes.write(text, 0, text.length);
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,278 @@
+package org.praat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.praat.PraatTextFile.EOL;
+
+/**
+ * Tests for {@link CollectionFile}: the blocks of the objects of a long text Collection must be found without taking
+ * the tiers of its TextGrids for objects, and every object must read the same from its block, from the byte range of
+ * its block and from Collections whose objects are skipped to find their byte ranges.
+ */
+public class CollectionFileTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Random random = new Random(24);
+
+	@Test
+	public void testLongTextCollectionIsSplitIntoBlocks() throws Exception {
+		List<TextGrid> grids = createGrids();
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16 }) {
+			File file = folder.newFile();
+			write(file, longText(grids, true), charset, false);
+			CollectionFile collection = CollectionFile.open(file, null);
+			assertTrue(collection.isIndexed());
+			assertEquals(grids.size(), collection.size());
+			byte[] bytes = Files.readAllBytes(file.toPath());
+			for (int i = 0; i < grids.size(); i++) {
+				// each block starts at the marker of its object, not at one of the nested tiers
+				int offset = (int) collection.getOffset(i);
+				String block = new String(bytes, offset, (int) collection.getEnd(i) - offset, collection.getCharset());
+				assertTrue(block, block.startsWith("item [" + (i + 1) + "]:"));
+				assertEquals(i + 1 < grids.size(), block.endsWith("    "));
+				assertEquals("TextGrid", collection.getClassName(i));
+				assertEquals("grid " + (i + 1), collection.getName(i));
+				assertEquals(grids.get(i), collection.read(i, null, null));
+				assertEquals(grids.get(i), collection.read(i, new LabelTable(), null, ForkJoinPool.commonPool()));
+			}
+			assertEquals(bytes.length, collection.getEnd(grids.size() - 1));
+		}
+	}
+
+	@Test
+	public void testBlocksAreReadFromTheirByteRange() throws Exception {
+		List<TextGrid> grids = createGrids();
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16LE }) {
+			File file = folder.newFile();
+			write(file, longText(grids, true), charset, false);
+			CollectionFile collection = CollectionFile.open(file, charset);
+			for (int i = 0; i < grids.size(); i++) {
+				long offset = collection.getOffset(i);
+				long end = collection.getEnd(i);
+				assertEquals(grids.get(i), CollectionFile.read(file, charset, offset, end, null, null, null));
+				assertEquals(grids.get(i), CollectionFile.read(file, charset, offset, end, new LabelTable(), null,
+						ForkJoinPool.commonPool()));
+				TextGrid filtered = (TextGrid) CollectionFile.read(file, charset, offset, end, null, "points"::equals,
+						ForkJoinPool.commonPool());
+				assertEquals(1, filtered.items.size());
+				assertEquals(grids.get(i).items.get(grids.get(i).items.size() - 1), filtered.items.get(0));
+			}
+		}
+		// the charset is detected from the byte order mark at the start of the file
+		File file = folder.newFile();
+		write(file, longText(grids, true), StandardCharsets.UTF_16, false);
+		CollectionFile collection = CollectionFile.open(file, null);
+		assertEquals(grids.get(1),
+				CollectionFile.read(file, null, collection.getOffset(1), collection.getEnd(1), null, null, null));
+	}
+
+	@Test
+	public void testUnindentedCollectionIsSkipped() throws Exception {
+		// without indentation, the tiers cannot be told apart from the objects by a scan
+		List<TextGrid> grids = createGrids();
+		File file = folder.newFile();
+		write(file, longText(grids, false), StandardCharsets.UTF_8, false);
+		assertRanges(grids, file);
+	}
+
+	@Test
+	public void testShortTextBinaryAndCompressedCollectionsAreSkipped() throws Exception {
+		List<TextGrid> grids = createGrids();
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16BE }) {
+			File shortText = folder.newFile();
+			write(shortText, shortText(grids), charset, false);
+			assertRanges(grids, shortText);
+		}
+		File shortText = folder.newFile();
+		write(shortText, shortText(grids), StandardCharsets.UTF_8, false);
+		CollectionFile collection = CollectionFile.open(shortText, null);
+		byte[] bytes = Files.readAllBytes(shortText.toPath());
+		for (int i = 0; i < grids.size(); i++) {
+			// each block starts at the line break after the last value of the object before it
+			int offset = (int) collection.getOffset(i);
+			String block = new String(bytes, offset, (int) collection.getEnd(i) - offset, StandardCharsets.UTF_8);
+			assertTrue(block, block.startsWith("\n\"TextGrid\"\n\"grid " + (i + 1) + "\"\n"));
+		}
+		assertEquals(bytes.length - 1, collection.getEnd(grids.size() - 1));
+
+		File binary = folder.newFile();
+		Files.write(binary.toPath(), binary(grids));
+		assertRanges(grids, binary);
+
+		File compressed = folder.newFile("grids.Collection.gz");
+		write(compressed, longText(grids, true), StandardCharsets.UTF_8, true);
+		assertRanges(grids, compressed);
+		File compressedShortText = folder.newFile("short.Collection.gz");
+		write(compressedShortText, shortText(grids), StandardCharsets.UTF_16LE, true);
+		assertRanges(grids, compressedShortText);
+	}
+
+	@Test
+	public void testCollectionInOtherCharsetIsReadWhole() throws Exception {
+		// the bytes of characters of varying width cannot be counted back from the decoded text
+		List<TextGrid> grids = createGrids();
+		Charset charset = Charset.forName("Shift_JIS");
+		File file = folder.newFile();
+		write(file, shortText(grids), charset, false);
+		// some of the labels have no Shift_JIS encoding, so the objects are compared with those of the whole file
+		List<TextGrid> written = new ArrayList<TextGrid>();
+		for (PraatObject object : (Collection) PraatFile.readFromFile(file, charset)) {
+			written.add((TextGrid) object);
+		}
+		assertObjects(written, CollectionFile.open(file, charset));
+	}
+
+	/**
+	 * Check that the objects of a Collection are skipped when it is opened, and that each one reads the same from the
+	 * Collection and from its byte range
+	 */
+	private static void assertRanges(List<TextGrid> grids, File file) throws Exception {
+		CollectionFile collection = CollectionFile.open(file, null);
+		assertTrue(collection.isIndexed());
+		assertEquals(grids.size(), collection.size());
+		for (int i = 0; i < grids.size(); i++) {
+			long offset = collection.getOffset(i);
+			long end = collection.getEnd(i);
+			assertTrue(offset > 0 && end > offset);
+			if (i > 0) {
+				assertEquals(collection.getEnd(i - 1), offset);
+			}
+			assertEquals("TextGrid", collection.getClassName(i));
+			assertEquals("grid " + (i + 1), collection.getName(i));
+			assertEquals(grids.get(i), collection.read(i, null, null));
+			assertEquals(grids.get(i), CollectionFile.read(file, null, offset, end, null, null, null));
+			assertEquals(grids.get(i), CollectionFile.read(file, null, offset, end, new LabelTable(), null,
+					ForkJoinPool.commonPool()));
+			TextGrid filtered = (TextGrid) CollectionFile.read(file, null, offset, end, null, "points"::equals,
+					ForkJoinPool.commonPool());
+			assertEquals(1, filtered.items.size());
+			assertEquals(grids.get(i).items.get(grids.get(i).items.size() - 1), filtered.items.get(0));
+		}
+	}
+
+	private static void assertObjects(List<TextGrid> grids, CollectionFile collection) throws Exception {
+		assertFalse(collection.isIndexed());
+		assertEquals(grids.size(), collection.size());
+		for (int i = 0; i < grids.size(); i++) {
+			assertEquals(-1, collection.getOffset(i));
+			assertEquals("TextGrid", collection.getClassName(i));
+			assertEquals("grid " + (i + 1), collection.getName(i));
+			assertEquals(grids.get(i), collection.read(i, null, null));
+		}
+	}
+
+	private List<TextGrid> createGrids() {
+		List<TextGrid> grids = new ArrayList<TextGrid>();
+		for (int i = 1; i <= 3; i++) {
+			TextGrid grid = TestGrids.create(random, i, 40);
+			grid.setName("grid " + i);
+			grids.add(grid);
+		}
+		return grids;
+	}
+
+	/**
+	 * Put the TextGrids into a Collection in long text format, by indenting the files written for each of them like
+	 * Praat does, or by removing all indentation. Lines that continue a string are left as they are.
+	 */
+	private String longText(List<TextGrid> grids, boolean indent) throws IOException {
+		String nl = "\n";
+		StringBuilder text = new StringBuilder("File type = \"ooTextFile\"\nObject class = \"Collection\"\n\n");
+		text.append("size = ").append(grids.size()).append(nl).append("item []:").append(nl);
+		String prefix = indent ? "        " : "";
+		for (int i = 0; i < grids.size(); i++) {
+			text.append(indent ? "    " : "").append("item [").append(i + 1).append("]:").append(nl);
+			text.append(prefix).append("class = \"TextGrid\"").append(nl);
+			text.append(prefix).append("name = \"").append(grids.get(i).getName()).append('"').append(nl);
+			boolean inString = false;
+			for (String line : body(grids.get(i), false).split(nl, -1)) {
+				if (!inString && !line.isEmpty()) {
+					line = indent ? prefix + line : line.trim();
+				}
+				text.append(line).append(nl);
+				for (int c = 0; c < line.length(); c++) {
+					inString ^= line.charAt(c) == '"';
+				}
+			}
+		}
+		return text.toString();
+	}
+
+	private String shortText(List<TextGrid> grids) throws IOException {
+		StringBuilder text = new StringBuilder("File type = \"ooTextFile\"\nObject class = \"Collection\"\n\n");
+		text.append(grids.size()).append('\n');
+		for (TextGrid grid : grids) {
+			text.append("\"TextGrid\"\n\"").append(grid.getName()).append("\"\n").append(body(grid, true)).append('\n');
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Put the TextGrids into a Collection in binary format, where each object follows its class and name
+	 */
+	private byte[] binary(List<TextGrid> grids) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeBytes("ooBinaryFile");
+		out.writeByte(CollectionFile.COLLECTION.length());
+		out.writeBytes(CollectionFile.COLLECTION);
+		out.writeInt(grids.size());
+		for (TextGrid grid : grids) {
+			File file = folder.newFile();
+			PraatFile.writeBinary(grid, file);
+			byte[] body = Files.readAllBytes(file.toPath());
+			// the file header is left out, and the name goes between the class name and the payload
+			int start = "ooBinaryFile".length();
+			int payload = start + 1 + body[start];
+			out.write(body, start, payload - start);
+			out.writeShort(grid.getName().length());
+			out.writeBytes(grid.getName());
+			out.write(body, payload, body.length - payload);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @return the text of a TextGrid file after its header
+	 */
+	private String body(TextGrid grid, boolean shortText) throws IOException {
+		File file = folder.newFile();
+		if (shortText) {
+			PraatFile.writeShortText(grid, file, StandardCharsets.UTF_8, EOL.UNIX);
+		} else {
+			PraatFile.writeText(grid, file, StandardCharsets.UTF_8, EOL.UNIX);
+		}
+		String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		text = text.substring(text.indexOf("\n\n") + 2);
+		return text.endsWith("\n") ? text.substring(0, text.length() - 1) : text;
+	}
+
+	private static void write(File file, String text, Charset charset, boolean compressed) throws IOException {
+		try (OutputStream out = compressed ? new GZIPOutputStream(new FileOutputStream(file))
+				: new FileOutputStream(file)) {
+			out.write(text.getBytes(charset));
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package org.praat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.praat.PraatTextFile.EOL;
+
+/**
+ * Tests for gzip compressed Praat files: written files must inflate to the bytes of the plain files, and compressed
+ * files are decoded piece by piece while they are read, across many refills of the input buffer.
+ */
+public class GzipTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Random random = new Random(17);
+
+	@Test
+	public void testTextRoundTrip() throws Exception {
+		TextGrid grid = TestGrids.create(random, 3, 200);
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16 }) {
+			File plain = folder.newFile("long.TextGrid");
+			File compressed = folder.newFile("long.TextGrid.gz");
+			PraatFile.writeText(grid, plain, charset, EOL.UNIX);
+			PraatFile.writeText(grid, compressed, charset, EOL.UNIX);
+			assertArrayEquals(Files.readAllBytes(plain.toPath()), gunzip(compressed));
+			assertEquals(grid, PraatFile.readFromFile(compressed, charset));
+			plain.delete();
+			compressed.delete();
+		}
+	}
+
+	@Test
+	public void testShortTextAndBinaryRoundTrip() throws Exception {
+		TextGrid grid = TestGrids.create(random, 2, 100);
+		File plain = folder.newFile("short.TextGrid");
+		File compressed = folder.newFile("short.TextGrid.gz");
+		PraatFile.writeShortText(grid, plain, StandardCharsets.UTF_8, EOL.WINDOWS);
+		PraatFile.writeShortText(grid, compressed, StandardCharsets.UTF_8, EOL.WINDOWS);
+		assertArrayEquals(Files.readAllBytes(plain.toPath()), gunzip(compressed));
+		assertEquals(grid, PraatFile.readFromFile(compressed));
+
+		plain = folder.newFile("binary.TextGrid");
+		compressed = folder.newFile("binary.TextGrid.gz");
+		PraatFile.writeBinary(grid, plain);
+		PraatFile.writeBinary(grid, compressed);
+		assertArrayEquals(Files.readAllBytes(plain.toPath()), gunzip(compressed));
+		assertEquals(grid, PraatFile.readFromFile(compressed));
+	}
+
+	@Test
+	public void testLargeFilesAreReadPieceByPiece() throws Exception {
+		// megabytes of text, so that characters of every width are split between two fills of the buffer
+		TextGrid grid = TestGrids.create(random, 4, 20000);
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16LE }) {
+			File compressed = folder.newFile("large.TextGrid.gz");
+			PraatFile.writeText(grid, compressed, charset, EOL.WINDOWS);
+			assertEquals(grid, PraatFile.readFromFile(compressed, charset));
+			// a pool cannot be used without the whole text, so the tiers are read one after another
+			assertEquals(grid, PraatFile.readFromFile(compressed, charset, new LabelTable(), null,
+					ForkJoinPool.commonPool()));
+			compressed.delete();
+		}
+		File compressed = folder.newFile("large.bin.gz");
+		PraatFile.writeBinary(grid, compressed);
+		assertEquals(grid, PraatFile.readFromFile(compressed));
+	}
+
+	static byte[] gunzip(File file) throws IOException {
+		try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package org.praat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.ListIterator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.praat.PraatTextFile.EOL;
+
+/**
+ * Tests for {@link LabelTable}: repeated labels must come out as one instance, the table must not grow beyond its
+ * capacity, and its statistics must count what was looked up.
+ */
+public class LabelTableTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testHitRate() {
+		LabelTable table = new LabelTable();
+		assertEquals(0, table.getHitRate(), 0);
+		String a = intern(table, "a");
+		assertSame(a, intern(table, "a"));
+		intern(table, "b");
+		assertSame(a, intern(table, "a"));
+		assertEquals(2, table.size());
+		assertEquals(4, table.getLookups());
+		assertEquals(2, table.getHits());
+		assertEquals(0.5, table.getHitRate(), 0);
+	}
+
+	@Test
+	public void testCapacityBoundsTheTable() {
+		LabelTable table = new LabelTable(3);
+		String[] kept = { intern(table, "a"), intern(table, "b"), intern(table, "c") };
+		for (int i = 0; i < 100; i++) {
+			String label = "label " + i;
+			// labels beyond the capacity are created, but not kept
+			assertEquals(label, intern(table, label));
+			assertNotSame(intern(table, label), intern(table, label));
+		}
+		assertEquals(3, table.size());
+		assertSame(kept[0], intern(table, "a"));
+		assertSame(kept[2], intern(table, "c"));
+		assertEquals(305, table.getLookups());
+		assertEquals(2, table.getHits());
+		try {
+			new LabelTable(0);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testLongLabelsAreNotInterned() {
+		LabelTable table = new LabelTable();
+		char[] chars = new char[LabelTable.MAX_LABEL_LENGTH + 1];
+		Arrays.fill(chars, 'x');
+		String label = new String(chars);
+		assertNotSame(intern(table, label), intern(table, label));
+		assertEquals(0, table.size());
+		assertEquals(0, table.getLookups());
+		String longest = label.substring(1);
+		assertSame(intern(table, longest), intern(table, longest));
+	}
+
+	@Test
+	public void testLabelsOfADocumentAreShared() throws Exception {
+		File file = folder.newFile();
+		PraatFile.writeText(new TextGrid("", Arrays.<Tier> asList(
+				new IntervalTier("phones", Arrays.asList(new Interval(0, 1, "a"), new Interval(1, 2, "a"))),
+				new IntervalTier("words", Arrays.asList(new Interval(0, 2, "a"))))), file, StandardCharsets.UTF_8,
+				EOL.UNIX);
+		LabelTable table = new LabelTable();
+		TextGrid grid = (TextGrid) PraatFile.readFromFile(file, StandardCharsets.UTF_8, table);
+		String a = label(grid, 0, 0);
+		assertSame(a, label(grid, 0, 1));
+		assertSame(a, label(grid, 1, 0));
+		// the class and the names of the tiers are strings of the document, too
+		assertEquals(4, table.size());
+
+		// another document with a table of its own shares nothing with the first one
+		TextGrid other = (TextGrid) PraatFile.readFromFile(file, StandardCharsets.UTF_8, new LabelTable());
+		assertEquals(grid, other);
+		assertNotSame(a, label(other, 0, 0));
+		// without a table, every label is a String of its own
+		TextGrid plain = (TextGrid) PraatFile.readFromFile(file, StandardCharsets.UTF_8);
+		assertNotSame(label(plain, 0, 0), label(plain, 0, 1));
+	}
+
+	private static String label(TextGrid grid, int tier, int index) {
+		ListIterator<Interval> intervals = ((IntervalTier) grid.items.get(tier)).iterator();
+		for (int i = 0; i < index; i++) {
+			intervals.next();
+		}
+		return intervals.next().getText();
+	}
+
+	private static String intern(LabelTable table, String label) {
+		// the characters are copied into a larger array, as readers hand out ranges of their buffers
+		char[] chars = ("  " + label + "  ").toCharArray();
+		return table.intern(chars, 2, label.length());
+	}
+}
@@ -0,0 +1,197 @@
+package org.praat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.praat.PraatTextFile.EOL;
+
+/**
+ * Tests for tiers moved or read off the heap: they must answer like the tiers they were, write the same files, and come
+ * back onto the heap when they are changed.
+ */
+public class OffHeapTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * A TextGrid in short text format with labels that are empty, quoted, accented and outside the BMP
+	 */
+	private static final String SHORT_TEXT_GRID = "File type = \"ooTextFile\"\nObject class = \"TextGrid\"\n\n"
+			+ "0\n3\n<exists>\n2\n"
+			+ "\"IntervalTier\"\n\"words\"\n0\n3\n3\n"
+			+ "0\n1\n\"caf\u00e9\"\n1\n2\n\"\"\n2\n3\n\"say \"\"\ud83d\ude00\"\"\"\n"
+			+ "\"TextTier\"\n\"bell\"\n0\n3\n1\n1.5\n\"ding\"\n";
+
+	private final Random random = new Random(21);
+
+	@Test
+	public void testShortTextGridIsReadOffHeap() throws Exception {
+		TextGrid grid;
+		try (PraatCodec codec = PraatCodec.acquire()) {
+			codec.setOffHeapThreshold(2);
+			grid = (TextGrid) codec.read(
+					Channels.newChannel(new ByteArrayInputStream(SHORT_TEXT_GRID.getBytes(StandardCharsets.UTF_8))),
+					StandardCharsets.UTF_8, null, null, null);
+		}
+		IntervalTier words = (IntervalTier) grid.items.get(0);
+		assertTrue(words.isOffHeap());
+		assertEquals(Arrays.asList(new Interval(0, 1, "caf\u00e9"), new Interval(1, 2, ""),
+				new Interval(2, 3, "say \"\ud83d\ude00\"")), words.getIntervals());
+		assertTrue(words.isEmpty(1));
+		assertTrue(words.contentEquals(0, "caf\u00e9"));
+		assertEquals(1, words.indexAt(1.5));
+		// the point tier has fewer points than the threshold
+		TextTier bell = (TextTier) grid.items.get(1);
+		assertFalse(bell.isOffHeap());
+		assertEquals(Arrays.asList(new Point(1.5, "ding")), bell.getPoints());
+		grid.free();
+		assertEquals(0, words.size());
+	}
+
+	@Test
+	public void testTiersAreReadOffHeap() throws Exception {
+		TextGrid grid = TestGrids.create(random, 2, 400);
+		File text = folder.newFile("grid.TextGrid");
+		File shortText = folder.newFile("short.TextGrid");
+		File binary = folder.newFile("binary.TextGrid");
+		File gzip = new File(folder.getRoot(), "grid.TextGrid" + PraatFile.GZIP_ENDING);
+		PraatFile.writeText(grid, text, StandardCharsets.UTF_8, EOL.UNIX);
+		PraatFile.writeShortText(grid, shortText, StandardCharsets.UTF_8, EOL.UNIX);
+		PraatFile.writeBinary(grid, binary);
+		PraatFile.writeText(grid, gzip, StandardCharsets.UTF_8, EOL.UNIX);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (File file : new File[] { text, shortText, binary, gzip }) {
+				for (ForkJoinPool parallel : new ForkJoinPool[] { null, pool }) {
+					for (LabelTable labels : new LabelTable[] { null, new LabelTable() }) {
+						TextGrid read;
+						try (PraatCodec codec = PraatCodec.acquire()) {
+							// the interval tiers have 400 items, the point tier 200
+							codec.setOffHeapThreshold(300);
+							read = (TextGrid) codec.read(file, null, labels, null, parallel);
+						}
+						String message = file.getName() + (parallel != null ? " in parallel" : "");
+						assertTrue(message, ((Tier) read.items.get(0)).isOffHeap());
+						assertTrue(message, ((Tier) read.items.get(1)).isOffHeap());
+						assertFalse(message, ((Tier) read.items.get(2)).isOffHeap());
+						assertEquals(message, grid, read);
+						read.free();
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		// the threshold is a setting of the reading codec only
+		try (PraatCodec codec = PraatCodec.acquire()) {
+			assertEquals(0, codec.getOffHeapThreshold());
+			codec.setOffHeapThreshold(100);
+			try (PraatCodec nested = PraatCodec.acquire()) {
+				assertEquals(100, nested.getOffHeapThreshold());
+			}
+			// reading through the pooled methods while the codec is held works on its behalf
+			TextGrid read = (TextGrid) PraatFile.readFromFile(text);
+			assertTrue(((Tier) read.items.get(2)).isOffHeap());
+			read.free();
+		}
+		TextGrid read = (TextGrid) PraatFile.readFromFile(text);
+		assertFalse(((Tier) read.items.get(0)).isOffHeap());
+	}
+
+	@Test
+	public void testTooManyItemsAreRejected() {
+		int size = Integer.MAX_VALUE / 8 + 1;
+		try {
+			new OffHeapItems(size, true);
+			fail("Too many items");
+		} catch (IllegalStateException e) {
+			assertEquals("Too many items to keep off the heap: the times of 268435456 items need 2147483648 bytes, "
+					+ "a direct buffer holds at most 2147483647", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testOffHeapTiersEqualOnHeapTiers() throws Exception {
+		TextGrid grid = TestGrids.create(random, 3, 400);
+		File file = folder.newFile();
+		PraatFile.writeText(grid, file, StandardCharsets.UTF_8, EOL.UNIX);
+		// labels read with a table are kept undecoded until they are asked for
+		TextGrid offHeap = (TextGrid) PraatFile.readFromFile(file, null, new LabelTable());
+		offHeap.moveOffHeap();
+		for (int t = 0; t < grid.items.size(); t++) {
+			Tier expected = (Tier) grid.items.get(t);
+			Tier tier = (Tier) offHeap.items.get(t);
+			assertTrue(tier.isOffHeap());
+			assertEquals(expected.size(), tier.size());
+			for (int i = 0; i < tier.size(); i++) {
+				assertEquals(expected.getStart(i), tier.getStart(i), 0);
+				assertEquals(expected.getEnd(i), tier.getEnd(i), 0);
+				assertEquals(expected.getLabel(i), tier.getLabel(i));
+				assertEquals(expected.isEmpty(i), tier.isEmpty(i));
+				assertTrue(tier.contentEquals(i, expected.getLabel(i)));
+				assertFalse(tier.contentEquals(i, expected.getLabel(i) + "x"));
+			}
+			assertEquals(expected, tier);
+			assertEquals(expected.hashCode(), tier.hashCode());
+		}
+		IntervalTier words = (IntervalTier) offHeap.items.get(0);
+		IntervalTier expectedWords = (IntervalTier) grid.items.get(0);
+		assertEquals(expectedWords.overlapping(1, 3), words.overlapping(1, 3));
+		assertEquals(expectedWords.indexAt(2), words.indexAt(2));
+
+		File written = folder.newFile();
+		PraatFile.writeText(offHeap, written, StandardCharsets.UTF_8, EOL.UNIX);
+		assertArrayEquals(Files.readAllBytes(file.toPath()), Files.readAllBytes(written.toPath()));
+		offHeap.free();
+	}
+
+	@Test
+	public void testChangeMovesBackOntoHeap() {
+		TextGrid grid = TestGrids.create(random, 1, 100);
+		IntervalTier tier = (IntervalTier) grid.items.get(0);
+		IntervalTier copy = new IntervalTier(tier.getName(), tier.getIntervals());
+		tier.moveOffHeap();
+		assertTrue(tier.isOffHeap());
+		Interval changed = new Interval(tier.getStart(5), tier.getEnd(5), "changed");
+		tier.getIntervals().set(5, changed);
+		assertFalse(tier.isOffHeap());
+		copy.getIntervals().set(5, changed);
+		assertEquals(copy, tier);
+
+		TextTier points = (TextTier) grid.items.get(1);
+		points.moveOffHeap();
+		int size = points.size();
+		points.addPoint(new Point(points.getEndTime(), "last"));
+		assertFalse(points.isOffHeap());
+		assertEquals(size + 1, points.size());
+		assertEquals("last", points.getLabel(size));
+	}
+
+	@Test
+	public void testFreeEmptiesTier() {
+		TextGrid grid = TestGrids.create(random, 2, 50);
+		grid.moveOffHeap();
+		grid.free();
+		for (PraatObject item : grid.items) {
+			Tier tier = (Tier) item;
+			assertFalse(tier.isOffHeap());
+			assertEquals(0, tier.size());
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package org.praat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.praat.PraatTextFile.EOL;
+
+/**
+ * Tests for reading the tiers of a long text TextGrid in parallel: the grid read must be the one read sequentially,
+ * whatever the charset and line ends, and the label tables of the tasks must add up to the table given.
+ */
+public class ParallelReadTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Random random = new Random(14);
+
+	@Test
+	public void testParallelEqualsSequential() throws Exception {
+		TextGrid grid = TestGrids.create(random, 6, 500);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16,
+					StandardCharsets.UTF_16LE }) {
+				for (EOL eol : EOL.values()) {
+					File file = folder.newFile();
+					PraatFile.writeText(grid, file, charset, eol);
+					LabelTable sequentialLabels = new LabelTable();
+					LabelTable parallelLabels = new LabelTable();
+					PraatObject sequential = PraatFile.readFromFile(file, charset, sequentialLabels, null, null);
+					PraatObject parallel = PraatFile.readFromFile(file, charset, parallelLabels, null, pool);
+					assertEquals(grid, sequential);
+					assertEquals(sequential, parallel);
+					assertEquals(sequentialLabels.getLookups(), parallelLabels.getLookups());
+					assertTrue(parallelLabels.getHits() <= sequentialLabels.getHits());
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testMarkersInLabelsAreNotTiers() throws Exception {
+		List<Interval> intervals = new ArrayList<Interval>();
+		for (int i = 0; i < 20; i++) {
+			intervals.add(new Interval(i, i + 1, i % 2 == 0 ? "item [" + (i + 2) + "]:" : "\n    item [2]:\n"));
+		}
+		List<Tier> tiers = new ArrayList<Tier>();
+		tiers.add(new IntervalTier("item [2]:", intervals));
+		tiers.add(new IntervalTier("words", intervals));
+		TextGrid grid = new TextGrid("", tiers);
+		File file = folder.newFile();
+		PraatFile.writeText(grid, file, StandardCharsets.UTF_8, EOL.UNIX);
+
+		TierIndex index = TierIndex.scan(skipHeader(file), StandardCharsets.UTF_8);
+		assertEquals(2, index.size());
+		assertEquals(grid, PraatFile.readFromFile(file, null, null, null, ForkJoinPool.commonPool()));
+	}
+
+	/**
+	 * @return the bytes of the file from the line after the size of the grid
+	 */
+	private static ByteBuffer skipHeader(File file) throws Exception {
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		String text = new String(bytes, StandardCharsets.UTF_8);
+		int start = text.indexOf("item []:");
+		return ByteBuffer.wrap(bytes, start, bytes.length - start).slice();
+	}
+}
@@ -0,0 +1,134 @@
+package org.praat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link PraatBinaryFile}: files laid out like Praat writes them must be read, and every grid must survive
+ * a round trip through the binary format.
+ */
+public class PraatBinaryFileTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Random random = new Random(4);
+
+	@Test
+	public void testPraatLayout() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeBytes("ooBinaryFile");
+		writeShortString(out, "TextGrid");
+		out.writeDouble(0);
+		out.writeDouble(2.5);
+		out.writeByte(1);
+		out.writeInt(2);
+		writeShortString(out, "IntervalTier");
+		writeString(out, "words");
+		out.writeDouble(0);
+		out.writeDouble(2.5);
+		out.writeInt(2);
+		out.writeDouble(0);
+		out.writeDouble(1.25);
+		writeString(out, "caf\u00e9");
+		out.writeDouble(1.25);
+		out.writeDouble(2.5);
+		writeString(out, "");
+		writeShortString(out, "TextTier");
+		writeString(out, "bells");
+		out.writeDouble(0);
+		out.writeDouble(2.5);
+		out.writeInt(1);
+		out.writeDouble(0.5);
+		writeString(out, "\ud83d\udd14 ding");
+		out.flush();
+		File file = folder.newFile("praat.TextGrid");
+		Files.write(file.toPath(), bytes.toByteArray());
+
+		TextGrid grid = (TextGrid) PraatFile.readFromFile(file);
+		IntervalTier words = (IntervalTier) grid.items.get(0);
+		assertEquals("words", words.getName());
+		assertEquals(2.5, words.getEndTime(), 0);
+		assertEquals(2, words.size());
+		assertEquals(1.25, words.getEnd(0), 0);
+		assertEquals("caf\u00e9", words.getLabel(0));
+		assertEquals("", words.getLabel(1));
+		TextTier bells = (TextTier) grid.items.get(1);
+		assertEquals("bells", bells.getName());
+		assertEquals(0.5, bells.getStart(0), 0);
+		assertEquals("\ud83d\udd14 ding", bells.getLabel(0));
+
+		// the writer lays the grid out the same way
+		File written = folder.newFile("written.TextGrid");
+		PraatFile.writeBinary(grid, written);
+		assertTrue(Arrays.equals(bytes.toByteArray(), Files.readAllBytes(written.toPath())));
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		TextGrid grid = TestGrids.create(random, 3, 500);
+		File file = folder.newFile("grid.TextGrid");
+		PraatFile.writeBinary(grid, file);
+		assertEquals(grid, PraatFile.readFromFile(file));
+		// read from a stream, the file is refilled piece by piece
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		assertEquals(grid, PraatFile.readFromStream(new ByteArrayInputStream(bytes)));
+		assertEquals(grid, PraatFile.readFromFile(file, null, new LabelTable()));
+	}
+
+	@Test
+	public void testTruncatedFileIsRejected() throws Exception {
+		TextGrid grid = TestGrids.create(random, 1, 20);
+		File file = folder.newFile("grid.TextGrid");
+		PraatFile.writeBinary(grid, file);
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		File truncated = folder.newFile("truncated.TextGrid");
+		try (FileOutputStream out = new FileOutputStream(truncated)) {
+			out.write(bytes, 0, bytes.length - 5);
+		}
+		try {
+			PraatFile.readFromFile(truncated);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Early end of binary file"));
+		}
+	}
+
+	/**
+	 * Class names have a one byte length
+	 */
+	private static void writeShortString(DataOutputStream out, String value) throws IOException {
+		out.writeByte(value.length());
+		out.writeBytes(value);
+	}
+
+	/**
+	 * Other strings have a two byte length, or are escaped and written in UTF-16 if they are not ASCII
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value.chars().allMatch(c -> c < 0x80)) {
+			out.writeShort(value.length());
+			out.writeBytes(value);
+		} else {
+			out.writeShort(0xffff);
+			out.writeShort(value.codePointCount(0, value.length()));
+			out.writeChars(value);
+		}
+	}
+}
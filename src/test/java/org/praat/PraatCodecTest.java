@@ -0,0 +1,103 @@
+package org.praat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.praat.PraatTextFile.EOL;
+
+/**
+ * Tests for {@link PraatCodec}: a thread gets its codec back for every document, a nested acquisition must not share
+ * it, and nothing read through a codec may depend on its buffers or its label table once it has been returned.
+ */
+public class PraatCodecTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Random random = new Random(18);
+
+	@Test
+	public void testCodecIsReusedAcrossDocuments() throws Exception {
+		// the large grid is mapped, the small one is read into the input buffer
+		TextGrid large = TestGrids.create(random, 2, 20000);
+		TextGrid small = TestGrids.create(random, 1, 20);
+		File largeFile = folder.newFile("large.TextGrid");
+		File smallFile = folder.newFile("small.TextGrid");
+		PraatFile.writeText(large, largeFile, StandardCharsets.UTF_8, EOL.UNIX);
+		PraatFile.writeText(small, smallFile, StandardCharsets.UTF_8, EOL.UNIX);
+		assertTrue(largeFile.length() > 1 << 20);
+
+		PraatCodec first;
+		TextGrid[] read = new TextGrid[4];
+		try (PraatCodec codec = PraatCodec.acquire()) {
+			first = codec;
+			read[0] = (TextGrid) codec.read(largeFile, StandardCharsets.UTF_8, null, null, null);
+			read[1] = (TextGrid) codec.read(smallFile, StandardCharsets.UTF_8, null, null, null);
+		}
+		try (PraatCodec codec = PraatCodec.acquire()) {
+			assertSame(first, codec);
+			read[2] = (TextGrid) codec.read(smallFile, StandardCharsets.UTF_8, null, null, null);
+			read[3] = (TextGrid) codec.read(largeFile, StandardCharsets.UTF_8, null, null, null);
+		}
+		// the labels are only created now, after the mapping has been released
+		assertEquals(large, read[0]);
+		assertEquals(small, read[1]);
+		assertEquals(small, read[2]);
+		assertEquals(large, read[3]);
+	}
+
+	@Test
+	public void testNestedAcquireGetsAFreshCodec() throws Exception {
+		File file = folder.newFile("small.TextGrid");
+		TextGrid grid = TestGrids.create(random, 2, 50);
+		PraatFile.writeText(grid, file, StandardCharsets.UTF_8, EOL.UNIX);
+
+		PraatCodec outer = PraatCodec.acquire();
+		try {
+			LabelTable labels = outer.getLabelTable();
+			try (PraatCodec inner = PraatCodec.acquire()) {
+				assertNotSame(outer, inner);
+				assertNotSame(labels, inner.getLabelTable());
+				// reading through the pooled methods while the codec is held must not disturb it
+				assertEquals(grid, PraatFile.readFromFile(file, StandardCharsets.UTF_8));
+				assertEquals(grid, inner.read(file, StandardCharsets.UTF_8, inner.getLabelTable(), null, null));
+			}
+			assertEquals(grid, outer.read(file, StandardCharsets.UTF_8, labels, null, null));
+			assertTrue(labels.size() > 0);
+		} finally {
+			outer.close();
+		}
+		try (PraatCodec codec = PraatCodec.acquire()) {
+			assertSame(outer, codec);
+		}
+	}
+
+	@Test
+	public void testCloseClearsTheLabelTable() throws Exception {
+		File file = folder.newFile("small.TextGrid");
+		TextGrid grid = TestGrids.create(random, 1, 100);
+		PraatFile.writeText(grid, file, StandardCharsets.UTF_8, EOL.UNIX);
+
+		TextGrid read;
+		LabelTable labels;
+		try (PraatCodec codec = PraatCodec.acquire()) {
+			labels = codec.getLabelTable();
+			read = (TextGrid) codec.read(file, StandardCharsets.UTF_8, labels, null, null);
+			assertTrue(labels.size() > 0);
+		}
+		assertEquals(0, labels.size());
+		assertEquals(grid, read);
+		try (PraatCodec codec = PraatCodec.acquire()) {
+			assertSame(labels, codec.getLabelTable());
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package org.praat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.praat.PraatEventReader.Event;
+import org.praat.PraatTextFile.EOL;
+
+/**
+ * Tests for {@link PraatEventReader}: its events must describe the same grid as the object model in every format, and
+ * a reader must not read further ahead of its events than its buffer reaches.
+ */
+public class PraatEventReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Random random = new Random(7);
+
+	@Test
+	public void testEventsMatchObjectModel() throws Exception {
+		TextGrid grid = TestGrids.create(random, 3, 300);
+		File text = folder.newFile("long.TextGrid");
+		File shortText = folder.newFile("short.TextGrid.gz");
+		File binary = folder.newFile("binary.TextGrid");
+		PraatFile.writeText(grid, text, StandardCharsets.UTF_16, EOL.WINDOWS);
+		PraatFile.writeShortText(grid, shortText, StandardCharsets.UTF_8, EOL.UNIX);
+		PraatFile.writeBinary(grid, binary);
+		for (File file : new File[] { text, shortText, binary }) {
+			try (PraatEventReader events = PraatEventReader.open(file)) {
+				assertEvents(grid, events);
+			}
+		}
+	}
+
+	@Test
+	public void testLargeGridIsReadThroughBoundedBuffer() throws IOException {
+		GeneratedGrid source = new GeneratedGrid(1000000);
+		try (PraatEventReader events = PraatEventReader.open(source, StandardCharsets.UTF_8, null)) {
+			assertEquals(Event.TEXT_GRID, events.next());
+			assertEquals(Event.TIER_START, events.next());
+			assertEquals(1000000, events.getSize());
+			int read = 0;
+			while (events.next() == Event.INTERVAL) {
+				assertEquals(read, events.getStartTime(), 0);
+				assertEquals(read + 1, events.getEndTime(), 0);
+				assertTrue(events.textEquals("w" + read));
+				read++;
+				// the input buffer holds 64 KB, a few hundred intervals
+				assertTrue("read ahead by " + (source.generated - read) + " intervals",
+						source.generated - read < 2000);
+			}
+			assertEquals(1000000, read);
+			assertEquals(Event.END, events.next());
+			assertTrue(source.delivered > 50000000);
+		}
+		assertFalse(source.isOpen());
+	}
+
+	private static void assertEvents(TextGrid grid, PraatEventReader events) throws IOException {
+		assertEquals(Event.TEXT_GRID, events.next());
+		assertEquals(grid.items.size(), events.getSize());
+		for (PraatObject item : grid) {
+			Tier tier = (Tier) item;
+			assertEquals(Event.TIER_START, events.next());
+			assertEquals(tier.getName(), events.getTierName());
+			assertEquals(tier.getClass().getSimpleName(), events.getTierClass());
+			assertEquals(tier.size(), events.getSize());
+			for (int i = 0; i < tier.size(); i++) {
+				assertEquals(tier instanceof IntervalTier ? Event.INTERVAL : Event.POINT, events.next());
+				assertEquals(tier.getStart(i), events.getStartTime(), 0);
+				assertEquals(tier.getEnd(i), events.getEndTime(), 0);
+				assertEquals(tier.getLabel(i), events.getText());
+			}
+			assertEquals(Event.TIER_END, events.next());
+		}
+		assertEquals(Event.END, events.next());
+		assertFalse(events.hasNext());
+	}
+
+	/**
+	 * A long text TextGrid with a single tier of intervals <code>[i, i + 1]</code> labelled <code>w</code><i>i</i>,
+	 * generated as it is read rather than held anywhere
+	 */
+	private static final class GeneratedGrid implements ReadableByteChannel {
+
+		private final int intervals;
+		private final ByteBuffer pending = ByteBuffer.allocate(1024);
+		private final StringBuilder record = new StringBuilder();
+		private boolean open = true;
+
+		/**
+		 * Number of intervals and bytes handed out so far
+		 */
+		int generated;
+		long delivered;
+
+		GeneratedGrid(int intervals) {
+			this.intervals = intervals;
+			render("File type = \"ooTextFile\"\nObject class = \"TextGrid\"\n\nxmin = 0\nxmax = " + intervals
+					+ "\ntiers? <exists>\nsize = 1\nitem []:\n    item [1]:\n        class = \"IntervalTier\"\n"
+					+ "        name = \"words\"\n        xmin = 0\n        xmax = " + intervals
+					+ "\n        intervals: size = " + intervals + "\n");
+		}
+
+		@Override
+		public int read(ByteBuffer dst) {
+			if (!pending.hasRemaining() && generated == intervals) {
+				return -1;
+			}
+			int count = 0;
+			while (dst.hasRemaining()) {
+				if (!pending.hasRemaining()) {
+					if (generated == intervals) {
+						break;
+					}
+					record.setLength(0);
+					record.append("        intervals [").append(generated + 1).append("]:\n            xmin = ")
+							.append(generated).append("\n            xmax = ").append(generated + 1)
+							.append("\n            text = \"w").append(generated).append("\"\n");
+					render(record);
+					generated++;
+				}
+				int n = Math.min(dst.remaining(), pending.remaining());
+				for (int i = 0; i < n; i++) {
+					dst.put(pending.get());
+				}
+				count += n;
+			}
+			delivered += count;
+			return count;
+		}
+
+		private void render(CharSequence text) {
+			pending.clear();
+			for (int i = 0; i < text.length(); i++) {
+				pending.put((byte) text.charAt(i));
+			}
+			pending.flip();
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+	}
+}
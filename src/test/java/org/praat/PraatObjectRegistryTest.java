@@ -0,0 +1,154 @@
+package org.praat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link PraatObjectRegistry}: the classes of this package are known up front, other classes can be added,
+ * and classes found by reflection are looked up once.
+ */
+public class PraatObjectRegistryTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testBuiltInClasses() throws Exception {
+		for (String className : new String[] { "TextGrid", "IntervalTier", "TextTier", "PointTier", "Collection" }) {
+			assertTrue(className, PraatObjectRegistry.isRegistered(className));
+			assertSame(className, PraatObjectRegistry.getFactory(className), PraatObjectRegistry.getFactory(className));
+		}
+		PraatObject tier = PraatFile.readFromFile(write("IntervalTier", "xmin = 0 \nxmax = 1 \n"
+				+ "intervals: size = 1 \nintervals [1]:\n    xmin = 0 \n    xmax = 1 \n    text = \"a\" \n"));
+		assertTrue(tier instanceof IntervalTier);
+		assertEquals(1, ((IntervalTier) tier).getEndTime(), 0);
+	}
+
+	@Test
+	public void testRegisteredClass() throws Exception {
+		assertFalse(PraatObjectRegistry.isRegistered("Bells"));
+		PraatObjectRegistry.register("Bells", file -> new Bells(file.readInteger()));
+		assertTrue(PraatObjectRegistry.isRegistered("Bells"));
+		Bells bells = (Bells) PraatFile.readFromFile(write("Bells", "count = 3 \n"));
+		assertEquals(3, bells.count);
+
+		// a later registration replaces the earlier one
+		PraatObjectRegistry.register("Bells", file -> new Bells(-file.readInteger()));
+		assertEquals(-3, ((Bells) PraatFile.readFromFile(write("Bells", "count = 3 \n"))).count);
+		try {
+			PraatObjectRegistry.register("Bells", null);
+			fail();
+		} catch (NullPointerException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testReflectiveLookupIsCached() throws Exception {
+		assertFalse(PraatObjectRegistry.isRegistered("Chimes"));
+		PraatObjectRegistry.Factory factory = PraatObjectRegistry.getFactory("Chimes");
+		assertTrue(PraatObjectRegistry.isRegistered("Chimes"));
+		assertSame(factory, PraatObjectRegistry.getFactory("Chimes"));
+		Chimes chimes = (Chimes) PraatFile.readFromFile(write("Chimes", "tone = \"c\" \n"));
+		assertEquals("c", chimes.tone);
+	}
+
+	@Test
+	public void testUnknownClassIsRejected() throws Exception {
+		try {
+			PraatObjectRegistry.getFactory("Gongs");
+			fail();
+		} catch (ClassNotFoundException e) {
+			assertEquals("Unsupported Praat class: Gongs", e.getMessage());
+		}
+		assertFalse(PraatObjectRegistry.isRegistered("Gongs"));
+		try {
+			PraatFile.readFromFile(write("Gongs", "size = 1 \n"));
+			fail();
+		} catch (ClassNotFoundException e) {
+			assertEquals("Unsupported Praat class: Gongs", e.getMessage());
+		}
+	}
+
+	private File write(String className, String payload) throws IOException {
+		File file = folder.newFile();
+		String text = "File type = \"ooTextFile\"\nObject class = \"" + className + "\"\n\n" + payload;
+		Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	static final class Bells implements PraatObject {
+
+		final int count;
+		private String name;
+
+		Bells(int count) {
+			this.count = count;
+		}
+
+		@Override
+		public PraatObject read(PraatFile file) throws Exception {
+			return this;
+		}
+
+		@Override
+		public void write(PraatFile file) throws IOException {
+			file.writeInteger("count =", count);
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+}
+
+/**
+ * A Praat class of this package that is not registered, so that it is found by reflection
+ */
+final class Chimes implements PraatObject {
+
+	final String tone;
+	private String name;
+
+	public Chimes(PraatFile file) throws IOException {
+		tone = file.readString();
+	}
+
+	@Override
+	public PraatObject read(PraatFile file) throws Exception {
+		return this;
+	}
+
+	@Override
+	public void write(PraatFile file) throws IOException {
+		file.writeString("tone =", tone);
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void setName(String name) {
+		this.name = name;
+	}
+}
@@ -0,0 +1,86 @@
+package org.praat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.praat.PraatTextFile.EOL;
+
+/**
+ * Tests for {@link PraatShortTextFile}: short text files are read value by value, each on a line of its own, and files
+ * whose values are not where the format puts them must be rejected instead of being read out of step.
+ */
+public class PraatShortTextFileTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Random random = new Random(6);
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		TextGrid grid = TestGrids.create(random, 3, 400);
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16 }) {
+			for (EOL eol : EOL.values()) {
+				File file = folder.newFile();
+				PraatFile.writeShortText(grid, file, charset, eol);
+				assertEquals(grid, PraatFile.readFromFile(file));
+				assertEquals(grid, PraatFile.readFromFile(file, charset, new LabelTable()));
+			}
+		}
+	}
+
+	@Test
+	public void testMissingValueIsRejected() throws Exception {
+		String text = shortText();
+		// drop the end time of the grid, so that the flag of its tiers comes where a number belongs
+		int start = text.indexOf("\n0\n") + 3;
+		int end = text.indexOf('\n', start) + 1;
+		assertMisaligned(text.substring(0, start) + text.substring(end));
+	}
+
+	@Test
+	public void testValuesOnOneLineAreRejected() throws Exception {
+		String text = shortText();
+		// join the time of the second point with its mark
+		int points = text.indexOf("\"points\"");
+		int mark = text.indexOf("\n\"", text.indexOf('\n', points) + 1);
+		mark = text.indexOf("\n\"", mark + 1);
+		assertMisaligned(text.substring(0, mark) + " " + text.substring(mark + 1));
+	}
+
+	@Test
+	public void testLongTextIsNotReadPositionally() throws Exception {
+		TextGrid grid = TestGrids.create(random, 2, 50);
+		File file = folder.newFile();
+		PraatFile.writeText(grid, file, StandardCharsets.UTF_8, EOL.UNIX);
+		assertEquals(grid, PraatFile.readFromFile(file));
+	}
+
+	private String shortText() throws Exception {
+		TextGrid grid = TestGrids.create(random, 1, 5);
+		File file = folder.newFile();
+		PraatFile.writeShortText(grid, file, StandardCharsets.UTF_8, EOL.UNIX);
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	private void assertMisaligned(String text) throws Exception {
+		File file = folder.newFile();
+		Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+		try {
+			PraatFile.readFromFile(file);
+			fail(text);
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Misaligned short text file"));
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package org.praat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link PraatTextLexer}: text as Praat writes it, with escaped quotes, strings over several lines, comments,
+ * index markers and undefined numbers, must be read value by value, and text that is cut short or out of step must be
+ * rejected with a message that tells where.
+ */
+public class PraatTextLexerTest {
+
+	/**
+	 * A TextGrid saved by Praat 6 as a text file, trailing blanks included
+	 */
+	private static final String PRAAT_TEXT_GRID = "File type = \"ooTextFile\"\n" //
+			+ "Object class = \"TextGrid\"\n" //
+			+ "\n" //
+			+ "xmin = 0 \n" //
+			+ "xmax = 2.3 \n" //
+			+ "tiers? <exists> \n" //
+			+ "size = 2 \n" //
+			+ "item []: \n" //
+			+ "    item [1]:\n" //
+			+ "        class = \"IntervalTier\" \n" //
+			+ "        name = \"words\" \n" //
+			+ "        xmin = 0 \n" //
+			+ "        xmax = 2.3 \n" //
+			+ "        intervals: size = 3 \n" //
+			+ "        intervals [1]:\n" //
+			+ "            xmin = 0 \n" //
+			+ "            xmax = 1.1 \n" //
+			+ "            text = \"say \"\"hi\"\"\" \n" //
+			+ "        intervals [2]:\n" //
+			+ "            xmin = 1.1 \n" //
+			+ "            xmax = 1.7 \n" //
+			+ "            text = \"two\n" //
+			+ "lines [1] ! not a comment\" \n" //
+			+ "        intervals [3]:\n" //
+			+ "            xmin = 1.7 \n" //
+			+ "            xmax = 2.3 \n" //
+			+ "            text = \"\" \n" //
+			+ "    item [2]:\n" //
+			+ "        class = \"TextTier\" \n" //
+			+ "        name = \"bell\" \n" //
+			+ "        xmin = 0 \n" //
+			+ "        xmax = 2.3 \n" //
+			+ "        points: size = 1 \n" //
+			+ "        points [1]:\n" //
+			+ "            number = 0.5 \n" //
+			+ "            mark = \"\"\"\" \n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testPraatTextGrid() throws Exception {
+		List<Tier> tiers = new ArrayList<Tier>();
+		tiers.add(new IntervalTier("words", Arrays.asList(new Interval(0, 1.1, "say \"hi\""),
+				new Interval(1.1, 1.7, "two\nlines [1] ! not a comment"), new Interval(1.7, 2.3, ""))));
+		tiers.add(new TextTier("bell", 0, 2.3, Arrays.asList(new Point(0.5, "\""))));
+		TextGrid expected = new TextGrid("", tiers);
+		assertEquals(expected, read(PRAAT_TEXT_GRID));
+
+		// Windows line ends are blanks like any other
+		assertEquals(expected, read(PRAAT_TEXT_GRID.replace("\n", "\r\n").replace("two\r\nlines", "two\nlines")));
+	}
+
+	@Test
+	public void testEscapedQuotesAcrossRefills() throws Exception {
+		// the reader hands out one character at a time, so every token is refilled while it is scanned
+		PraatTextLexer lexer = lexer("text = \"\"\"a\"\"\"\"b\"\"\" \n  \"\" \"x\ny\"\"\n\"");
+		assertEquals("\"a\"\"b\"", lexer.readString());
+		assertEquals("", lexer.readString());
+		assertEquals("x\ny\"\n", lexer.readString());
+		assertEquals(4, lexer.getLine());
+	}
+
+	@Test
+	public void testCommentsAndIndexMarkers() throws Exception {
+		PraatTextLexer lexer = lexer("! 12 \"not a value\"\nitem [3]: ! 4 <absent>\n  xmin = 1.5 ! 2\n"
+				+ "points [7]:\n number = -2e-3\nexists? <exists>\n");
+		assertEquals(1.5, lexer.readDouble(), 0);
+		assertEquals(-2e-3, lexer.readDouble(), 0);
+		assertTrue(lexer.readFlag());
+		assertEquals(6, lexer.getLine());
+	}
+
+	@Test
+	public void testUndefined() throws Exception {
+		PraatTextLexer lexer = lexer("xmin = --undefined-- \nxmax = 3 \nsize = -12\n");
+		assertTrue(Double.isNaN(lexer.readDouble()));
+		assertEquals(3, lexer.readDouble(), 0);
+		assertEquals(-12, lexer.readInteger());
+	}
+
+	@Test
+	public void testMisalignedInputIsRejected() throws Exception {
+		// the text of the first interval is missing
+		String missing = PRAAT_TEXT_GRID.replace("            text = \"say \"\"hi\"\"\" \n", "");
+		assertRejected(missing, "Found a number while looking for a string (line 19)");
+		// a number where a flag belongs
+		assertRejected(PRAAT_TEXT_GRID.replace("<exists>", "1"), "Found a number while looking for a flag (line 6)");
+		assertRejected(PRAAT_TEXT_GRID.replace("<exists>", "<maybe>"), "Unknown flag <maybe> (line 6)");
+		assertRejected(PRAAT_TEXT_GRID.replace("xmax = 1.1", "xmax = 1.x"), "1.x");
+	}
+
+	@Test
+	public void testTruncatedInputIsRejected() throws Exception {
+		int text = PRAAT_TEXT_GRID.indexOf("two\n");
+		assertRejected(PRAAT_TEXT_GRID.substring(0, text), "Early end of text inside a string (line 22)");
+		int number = PRAAT_TEXT_GRID.indexOf("number = ") + 9;
+		assertRejected(PRAAT_TEXT_GRID.substring(0, number),
+				"Early end of text while looking for a number (line 35)");
+	}
+
+	private PraatObject read(String text) throws Exception {
+		File file = folder.newFile();
+		Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+		return PraatFile.readFromFile(file, StandardCharsets.UTF_8);
+	}
+
+	private void assertRejected(String text, String message) throws Exception {
+		try {
+			read(text);
+			fail(message);
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(message));
+		}
+	}
+
+	private static PraatTextLexer lexer(String text) {
+		return new PraatTextLexer(new StringReader(text) {
+
+			@Override
+			public int read(char[] buffer, int offset, int length) throws IOException {
+				return super.read(buffer, offset, Math.min(length, 1));
+			}
+		});
+	}
+}
@@ -0,0 +1,146 @@
+package org.praat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.praat.PraatTextFile.EOL;
+
+/**
+ * Tests for writing Praat files: the three formats must write the same objects and read them back alike, and writing
+ * in parallel must write the same bytes as writing sequentially.
+ */
+public class PraatWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * The TextGrid {@link #testParallelWriterHandWritten()} writes in the short text format, as Praat writes it
+	 */
+	private static final String EXPECTED_SHORT_TEXT_GRID = "File type = \"ooTextFile\"\n"
+			+ "Object class = \"TextGrid\"\n\n0\n3\n<exists>\n3\n"
+			+ "\"IntervalTier\"\n\"words\"\n0\n3\n2\n0\n1.5\n\"caf\u00e9\"\n1.5\n3\n\"\"\n"
+			+ "\"IntervalTier\"\n\"phones\"\n0\n3\n2\n0\n0.25\n\"k\"\n0.25\n3\n\"\"\"a\"\"\"\n"
+			+ "\"TextTier\"\n\"bells\"\n0\n3\n1\n0.125\n\"ding\"\n";
+
+	private final Random random = new Random(5);
+
+	@Test
+	public void testBinaryWriter() throws Exception {
+		TextGrid grid = TestGrids.create(random, 3, 300);
+		File text = folder.newFile("grid.TextGrid");
+		File binary = folder.newFile("grid.bin.TextGrid");
+		PraatFile.writeText(grid, text, StandardCharsets.UTF_8, EOL.UNIX);
+		PraatFile.writeBinary(grid, binary);
+		assertEquals(PraatFile.readFromFile(text), PraatFile.readFromFile(binary));
+		assertTrue(binary.length() < text.length() / 2);
+
+		// streams get the same bytes as files
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PraatFile.writeBinary(grid, out);
+		assertArrayEquals(Files.readAllBytes(binary.toPath()), out.toByteArray());
+	}
+
+	@Test
+	public void testBinaryWriterRejectsTooLongStrings() throws Exception {
+		char[] label = new char[0xffff];
+		Arrays.fill(label, 'a');
+		TextGrid grid = new TextGrid("", Collections.<Tier> singletonList(
+				new IntervalTier("words", Collections.singletonList(new Interval(0, 1, new String(label))))));
+		try {
+			PraatFile.writeBinary(grid, folder.newFile());
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("String too long"));
+		}
+		// one character less fits
+		label = Arrays.copyOf(label, 0xfffe);
+		grid = new TextGrid("", Collections.<Tier> singletonList(
+				new IntervalTier("words", Collections.singletonList(new Interval(0, 1, new String(label))))));
+		File file = folder.newFile();
+		PraatFile.writeBinary(grid, file);
+		assertEquals(grid, PraatFile.readFromFile(file));
+	}
+
+	@Test
+	public void testParallelWriterEqualsSequential() throws Exception {
+		TextGrid grid = TestGrids.create(random, 5, 400);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16 }) {
+				for (EOL eol : EOL.values()) {
+					File sequential = folder.newFile();
+					File parallel = folder.newFile();
+					PraatFile.writeText(grid, sequential, charset, eol);
+					PraatFile.writeText(grid, parallel, charset, eol, pool);
+					assertArrayEquals(Files.readAllBytes(sequential.toPath()), Files.readAllBytes(parallel.toPath()));
+
+					PraatFile.writeShortText(grid, sequential, charset, eol);
+					PraatFile.writeShortText(grid, parallel, charset, eol, pool);
+					assertArrayEquals(Files.readAllBytes(sequential.toPath()), Files.readAllBytes(parallel.toPath()));
+				}
+			}
+			// tiers rendered in parallel are compressed like tiers written sequentially
+			File compressed = folder.newFile("grid.TextGrid.gz");
+			PraatFile.writeText(grid, compressed, StandardCharsets.UTF_8, EOL.UNIX, pool);
+			assertEquals(grid, PraatFile.readFromFile(compressed));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testParallelWriterHandWritten() throws Exception {
+		TextGrid grid = new TextGrid("", Arrays.<Tier> asList(
+				new IntervalTier("words", Arrays.asList(new Interval(0, 1.5, "caf\u00e9"), new Interval(1.5, 3, ""))),
+				new IntervalTier("phones", Arrays.asList(new Interval(0, 0.25, "k"), new Interval(0.25, 3, "\"a\""))),
+				new TextTier("bells", 0, 3, Collections.singletonList(new Point(0.125, "ding")))));
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			File file = folder.newFile();
+			PraatFile.writeShortText(grid, file, StandardCharsets.UTF_8, EOL.UNIX, pool);
+			assertEquals(EXPECTED_SHORT_TEXT_GRID, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+			PraatFile.writeShortText(grid, file, StandardCharsets.UTF_8, EOL.WINDOWS, pool);
+			assertEquals(EXPECTED_SHORT_TEXT_GRID.replace("\n", "\r\n"),
+					new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testNullStringsAreWrittenEmpty() throws Exception {
+		TextGrid grid = new TextGrid("", Arrays.<Tier> asList(
+				new IntervalTier(null, Arrays.asList(new Interval(0, 1, null), new Interval(1, 2, "b"))),
+				new TextTier("points", 0, 2, Collections.singletonList(new Point(1, null)))));
+		File text = folder.newFile("null.TextGrid");
+		File shortText = folder.newFile("null.short.TextGrid");
+		File binary = folder.newFile("null.bin.TextGrid");
+		PraatFile.writeText(grid, text, StandardCharsets.UTF_8, EOL.UNIX);
+		PraatFile.writeShortText(grid, shortText, StandardCharsets.UTF_8, EOL.UNIX);
+		PraatFile.writeBinary(grid, binary);
+		for (File file : new File[] { text, shortText, binary }) {
+			TextGrid read = (TextGrid) PraatFile.readFromFile(file);
+			Tier words = (Tier) read.items.get(0);
+			assertEquals(file.getName(), "", words.getName());
+			assertEquals(file.getName(), "", words.getLabel(0));
+			assertEquals(file.getName(), "b", words.getLabel(1));
+			assertEquals(file.getName(), "", ((Tier) read.items.get(1)).getLabel(0));
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package org.praat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random TextGrids for the tests of readers and writers. Labels mix ASCII, accented and CJK characters, characters
+ * outside the BMP, quotes and empty texts, so that every escape and every multi-byte sequence of the formats is used.
+ */
+final class TestGrids {
+
+	private static final String[] LABELS = { "", "a", "word", "\"quoted\"", "caf\u00e9", "\u00e4\u00f6\u00fc\u00df",
+			"\u4e2d\u6587", "\ud83d\ude00 smile", "line\none", "x\"\"y", "  padded  ", "<exists>", "[1]", "! not a comment" };
+
+	private TestGrids() {
+	}
+
+	/**
+	 * Create a TextGrid of interval tiers with the given number of intervals each, followed by a point tier
+	 */
+	static TextGrid create(Random random, int intervalTiers, int intervals) {
+		List<Tier> tiers = new ArrayList<Tier>();
+		double end = intervals * 0.25;
+		for (int t = 0; t < intervalTiers; t++) {
+			List<Interval> items = new ArrayList<Interval>(intervals);
+			double start = 0;
+			for (int i = 0; i < intervals; i++) {
+				double next = i == intervals - 1 ? end : start + random.nextInt(100) / 400.0 + 0.001;
+				items.add(new Interval(start, next, label(random)));
+				start = next;
+			}
+			tiers.add(new IntervalTier("tier " + t, items));
+		}
+		List<Point> points = new ArrayList<Point>();
+		for (int i = 0; i < intervals / 2; i++) {
+			points.add(new Point(end * i / intervals, label(random)));
+		}
+		tiers.add(new TextTier("points", 0, end, points));
+		return new TextGrid("", tiers);
+	}
+
+	static String label(Random random) {
+		String label = LABELS[random.nextInt(LABELS.length)];
+		return random.nextBoolean() ? label : label + random.nextInt(1000);
+	}
+}
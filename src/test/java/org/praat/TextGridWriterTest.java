@@ -0,0 +1,221 @@
+package org.praat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.praat.PraatTextFile.EOL;
+
+/**
+ * Tests for {@link TextGridWriter}: a TextGrid written item by item, with the items of its tiers arriving interleaved,
+ * must be the file written at once by {@link PraatFile}, and the temporary files of the tiers must be gone afterwards.
+ */
+public class TextGridWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * The TextGrid {@link #testHandWrittenTextGrid()} writes, as Praat writes it
+	 */
+	private static final String EXPECTED_TEXT_GRID = "File type = \"ooTextFile\"\n"
+			+ "Object class = \"TextGrid\"\n\n"
+			+ "xmin = 0 \nxmax = 2.5 \ntiers? <exists> \nsize = 2 \nitem []: \n"
+			+ "    item [1]:\n        class = \"IntervalTier\" \n        name = \"words\" \n"
+			+ "        xmin = 0 \n        xmax = 2 \n        intervals: size = 2 \n"
+			+ "        intervals [1]:\n            xmin = 0 \n            xmax = 1 \n            text = \"hello\" \n"
+			+ "        intervals [2]:\n            xmin = 1 \n            xmax = 2 \n"
+			+ "            text = \"\"\"quoted\"\"\" \n"
+			+ "    item [2]:\n        class = \"TextTier\" \n        name = \"bells\" \n"
+			+ "        xmin = 0.5 \n        xmax = 2.5 \n        points: size = 2 \n"
+			+ "        points [1]:\n            number = 0.5 \n            mark = \"ding\" \n"
+			+ "        points [2]:\n            number = 2.5 \n            mark = \"\" \n";
+
+	private final Random random = new Random(22);
+
+	@Test
+	public void testHandWrittenTextGrid() throws Exception {
+		File file = folder.newFile();
+		try (TextGridWriter writer = TextGridWriter.text(file, StandardCharsets.UTF_8, EOL.UNIX)) {
+			writer.addInterval("words", 0, 1, "hello");
+			writer.addPoint("bells", 0.5, "ding");
+			writer.addInterval("words", 1, 2, "\"quoted\"");
+			writer.addPoint("bells", 2.5, "");
+		}
+		assertEquals(EXPECTED_TEXT_GRID, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testManyTiers() throws Exception {
+		// more tiers than a process may usually keep files open
+		List<Tier> tiers = new ArrayList<Tier>();
+		for (int t = 0; t < 3000; t++) {
+			List<Interval> intervals = new ArrayList<Interval>();
+			for (int i = 0; i < 3; i++) {
+				intervals.add(new Interval(i, i + 1, TestGrids.label(random)));
+			}
+			tiers.add(new IntervalTier("tier " + t, intervals));
+		}
+		TextGrid grid = new TextGrid("", tiers);
+		File expected = folder.newFile();
+		File streamed = folder.newFile();
+		PraatFile.writeBinary(grid, expected);
+		write(grid, TextGridWriter.binary(streamed));
+		assertSameBytes(expected, streamed);
+	}
+
+	@Test
+	public void testStreamedEqualsWrittenAtOnce() throws Exception {
+		TextGrid grid = createGrid();
+		Set<Path> parts = listParts();
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16 }) {
+			for (EOL eol : EOL.values()) {
+				File expected = folder.newFile();
+				File streamed = folder.newFile();
+				PraatFile.writeText(grid, expected, charset, eol);
+				write(grid, TextGridWriter.text(streamed, charset, eol));
+				assertSameBytes(expected, streamed);
+
+				PraatFile.writeShortText(grid, expected, charset, eol);
+				write(grid, TextGridWriter.shortText(streamed, charset, eol));
+				assertSameBytes(expected, streamed);
+			}
+		}
+		File expected = folder.newFile();
+		File streamed = folder.newFile();
+		PraatFile.writeBinary(grid, expected);
+		write(grid, TextGridWriter.binary(streamed));
+		assertSameBytes(expected, streamed);
+
+		File compressed = folder.newFile("grid.TextGrid.gz");
+		write(grid, TextGridWriter.text(compressed, StandardCharsets.UTF_8, EOL.UNIX));
+		assertEquals(grid, PraatFile.readFromFile(compressed));
+		assertEquals(parts, listParts());
+	}
+
+	@Test
+	public void testDiscardWritesNothing() throws Exception {
+		Set<Path> parts = listParts();
+		File file = new File(folder.getRoot(), "discarded.TextGrid");
+		TextGridWriter writer = TextGridWriter.text(file, StandardCharsets.UTF_8, EOL.UNIX);
+		writer.addInterval("words", 0, 1, "a");
+		writer.addPoint("points", 0.5, "b");
+		assertEquals(2, writer.getTierCount());
+		writer.discard();
+		assertFalse(file.exists());
+		assertEquals(parts, listParts());
+	}
+
+	@Test
+	public void testTierKindCannotChange() throws Exception {
+		File file = folder.newFile();
+		try (TextGridWriter writer = TextGridWriter.text(file, StandardCharsets.UTF_8, EOL.UNIX)) {
+			writer.addInterval("words", 0, 1, "a");
+			try {
+				writer.addPoint("words", 0.5, "b");
+				fail();
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		try {
+			TextGridWriter writer = TextGridWriter.text(file, StandardCharsets.UTF_8, EOL.UNIX);
+			writer.close();
+			writer.addInterval("words", 1, 2, "c");
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Interval tiers from {@link TestGrids}, and a point tier whose time domain runs from its first to its last point
+	 * like the writer sets it
+	 */
+	private TextGrid createGrid() {
+		TextGrid random = TestGrids.create(this.random, 3, 300);
+		List<Tier> tiers = new ArrayList<Tier>();
+		for (PraatObject item : random.items) {
+			if (item instanceof IntervalTier) {
+				tiers.add((Tier) item);
+			} else {
+				List<Point> points = ((PointTier) item).getPoints();
+				tiers.add(new TextTier("points", points.get(0).getTime(), points.get(points.size() - 1).getTime(),
+						new ArrayList<Point>(points)));
+			}
+		}
+		return new TextGrid("", tiers);
+	}
+
+	/**
+	 * Add the items of the grid, the first item of each tier in the order of the tiers, then the others interleaved
+	 */
+	private void write(TextGrid grid, TextGridWriter writer) throws IOException {
+		try {
+			int[] next = new int[grid.items.size()];
+			for (int t = 0; t < next.length; t++) {
+				add(writer, (Tier) grid.items.get(t), next[t]++);
+			}
+			int remaining = 0;
+			for (PraatObject item : grid.items) {
+				remaining += ((Tier) item).size() - 1;
+			}
+			while (remaining > 0) {
+				int t = random.nextInt(next.length);
+				Tier tier = (Tier) grid.items.get(t);
+				if (next[t] < tier.size()) {
+					add(writer, tier, next[t]++);
+					remaining--;
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			writer.discard();
+			throw e;
+		}
+		writer.close();
+	}
+
+	private static void add(TextGridWriter writer, Tier tier, int index) throws IOException {
+		if (tier instanceof IntervalTier) {
+			writer.addInterval(tier.getName(), tier.getStart(index), tier.getEnd(index), tier.getLabel(index));
+		} else {
+			writer.addPoint(tier.getName(), tier.getStart(index), tier.getLabel(index));
+		}
+	}
+
+	private static void assertSameBytes(File expected, File actual) throws IOException {
+		assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(actual.toPath()));
+	}
+
+	/**
+	 * @return the temporary files of tiers in the directory for temporary files
+	 */
+	private static Set<Path> listParts() throws IOException {
+		Set<Path> parts = new HashSet<Path>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(System.getProperty("java.io.tmpdir")),
+				"tier*.part")) {
+			for (Path file : files) {
+				parts.add(file);
+			}
+		}
+		return parts;
+	}
+}
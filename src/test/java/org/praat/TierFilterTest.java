@@ -0,0 +1,86 @@
+package org.praat;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.praat.PraatTextFile.EOL;
+
+/**
+ * Tests for reading only some of the tiers of a TextGrid: the tiers skipped must not disturb the reading of the tiers
+ * that follow them, in any format, sequentially or in parallel.
+ */
+public class TierFilterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Random random = new Random(13);
+
+	@Test
+	public void testFilterInEveryFormat() throws Exception {
+		TextGrid grid = TestGrids.create(random, 4, 200);
+		List<File> files = new ArrayList<File>();
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16 }) {
+			File text = folder.newFile();
+			PraatFile.writeText(grid, text, charset, EOL.UNIX);
+			File shortText = folder.newFile();
+			PraatFile.writeShortText(grid, shortText, charset, EOL.WINDOWS);
+			files.add(text);
+			files.add(shortText);
+		}
+		File binary = folder.newFile();
+		PraatFile.writeBinary(grid, binary);
+		files.add(binary);
+
+		for (Set<String> names : Arrays.asList(names("tier 2"), names("tier 1", "tier 4"), names("points", "tier 3"),
+				names("tier 1", "tier 2", "tier 3", "tier 4", "points"), names())) {
+			List<PraatObject> expected = new ArrayList<PraatObject>();
+			for (PraatObject tier : grid.items) {
+				if (names.contains(((Tier) tier).getName())) {
+					expected.add(tier);
+				}
+			}
+			for (File file : files) {
+				for (ForkJoinPool pool : new ForkJoinPool[] { null, ForkJoinPool.commonPool() }) {
+					assertEquals(names.toString(), expected, read(file, names::contains, pool).items);
+				}
+				TextGrid streamed = (TextGrid) PraatFile.readFromStream(
+						new ByteArrayInputStream(Files.readAllBytes(file.toPath())), null, null, names::contains, null);
+				assertEquals(names.toString(), expected, streamed.items);
+			}
+		}
+	}
+
+	@Test
+	public void testNoFilterReadsAll() throws Exception {
+		TextGrid grid = TestGrids.create(random, 2, 100);
+		File file = folder.newFile();
+		PraatFile.writeText(grid, file, StandardCharsets.UTF_8, EOL.UNIX);
+		assertEquals(grid, read(file, null, null));
+		assertEquals(grid, read(file, null, ForkJoinPool.commonPool()));
+	}
+
+	private static TextGrid read(File file, Predicate<String> filter, ForkJoinPool pool) throws Exception {
+		return (TextGrid) PraatFile.readFromFile(file, null, new LabelTable(), filter, pool);
+	}
+
+	private static Set<String> names(String... names) {
+		return new HashSet<String>(Arrays.asList(names));
+	}
+}
@@ -0,0 +1,169 @@
+package org.praat;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the time queries of tiers: {@link IntervalTier#indexAt(double)}, {@link IntervalTier#overlapping(double,
+ * double)} and {@link PointTier#pointsIn(double, double)} must find what a scan of all items finds, for tiers in order
+ * and tiers that are not, and after items are changed.
+ */
+public class TierQueryTest {
+
+	/**
+	 * A TextGrid whose items are not in order, with two intervals and two points starting together
+	 */
+	private static final String UNSORTED_TEXT_GRID = "File type = \"ooTextFile\"\n"
+			+ "Object class = \"TextGrid\"\n\n"
+			+ "xmin = 0\nxmax = 4\ntiers? <exists>\nsize = 2\nitem []:\n"
+			+ "    item [1]:\n        class = \"IntervalTier\"\n        name = \"words\"\n"
+			+ "        xmin = 0\n        xmax = 4\n        intervals: size = 5\n"
+			+ "        intervals [1]:\n            xmin = 2\n            xmax = 3\n            text = \"c\"\n"
+			+ "        intervals [2]:\n            xmin = 0\n            xmax = 1\n            text = \"a\"\n"
+			+ "        intervals [3]:\n            xmin = 1\n            xmax = 2.5\n            text = \"b\"\n"
+			+ "        intervals [4]:\n            xmin = 1\n            xmax = 1.5\n            text = \"b2\"\n"
+			+ "        intervals [5]:\n            xmin = 3\n            xmax = 4\n            text = \"d\"\n"
+			+ "    item [2]:\n        class = \"TextTier\"\n        name = \"bells\"\n"
+			+ "        xmin = 0\n        xmax = 4\n        points: size = 4\n"
+			+ "        points [1]:\n            number = 3.5\n            mark = \"x\"\n"
+			+ "        points [2]:\n            number = 0.5\n            mark = \"y\"\n"
+			+ "        points [3]:\n            number = 2\n            mark = \"z\"\n"
+			+ "        points [4]:\n            number = 2\n            mark = \"w\"\n";
+
+	private final Random random = new Random(20);
+
+	@Test
+	public void testUnsortedTextGrid() throws Exception {
+		TextGrid grid = (TextGrid) PraatFile.readFromStream(
+				new ByteArrayInputStream(UNSORTED_TEXT_GRID.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8,
+				null, null, null);
+		IntervalTier words = (IntervalTier) grid.items.get(0);
+		assertEquals(1, words.indexAt(0));
+		assertEquals(2, words.indexAt(1.2));
+		assertEquals(0, words.indexAt(2.7));
+		assertEquals(4, words.indexAt(3.5));
+		assertEquals(-1, words.indexAt(4));
+		assertEquals(Arrays.asList(new Interval(0, 1, "a")), words.overlapping(0.5, 1));
+		assertEquals(Arrays.asList(new Interval(2, 3, "c"), new Interval(1, 2.5, "b"), new Interval(1, 1.5, "b2")),
+				words.overlapping(1.4, 2.2));
+		assertEquals(Arrays.asList(), words.overlapping(4, 5));
+
+		PointTier bells = (PointTier) grid.items.get(1);
+		assertEquals(Arrays.asList(new Point(0.5, "y")), bells.pointsIn(0, 1));
+		assertEquals(Arrays.asList(new Point(3.5, "x"), new Point(2, "z"), new Point(2, "w")), bells.pointsIn(2, 3.5));
+		assertEquals(Arrays.asList(new Point(2, "z"), new Point(2, "w")), bells.pointsIn(2, 2));
+		assertQueries(words);
+		assertQueries(bells);
+	}
+
+	@Test
+	public void testContiguousIntervals() {
+		List<Interval> intervals = new ArrayList<Interval>();
+		for (int i = 0; i < 200; i++) {
+			intervals.add(new Interval(i * 0.5, (i + 1) * 0.5, "" + i));
+		}
+		assertQueries(new IntervalTier("words", intervals));
+	}
+
+	@Test
+	public void testIntervalsWithGapsAndOverlaps() {
+		List<Interval> intervals = new ArrayList<Interval>();
+		double start = 0;
+		for (int i = 0; i < 200; i++) {
+			double end = start + random.nextInt(4) * 0.5;
+			intervals.add(new Interval(start, end, "" + i));
+			start += (random.nextInt(5) - 1) * 0.5;
+		}
+		assertQueries(new IntervalTier("words", intervals));
+	}
+
+	@Test
+	public void testUnsortedIntervals() {
+		List<Interval> intervals = new ArrayList<Interval>();
+		for (int i = 0; i < 200; i++) {
+			double start = random.nextInt(200) * 0.5;
+			intervals.add(new Interval(start, start + random.nextInt(10) * 0.5, "" + i));
+		}
+		IntervalTier tier = new IntervalTier("words", intervals);
+		assertQueries(tier);
+
+		// a tier in order is no longer after one of its intervals is moved, and a tier out of order gets a new index
+		IntervalTier sorted = new IntervalTier("words", 0, 1);
+		for (int i = 1; i < 100; i++) {
+			sorted.addInterval(new Interval(i, i + 1, "" + i));
+		}
+		assertQueries(sorted);
+		sorted.getIntervals().set(10, new Interval(70.5, 90, "moved"));
+		assertQueries(sorted);
+		tier.getIntervals().set(0, new Interval(-5, 150, "long"));
+		assertQueries(tier);
+		tier.addInterval(new Interval(3, 3.5, "added"));
+		assertQueries(tier);
+	}
+
+	@Test
+	public void testPoints() {
+		List<Point> points = new ArrayList<Point>();
+		for (int i = 0; i < 300; i++) {
+			points.add(new Point(i / 3 * 0.5, "" + i));
+		}
+		TextTier sorted = new TextTier("points", 0, 50, points);
+		assertQueries(sorted);
+
+		points.clear();
+		for (int i = 0; i < 300; i++) {
+			points.add(new Point(random.nextInt(100) * 0.5, "" + i));
+		}
+		TextTier unsorted = new TextTier("points", 0, 50, points);
+		assertQueries(unsorted);
+		sorted.getPoints().set(5, new Point(40, "moved"));
+		assertQueries(sorted);
+		unsorted.addPoint(new Point(-1, "added"));
+		assertQueries(unsorted);
+	}
+
+	private static void assertQueries(IntervalTier tier) {
+		for (double time = -1; time <= 110; time += 0.25) {
+			int expected = -1;
+			for (int i = 0; i < tier.size() && expected < 0; i++) {
+				if (tier.getStart(i) <= time && time < tier.getEnd(i)) {
+					expected = i;
+				}
+			}
+			assertEquals("at " + time, expected, tier.indexAt(time));
+			for (double length = 0; length <= 3; length += 0.75) {
+				double end = time + length;
+				List<Interval> overlapping = new ArrayList<Interval>();
+				for (int i = 0; i < tier.size(); i++) {
+					if (tier.getStart(i) < end && time < tier.getEnd(i)) {
+						overlapping.add(tier.getInterval(i));
+					}
+				}
+				assertEquals(time + " to " + end, overlapping, tier.overlapping(time, end));
+			}
+		}
+	}
+
+	private static void assertQueries(PointTier tier) {
+		for (double time = -2; time <= 60; time += 0.25) {
+			for (double length = 0; length <= 3; length += 0.75) {
+				double end = time + length;
+				List<Point> points = new ArrayList<Point>();
+				for (int i = 0; i < tier.size(); i++) {
+					if (time <= tier.getTime(i) && tier.getTime(i) <= end) {
+						points.add(tier.getPoint(i));
+					}
+				}
+				assertEquals(time + " to " + end, points, tier.pointsIn(time, end));
+			}
+		}
+	}
+}
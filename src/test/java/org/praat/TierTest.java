@@ -0,0 +1,176 @@
+package org.praat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.praat.PraatTextFile.EOL;
+
+/**
+ * Tests for the item storage of {@link Tier}: tiers keep their items in parallel arrays, and the intervals and points
+ * handed out are views of them that must behave like the objects the tiers used to hold.
+ */
+public class TierTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Random random = new Random(9);
+
+	@Test
+	public void testIntervalsGrowAndStay() {
+		List<Interval> intervals = createIntervals(10000);
+		IntervalTier tier = new IntervalTier("words", intervals.subList(0, 1));
+		for (Interval interval : intervals.subList(1, intervals.size())) {
+			tier.addInterval(interval);
+		}
+		assertEquals(intervals.size(), tier.size());
+		for (int i = 0; i < intervals.size(); i++) {
+			Interval interval = intervals.get(i);
+			assertEquals(interval.getStartTime(), tier.getStart(i), 0);
+			assertEquals(interval.getEndTime(), tier.getEnd(i), 0);
+			assertEquals(interval.getText(), tier.getLabel(i));
+			assertEquals(interval, tier.getInterval(i));
+			assertEquals(interval.getText().isEmpty(), tier.isEmpty(i));
+			assertTrue(tier.contentEquals(i, interval.getText()));
+		}
+		assertEquals(intervals, tier.getIntervals());
+		// the domain of the tier stays the one it was created with, the items are the same as those of a tier
+		// created with all of them
+		IntervalTier copy = new IntervalTier("words", new ArrayList<Interval>(tier.getIntervals()));
+		assertEquals(new IntervalTier("words", intervals), copy);
+		assertEquals(new IntervalTier("words", intervals).hashCode(), copy.hashCode());
+		tier.trimToSize();
+		assertEquals(intervals, tier.getIntervals());
+	}
+
+	@Test
+	public void testIntervalViewsWriteThrough() {
+		List<Interval> intervals = createIntervals(50);
+		IntervalTier tier = new IntervalTier("words", intervals);
+		Interval replaced = new Interval(3, 4, "new");
+		assertEquals(intervals.get(7), tier.getIntervals().set(7, replaced));
+		assertEquals(replaced, tier.getInterval(7));
+
+		ListIterator<Interval> iterator = tier.iterator();
+		while (iterator.hasNext()) {
+			int index = iterator.nextIndex();
+			Interval interval = iterator.next();
+			iterator.set(new Interval(interval.getStartTime(), interval.getEndTime(), "#" + index));
+		}
+		for (int i = 0; i < tier.size(); i++) {
+			assertEquals("#" + i, tier.getLabel(i));
+		}
+		assertNotEquals(new IntervalTier("words", intervals), tier);
+	}
+
+	@Test
+	public void testIteratorsAddAndRemove() throws Exception {
+		File file = folder.newFile();
+		PraatFile.writeText(new TextGrid("", Arrays.<Tier> asList(new IntervalTier("words", Arrays.asList(
+				new Interval(0, 1, "a"), new Interval(1, 2, "b"), new Interval(2, 3, "c"))))), file,
+				StandardCharsets.UTF_8, EOL.UNIX);
+		// labels read with a table stay undecoded, so the items handed out read them from their index
+		IntervalTier tier = (IntervalTier) ((TextGrid) PraatFile.readFromFile(file, null, new LabelTable())).items.get(0);
+		ListIterator<Interval> iterator = tier.iterator();
+		Interval a = iterator.next();
+		iterator.remove();
+		assertEquals("a", a.getText());
+		Interval b = iterator.next();
+		iterator.add(new Interval(1.5, 2, "b2"));
+		assertEquals("b", b.getText());
+		Interval c = iterator.next();
+		iterator.set(new Interval(2, 3, "c2"));
+		assertEquals("c", c.getText());
+		assertFalse(iterator.hasNext());
+		assertEquals(Arrays.asList(new Interval(1, 2, "b"), new Interval(1.5, 2, "b2"), new Interval(2, 3, "c2")),
+				tier.getIntervals());
+
+		List<Interval> intervals = tier.getIntervals();
+		intervals.add(0, new Interval(0, 1, "first"));
+		intervals.add(new Interval(3, 4, "last"));
+		assertEquals(new Interval(1.5, 2, "b2"), intervals.remove(2));
+		assertEquals(Arrays.asList("first", "b", "c2", "last"), labels(tier));
+		assertEquals(1, tier.indexAt(1.5));
+		intervals.removeIf(interval -> interval.getText().startsWith("c"));
+		assertEquals(Arrays.asList("first", "b", "last"), labels(tier));
+
+		TextTier points = new TextTier("points", 0, 3, new ArrayList<Point>(Arrays.asList(new Point(1, "x"))));
+		ListIterator<Point> pointIterator = points.iterator();
+		pointIterator.add(new Point(0.5, "before"));
+		pointIterator.next();
+		pointIterator.remove();
+		pointIterator.add(new Point(2, "after"));
+		assertEquals(Arrays.asList(new Point(0.5, "before"), new Point(2, "after")), points.getPoints());
+	}
+
+	@Test
+	public void testPoints() {
+		List<Point> points = new ArrayList<Point>();
+		for (int i = 0; i < 1000; i++) {
+			points.add(new Point(i * 0.5, i % 3 == 0 ? "" : TestGrids.label(random)));
+		}
+		TextTier tier = new TextTier("points", 0, 500, points);
+		assertEquals(points.size(), tier.size());
+		for (int i = 0; i < points.size(); i++) {
+			assertEquals(points.get(i).getTime(), tier.getTime(i), 0);
+			assertEquals(tier.getStart(i), tier.getEnd(i), 0);
+			assertEquals(points.get(i), tier.getPoint(i));
+			assertEquals(points.get(i).isEmpty(), tier.isEmpty(i));
+		}
+		assertEquals(points, tier.getPoints());
+		tier.getPoints().set(1, new Point(0.75, "moved"));
+		assertEquals("moved", tier.getLabel(1));
+		assertFalse(tier.equals(new TextTier("points", 0, 500, points)));
+	}
+
+	@Test
+	public void testTiersReadEqualTiersCreated() throws Exception {
+		TextGrid grid = TestGrids.create(random, 2, 300);
+		File file = folder.newFile();
+		PraatFile.writeText(grid, file, StandardCharsets.UTF_8, EOL.UNIX);
+		for (TextGrid read : new TextGrid[] { (TextGrid) PraatFile.readFromFile(file),
+				(TextGrid) PraatFile.readFromFile(file, StandardCharsets.UTF_8, new LabelTable()) }) {
+			for (int i = 0; i < grid.items.size(); i++) {
+				Tier created = (Tier) grid.items.get(i);
+				Tier tier = (Tier) read.items.get(i);
+				assertEquals(created, tier);
+				assertEquals(created.hashCode(), tier.hashCode());
+				for (int j = 0; j < tier.size(); j++) {
+					assertTrue(tier.contentEquals(j, created.getLabel(j)));
+				}
+			}
+		}
+	}
+
+	private static List<String> labels(Tier tier) {
+		List<String> labels = new ArrayList<String>();
+		for (int i = 0; i < tier.size(); i++) {
+			labels.add(tier.getLabel(i));
+		}
+		return labels;
+	}
+
+	private List<Interval> createIntervals(int count) {
+		List<Interval> intervals = new ArrayList<Interval>();
+		double start = 0;
+		for (int i = 0; i < count; i++) {
+			double end = start + 0.01 + random.nextInt(10) / 100.0;
+			intervals.add(new Interval(start, end, TestGrids.label(random)));
+			start = end;
+		}
+		return intervals;
+	}
+}
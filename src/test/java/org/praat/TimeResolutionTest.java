@@ -0,0 +1,89 @@
+package org.praat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link TimeResolution}: times must round to the nearest tick, ticks must come back as the closest double,
+ * undefined times must have ticks of their own and times too large for ticks must be rejected.
+ */
+public class TimeResolutionTest {
+
+	private final Random random = new Random(19);
+
+	@Test
+	public void testRounding() {
+		TimeResolution seconds = new TimeResolution(1);
+		assertEquals(1, seconds.toTicks(0.5000001));
+		assertEquals(0, seconds.toTicks(0.4999999));
+		// halves go to the even tick
+		assertEquals(0, seconds.toTicks(0.5));
+		assertEquals(2, seconds.toTicks(1.5));
+		assertEquals(2, seconds.toTicks(2.5));
+		assertEquals(0, seconds.toTicks(-0.5));
+		assertEquals(-2, seconds.toTicks(-1.5));
+
+		TimeResolution milliseconds = TimeResolution.MILLISECONDS;
+		assertEquals(1500, milliseconds.toTicks(1.5));
+		assertEquals(1500, milliseconds.toTicks(1.4996));
+		assertEquals(1500, milliseconds.toTicks(1.5004));
+		assertEquals(-1500, milliseconds.toTicks(-1.5));
+		// the same instant written with different digits
+		assertEquals(milliseconds.toTicks(0.1 + 0.2), milliseconds.toTicks(0.3));
+		assertEquals(TimeResolution.MICROSECONDS.toTicks(0.1 + 0.2), TimeResolution.MICROSECONDS.toTicks(0.3));
+	}
+
+	@Test
+	public void testTicksComeBackExactly() {
+		for (TimeResolution resolution : new TimeResolution[] { TimeResolution.MILLISECONDS,
+				TimeResolution.MICROSECONDS, TimeResolution.NANOSECONDS, new TimeResolution(44100) }) {
+			assertEquals(1.5, resolution.toSeconds(resolution.toTicks(1.5)), 0);
+			assertEquals(0.0, resolution.toSeconds(resolution.toTicks(-0.0)), 0);
+			for (int i = 0; i < 10000; i++) {
+				long ticks = random.nextInt() * (long) random.nextInt(1 << 10);
+				double seconds = resolution.toSeconds(ticks);
+				assertEquals((double) ticks / resolution.getTicksPerSecond(), seconds, 0);
+				assertEquals(resolution + " " + ticks, ticks, resolution.toTicks(seconds));
+			}
+		}
+	}
+
+	@Test
+	public void testUndefinedTimes() {
+		for (TimeResolution resolution : new TimeResolution[] { new TimeResolution(1), TimeResolution.NANOSECONDS }) {
+			assertEquals(TimeResolution.UNDEFINED, resolution.toTicks(Double.NaN));
+			assertEquals(TimeResolution.UNDEFINED, resolution.toTicks(Double.POSITIVE_INFINITY));
+			assertEquals(TimeResolution.UNDEFINED, resolution.toTicks(Double.NEGATIVE_INFINITY));
+			assertTrue(Double.isNaN(resolution.toSeconds(TimeResolution.UNDEFINED)));
+			// the ticks of an undefined time are below those of any time
+			assertTrue(TimeResolution.UNDEFINED < resolution.toTicks(-9e18 / resolution.getTicksPerSecond()));
+		}
+	}
+
+	@Test
+	public void testTimesOutOfRangeAreRejected() {
+		TimeResolution nanoseconds = TimeResolution.NANOSECONDS;
+		// about 292 years in nanoseconds still fit into a long
+		assertEquals(9000000000000000000L, nanoseconds.toTicks(9e9));
+		for (double seconds : new double[] { 1e10, -1e10, Double.MAX_VALUE, -Double.MAX_VALUE }) {
+			try {
+				nanoseconds.toTicks(seconds);
+				fail("Out of range: " + seconds);
+			} catch (IllegalArgumentException e) {
+				assertEquals("Time out of range for 1000000000 ticks per second: " + seconds, e.getMessage());
+			}
+		}
+
+		try {
+			new TimeResolution(0);
+			fail("No ticks per second");
+		} catch (IllegalArgumentException e) {
+			assertEquals("Ticks per second must be positive: 0", e.getMessage());
+		}
+	}
+}
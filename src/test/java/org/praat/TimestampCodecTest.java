@@ -0,0 +1,130 @@
+package org.praat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Property tests for {@link TimestampCodec}: formatting and parsing must round-trip every double bit for bit, and
+ * parsing must agree with {@link Double#parseDouble(String)}.
+ */
+public class TimestampCodecTest {
+
+	private static final int RUNS = 200000;
+
+	private final Random random = new Random(42);
+
+	@Test
+	public void testRoundTripOfArbitraryDoubles() {
+		for (int i = 0; i < RUNS; i++) {
+			double value = Double.longBitsToDouble(random.nextLong());
+			if (Double.isFinite(value)) {
+				assertRoundTrip(value);
+			}
+		}
+	}
+
+	@Test
+	public void testRoundTripOfTimestamps() {
+		for (int i = 0; i < RUNS; i++) {
+			// times of up to an hour at audio sample resolution, and derived values
+			double time = random.nextInt(3600 * 48000) / 48000.0;
+			assertRoundTrip(time);
+			assertRoundTrip(time * random.nextDouble());
+			assertRoundTrip(-time);
+		}
+	}
+
+	@Test
+	public void testSpecialValues() {
+		double[] values = { 0.0, -0.0, Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+				Double.MIN_NORMAL, 1e-300, 1e300, 9007199254740991.0, 9007199254740993.0, 0.1 + 0.2 };
+		for (double value : values) {
+			assertRoundTrip(value);
+		}
+		assertTrue(Double.isNaN(parse(TimestampCodec.toString(Double.NaN))));
+		assertEquals("--undefined--", TimestampCodec.toString(Double.NaN));
+	}
+
+	@Test
+	public void testInfiniteValuesAreUndefined() {
+		// Praat cannot read "Infinity" and counts infinite values as undefined
+		assertEquals("--undefined--", TimestampCodec.toString(Double.POSITIVE_INFINITY));
+		assertEquals("--undefined--", TimestampCodec.toString(Double.NEGATIVE_INFINITY));
+		assertTrue(Double.isNaN(parse(TimestampCodec.toString(Double.NEGATIVE_INFINITY))));
+		// files written by other programs are still read
+		assertEquals(Double.POSITIVE_INFINITY, parse("Infinity"), 0);
+	}
+
+	@Test
+	public void testShortestPlainOutput() {
+		assertEquals("0", TimestampCodec.toString(0.0));
+		assertEquals("0.7", TimestampCodec.toString(0.7));
+		assertEquals("-1.25", TimestampCodec.toString(-1.25));
+		assertEquals("2000", TimestampCodec.toString(2000.0));
+		assertEquals("0.0001", TimestampCodec.toString(0.0001));
+		assertEquals("0.30000000000000004", TimestampCodec.toString(0.1 + 0.2));
+		for (int i = 0; i < RUNS; i++) {
+			// decimals with few digits must come out unchanged
+			int scale = random.nextInt(8);
+			String decimal = toPlainString(random.nextInt(100000000), scale);
+			assertEquals(decimal, TimestampCodec.toString(Double.parseDouble(decimal)));
+		}
+	}
+
+	@Test
+	public void testParseAgreesWithJdk() {
+		String[] fixed = { "0", "-0", "+1", ".5", "5.", "0.000", "1e3", "1.5E-7", "123456789012345678901234567890",
+				"0.70000000000000000000000000000000", "4.9e-324", "1.7976931348623157e308", "1e400", "9007199254740993",
+				"Infinity", "-Infinity" };
+		for (String s : fixed) {
+			assertParse(s);
+		}
+		for (int i = 0; i < RUNS; i++) {
+			StringBuilder s = new StringBuilder();
+			if (random.nextBoolean()) {
+				s.append('-');
+			}
+			int digits = 1 + random.nextInt(22);
+			int point = random.nextInt(digits + 1);
+			for (int d = 0; d < digits; d++) {
+				if (d == point) {
+					s.append('.');
+				}
+				s.append((char) ('0' + random.nextInt(10)));
+			}
+			if (random.nextInt(4) == 0) {
+				s.append('e').append(random.nextInt(60) - 30);
+			}
+			assertParse(s.toString());
+		}
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testMalformed() {
+		parse("1.2.3");
+	}
+
+	private static void assertRoundTrip(double value) {
+		String text = TimestampCodec.toString(value);
+		assertEquals(text, Double.doubleToRawLongBits(value), Double.doubleToRawLongBits(parse(text)));
+	}
+
+	private static void assertParse(String s) {
+		assertEquals(s, Double.doubleToRawLongBits(Double.parseDouble(s)), Double.doubleToRawLongBits(parse(s)));
+	}
+
+	private static double parse(String s) {
+		return TimestampCodec.parse(s.toCharArray(), 0, s.length());
+	}
+
+	private static String toPlainString(int unscaled, int scale) {
+		return new BigDecimal(BigInteger.valueOf(unscaled), scale).stripTrailingZeros().toPlainString();
+	}
+
+}